@@ -1,5 +1,6 @@
 package com.spatiallens.Server.controller;
 
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -16,6 +17,9 @@ import org.springframework.web.bind.annotation.RestController;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spatiallens.Server.model.LayerMeta;
 import com.spatiallens.Server.repository.LayerMetaRepository;
+import com.spatiallens.Server.service.LayerImportService;
+import com.spatiallens.Server.service.LayerRegistry;
+import com.spatiallens.Server.service.TileCacheService;
 
 /**
  * Admin endpoint untuk fix props_whitelist pada layer yang sudah di-import
@@ -27,11 +31,18 @@ public class AdminLayerFixController {
 
     private final LayerMetaRepository metaRepo;
     private final JdbcTemplate jdbc;
+    private final TileCacheService tileCache;
+    private final LayerRegistry registry;
+    private final LayerImportService importService;
     private final ObjectMapper om = new ObjectMapper();
 
-    public AdminLayerFixController(LayerMetaRepository metaRepo, JdbcTemplate jdbc) {
+    public AdminLayerFixController(LayerMetaRepository metaRepo, JdbcTemplate jdbc, TileCacheService tileCache,
+            LayerRegistry registry, LayerImportService importService) {
         this.metaRepo = metaRepo;
         this.jdbc = jdbc;
+        this.tileCache = tileCache;
+        this.registry = registry;
+        this.importService = importService;
     }
 
     /**
@@ -67,6 +78,8 @@ public class AdminLayerFixController {
             String whitelist = om.writeValueAsString(new ArrayList<>(propertyNames));
             meta.setPropsWhitelist(whitelist);
             metaRepo.save(meta);
+            registry.refresh(slug);
+            tileCache.invalidateLayer(slug);
 
             return ResponseEntity.ok(new FixResult(slug, keys.size(), "Whitelist updated: " + whitelist));
 
@@ -76,6 +89,44 @@ public class AdminLayerFixController {
         }
     }
 
+    /**
+     * Hitung ulang bbox + coverage index tile + data maxzoom untuk layer yang
+     * di-import sebelum fitur tersebut ada (atau datanya diubah di luar aplikasi).
+     */
+    @PostMapping("/{slug}/fix-coverage")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> fixCoverage(@PathVariable String slug) {
+        try {
+            LayerMeta meta = metaRepo.findBySlug(slug).orElse(null);
+            if (meta == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            String qualified = meta.getSchemaName() + "." + safeIdent(meta.getTableName());
+            meta.setBbox(importService.computeExtent(qualified));
+            importService.buildCoverage(slug, qualified);
+            meta.setDataMaxZoom(importService.computeDataMaxZoom(slug, qualified));
+
+            Integer tiles = jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM layer_tile_coverage WHERE layer_slug = ?", Integer.class, slug);
+
+            // versi baru → registry memuat coverage baru, tile lama tidak dipakai lagi
+            long current = meta.getCacheVersion() != null ? meta.getCacheVersion() : 1L;
+            meta.setCacheVersion(current + 1);
+            meta.setUpdatedAt(OffsetDateTime.now());
+            metaRepo.save(meta);
+            registry.refresh(slug);
+            tileCache.invalidateLayer(slug);
+
+            int count = tiles != null ? tiles : 0;
+            return ResponseEntity.ok(new FixResult(slug, count, "Coverage rebuilt: " + count + " tiles"));
+
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(new FixResult(slug, 0, "Error: " + e.getMessage()));
+        }
+    }
+
     /**
      * Fix all layers yang belum punya whitelist
      */
@@ -110,6 +161,8 @@ public class AdminLayerFixController {
                         String whitelist = om.writeValueAsString(new ArrayList<>(propertyNames));
                         meta.setPropsWhitelist(whitelist);
                         metaRepo.save(meta);
+                        registry.refresh(meta.getSlug());
+                        tileCache.invalidateLayer(meta.getSlug());
                         results.add(new FixResult(meta.getSlug(), keys.size(), "Fixed"));
                     } else {
                         results.add(new FixResult(meta.getSlug(), 0, "No properties found"));
@@ -0,0 +1,83 @@
+package com.spatiallens.Server.controller;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+
+import com.spatiallens.Server.service.LayerRegistry.Validator;
+
+/**
+ * Helper conditional request (If-None-Match / If-Modified-Since).
+ * - If-None-Match diutamakan; If-Modified-Since hanya dipakai bila tidak ada ETag.
+ * - Perbandingan ETag "weak" (W/ diabaikan) sesuai RFC 9110 untuk GET.
+ */
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /** max-age response publik ber-validator; setelahnya cache wajib revalidasi (304 murah). */
+    static final Duration PUBLIC_MAX_AGE = Duration.ofSeconds(60);
+
+    /**
+     * Cache-Control untuk response publik ber-validator (URL tidak memuat versi layer).
+     * - Tanpa immutable: edit/restyle/status mengganti ETag, jadi cache harus bertanya lagi.
+     * - Instance baru tiap panggilan (builder CacheControl mutable).
+     */
+    static CacheControl publicRevalidate() {
+        return CacheControl.maxAge(PUBLIC_MAX_AGE).cachePublic().mustRevalidate();
+    }
+
+    /** true → cukup balas 304 (body & query tidak perlu dijalankan). */
+    static boolean notModified(HttpHeaders request, Validator v) {
+        if (request == null || v == null)
+            return false;
+
+        List<String> inm = request.getIfNoneMatch();
+        if (!inm.isEmpty()) {
+            String tag = opaque(v.etag());
+            for (String candidate : inm) {
+                if ("*".equals(candidate.trim()) || tag.equals(opaque(candidate)))
+                    return true;
+            }
+            return false;
+        }
+
+        long ims;
+        try {
+            ims = request.getIfModifiedSince();
+        } catch (IllegalArgumentException badDate) {
+            return false;
+        }
+        return ims >= 0 && v.lastModified() > 0 && v.lastModified() <= ims;
+    }
+
+    /** Pasang ETag + Last-Modified pada response (200/204/304). */
+    static void apply(HttpHeaders response, Validator v) {
+        if (v == null)
+            return;
+        response.setETag(v.etag());
+        if (v.lastModified() > 0)
+            response.setLastModified(v.lastModified());
+    }
+
+    /**
+     * Validator untuk representasi lain dari resource yang sama (mis. WebP vs PNG):
+     * ETag diberi suffix agar cache/If-None-Match tidak tertukar antar format.
+     */
+    static Validator variant(Validator v, String suffix) {
+        if (v == null || suffix == null || suffix.isEmpty())
+            return v;
+        String tag = v.etag();
+        int end = tag.lastIndexOf('"');
+        String etag = (end > 0) ? tag.substring(0, end) + "+" + suffix + tag.substring(end) : tag + "+" + suffix;
+        return new Validator(etag, v.lastModified(), v.publicPublished());
+    }
+
+    private static String opaque(String etag) {
+        String s = etag.trim();
+        return s.startsWith("W/") ? s.substring(2) : s;
+    }
+}
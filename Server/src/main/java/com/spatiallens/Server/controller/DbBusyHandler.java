@@ -0,0 +1,27 @@
+package com.spatiallens.Server.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import com.spatiallens.Server.service.DbBusyException;
+
+/**
+ * Load shedding: budget DB habis → 503 + Retry-After.
+ * - Tanpa body agar aman untuk endpoint biner (MVT/PNG).
+ * - no-store → browser/CDN tidak menyimpan respons "sibuk".
+ */
+@RestControllerAdvice
+public class DbBusyHandler {
+
+    @ExceptionHandler(DbBusyException.class)
+    public ResponseEntity<Void> busy(DbBusyException e) {
+        HttpHeaders h = new HttpHeaders();
+        h.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        h.setCacheControl(CacheControl.noStore().getHeaderValue());
+        return new ResponseEntity<>(null, h, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
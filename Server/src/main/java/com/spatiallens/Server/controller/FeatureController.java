@@ -0,0 +1,101 @@
+package com.spatiallens.Server.controller;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.spatiallens.Server.service.FeatureEditService;
+import com.spatiallens.Server.service.FeatureEditService.EditBatch;
+import com.spatiallens.Server.service.FeatureEditService.EditResult;
+import com.spatiallens.Server.service.FeatureEditService.FeatureInput;
+
+/**
+ * Edit fitur per layer tanpa re-upload.
+ * - Body fitur = GeoJSON Feature (geometry EPSG:4326, properties).
+ * - PUT: geometry/properties yang null tidak diubah.
+ * - Hanya tile di area fitur yang di-invalidasi; cache lain tetap hangat.
+ */
+@RestController
+@RequestMapping("/api/layers/{slug}/features")
+public class FeatureController {
+
+    private final FeatureEditService edits;
+
+    public FeatureController(FeatureEditService edits) {
+        this.edits = edits;
+    }
+
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ADMIN','EDITOR')")
+    public ResponseEntity<?> insert(@PathVariable String slug, @RequestBody FeatureInput feature) {
+        return handle(() -> edits.insert(slug, feature), HttpStatus.CREATED);
+    }
+
+    @PutMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN','EDITOR')")
+    public ResponseEntity<?> update(@PathVariable String slug, @PathVariable long id,
+            @RequestBody FeatureInput feature) {
+        return handle(() -> edits.update(slug, id, feature), HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN','EDITOR')")
+    public ResponseEntity<?> delete(@PathVariable String slug, @PathVariable long id) {
+        return handle(() -> edits.delete(slug, id), HttpStatus.OK);
+    }
+
+    /** Batch: {"insert": [Feature], "update": [Feature + id], "delete": [id]} dalam satu transaksi. */
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('ADMIN','EDITOR')")
+    public ResponseEntity<?> batch(@PathVariable String slug, @RequestBody EditBatch batch) {
+        return handle(() -> edits.apply(slug, batch), HttpStatus.OK);
+    }
+
+    // DbBusyException diteruskan ke DbBusyHandler (503 + Retry-After)
+    private ResponseEntity<?> handle(Supplier<EditResult> action, HttpStatus ok) {
+        try {
+            return ResponseEntity.status(ok).body(action.get());
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(msg(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(msg(e.getMessage()));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.badRequest().body(msg("Edit melanggar constraint tabel layer"));
+        } catch (DataAccessException e) {
+            // 22xxx = data tidak valid, XX000 = error ST_GeomFromGeoJSON → kesalahan input;
+            // selain itu (koneksi, lock timeout, serialization) → 500, detail SQL hanya di log
+            String state = sqlState(e);
+            if (state != null && (state.startsWith("22") || state.equals("XX000"))) {
+                return ResponseEntity.badRequest().body(msg("Geometry/properties tidak valid"));
+            }
+            System.err.println("[Features] Edit gagal (" + state + "): " + e.getMostSpecificCause().getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(msg("Edit gagal, coba lagi"));
+        }
+    }
+
+    private static String sqlState(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && sql.getSQLState() != null)
+                return sql.getSQLState();
+        }
+        return null;
+    }
+
+    private static Map<String, String> msg(String m) {
+        return Map.of("message", m);
+    }
+}
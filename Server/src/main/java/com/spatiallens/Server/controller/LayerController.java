@@ -7,6 +7,8 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.Locale;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +23,7 @@ import javax.xml.namespace.NamespaceContext;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -43,7 +46,11 @@ import com.spatiallens.Server.model.LayerUpload;
 import com.spatiallens.Server.repository.LayerMetaRepository;
 import com.spatiallens.Server.repository.LayerStyleRepository;
 import com.spatiallens.Server.repository.LayerUploadRepository;
+import com.spatiallens.Server.service.DbBusyException;
 import com.spatiallens.Server.service.LayerImportService;
+import com.spatiallens.Server.service.LayerRegistry;
+import com.spatiallens.Server.service.TileCacheService;
+import com.spatiallens.Server.service.TileSeedService;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -57,6 +64,9 @@ public class LayerController {
     private final LayerMetaRepository metaRepo;
     private final LayerStyleRepository styleRepo;
     private final LayerImportService importer;
+    private final TileCacheService tileCache;
+    private final TileSeedService seeder;
+    private final LayerRegistry registry;
     private final JdbcTemplate jdbc;
 
     public LayerController(
@@ -64,11 +74,17 @@ public class LayerController {
             LayerMetaRepository metaRepo,
             LayerStyleRepository styleRepo,
             LayerImportService importer,
+            TileCacheService tileCache,
+            TileSeedService seeder,
+            LayerRegistry registry,
             JdbcTemplate jdbc) {
         this.repo = repo;
         this.metaRepo = metaRepo;
         this.styleRepo = styleRepo;
         this.importer = importer;
+        this.tileCache = tileCache;
+        this.seeder = seeder;
+        this.registry = registry;
         this.jdbc = jdbc;
     }
 
@@ -111,6 +127,7 @@ public class LayerController {
             @RequestParam(value = "type", required = false) String type,
             @RequestParam(value = "status", required = false) String status,
             @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "precision", required = false) Integer precision,
             @RequestParam("file") MultipartFile file) {
 
         String cleanName = clean(name);
@@ -118,6 +135,8 @@ public class LayerController {
             return bad("Name is required");
         if (file == null || file.isEmpty())
             return bad("File is required");
+        if (precision != null && precision > 15)
+            return bad("Precision must be at most 15 decimals (negative = keep original)");
 
         String original = StringUtils.hasText(file.getOriginalFilename())
                 ? file.getOriginalFilename()
@@ -177,12 +196,21 @@ public class LayerController {
 
         // langsung impor + register ke tabel fitur & layers metadata
         try {
-            LayerImportService.ImportResult result = importer.importAndRegister(saved);
+            LayerImportService.ImportResult result = importer.importAndRegister(saved, precision);
+            if (STATUS_PUBLISHED.equals(reqStatus)) {
+                startSeeding(result.slug());
+            }
             return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
                     "message", "Upload & import OK",
                     "slug", result.slug(),
                     "table", result.table(),
-                    "count", result.count()));
+                    "count", result.count(),
+                    "reduction", reductionOf(result)));
+        } catch (DbBusyException busy) {
+            // budget import penuh → klien diminta mengulang setelah Retry-After
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(busy.getRetryAfterSeconds()))
+                    .body(Map.of("message", "Server sibuk, coba lagi nanti", "slug", slug));
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Import failed: " + ex.getMessage(),
@@ -218,6 +246,7 @@ public class LayerController {
                 metaRepo.findBySlug(lu.getSlug()).ifPresent(meta -> {
                     meta.setName(newName);
                     metaRepo.save(meta);
+                    registry.refresh(meta.getSlug());
                 });
             }
         }
@@ -226,6 +255,19 @@ public class LayerController {
             if (!ns.equals(lu.getStatus())) {
                 lu.setStatus(ns);
                 changed = true;
+
+                // Sinkronkan status ke LayerMeta (tiles) + buang cache scope lama
+                metaRepo.findBySlug(lu.getSlug()).ifPresent(meta -> {
+                    meta.setStatus(ns);
+                    meta.setCacheVersion((meta.getCacheVersion() != null ? meta.getCacheVersion() : 0L) + 1L);
+                    meta.setUpdatedAt(OffsetDateTime.now());
+                    metaRepo.save(meta);
+                    registry.refresh(meta.getSlug());
+                    tileCache.invalidateLayer(meta.getSlug());
+                    if (STATUS_PUBLISHED.equals(ns)) {
+                        startSeeding(meta.getSlug());
+                    }
+                });
             }
         }
 
@@ -255,6 +297,13 @@ public class LayerController {
                 String schemaName = meta.getSchemaName() != null ? meta.getSchemaName() : "gis";
                 String tableName = safeIdent(meta.getTableName());
                 try {
+                    // tabel generalisasi per zoom band (<table>_g<z>)
+                    if (meta.getGenZooms() != null) {
+                        for (String band : meta.getGenZooms().split(",")) {
+                            jdbc.execute("DROP TABLE IF EXISTS " + schemaName + "." + tableName + "_g"
+                                    + safeIdent(band.trim()));
+                        }
+                    }
                     jdbc.execute("DROP TABLE IF EXISTS " + schemaName + "." + tableName + " CASCADE");
                 } catch (Exception e) {
                     // log but continue
@@ -263,11 +312,19 @@ public class LayerController {
             }
         });
 
+        // coverage index tile (layer_tile_coverage)
+        try {
+            jdbc.update("DELETE FROM layer_tile_coverage WHERE layer_slug = ?", slug);
+        } catch (Exception e) {
+            System.err.println("Failed to delete tile coverage: " + e.getMessage());
+        }
+
         // 2. Hapus dari tabel layer_styles (jika ada)
         styleRepo.findByLayerSlug(slug).ifPresent(styleRepo::delete);
 
         // 3. Hapus dari tabel layers (LayerMeta)
         metaRepo.findBySlug(slug).ifPresent(metaRepo::delete);
+        registry.remove(slug);
 
         // 4. Hapus file publik bila ada
         String pp = lu.getPublicPath();
@@ -290,6 +347,10 @@ public class LayerController {
         // 6. Hapus dari tabel layer_uploads (LayerUpload)
         repo.delete(lu);
 
+        // 7. Hentikan seeding & buang tile cache (memory + disk)
+        seeder.cancel(slug);
+        tileCache.invalidateLayer(slug);
+
         return ResponseEntity.noContent().build();
     }
 
@@ -388,6 +449,28 @@ public class LayerController {
         return Map.of("message", m);
     }
 
+    /** Ringkasan quantization koordinat untuk response upload (precision null = tanpa snap). */
+    private static Map<String, Object> reductionOf(LayerImportService.ImportResult r) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("precision", r.precision());
+        m.put("verticesIn", r.verticesIn());
+        m.put("verticesOut", r.verticesOut());
+        m.put("wkbBytesIn", r.wkbBytesIn());
+        m.put("wkbBytesOut", r.wkbBytesOut());
+        m.put("dropped", r.dropped());
+        m.put("ratio", Math.round(r.reductionRatio() * 1000) / 1000.0);
+        return m;
+    }
+
+    /** Seeding tile cache bersifat best-effort; kegagalan tidak menggagalkan request. */
+    private void startSeeding(String slug) {
+        try {
+            seeder.start(slug);
+        } catch (Exception e) {
+            System.err.println("[TileSeed] Tidak bisa mulai seeding " + slug + ": " + e.getMessage());
+        }
+    }
+
     private Long sizeOrNull(Path p) {
         try {
             return Files.size(p);
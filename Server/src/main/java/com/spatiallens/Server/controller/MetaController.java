@@ -5,8 +5,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 
-import org.locationtech.jts.geom.Envelope;
-import org.locationtech.jts.geom.Polygon;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -22,21 +20,32 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.spatiallens.Server.model.LayerMeta;
 import com.spatiallens.Server.repository.LayerMetaRepository;
+import com.spatiallens.Server.service.LayerRegistry;
+import com.spatiallens.Server.service.LayerRegistry.LayerSnapshot;
+import com.spatiallens.Server.service.TileCacheService;
+import com.spatiallens.Server.service.TileSeedService;
 
 /**
  * Endpoint metadata ringan untuk konsumsi FE (MVT).
  * - GET list: Viewer hanya Published; Admin/Editor melihat semua.
  * - GET detail: Draft akan jadi 404 jika user tidak berhak (anti info leak).
- * - PUT status: ADMIN only.
+ * - PUT status / cluster: ADMIN only.
  */
 @RestController
 @RequestMapping("/api/layers/meta")
 public class MetaController {
 
     private final LayerMetaRepository metaRepo;
+    private final TileCacheService tileCache;
+    private final TileSeedService seeder;
+    private final LayerRegistry registry;
 
-    public MetaController(LayerMetaRepository metaRepo) {
+    public MetaController(LayerMetaRepository metaRepo, TileCacheService tileCache, TileSeedService seeder,
+            LayerRegistry registry) {
         this.metaRepo = metaRepo;
+        this.tileCache = tileCache;
+        this.seeder = seeder;
+        this.registry = registry;
     }
 
     // ---- DTOs ----
@@ -49,13 +58,19 @@ public class MetaController {
             Integer maxzoom,
             Long featureCount,
             double[] bbox, // [minLon,minLat,maxLon,maxLat] (EPSG:4326) atau null
-            String updatedAt // ISO-8601 atau null
+            String updatedAt, // ISO-8601 atau null
+            Integer clusterMaxZoom, // tile z <= ini berisi cluster titik, null = nonaktif
+            Integer dataMaxZoom // tile z > ini di-overzoom dari parent, null = nonaktif
     ) {
     }
 
     public record ChangeStatusRequest(String status) {
     }
 
+    /** maxZoom null = matikan clustering; props = key numerik yang dijumlahkan per cluster. */
+    public record ClusterRequest(Integer maxZoom, List<String> props) {
+    }
+
     // ---- Helpers ----
     private boolean canAccessRestricted() {
         var auth = SecurityContextHolder.getContext().getAuthentication();
@@ -69,32 +84,27 @@ public class MetaController {
         return false;
     }
 
-    private static double[] bboxArray(Polygon poly) {
-        if (poly == null)
-            return null;
-        Envelope e = poly.getEnvelopeInternal();
-        return new double[] { e.getMinX(), e.getMinY(), e.getMaxX(), e.getMaxY() };
-    }
-
-    private static String ts(OffsetDateTime t) {
-        return t == null ? null : t.toString();
+    private static long nextVersion(LayerMeta lm) {
+        return (lm.getCacheVersion() != null ? lm.getCacheVersion() : 0L) + 1L;
     }
 
     private static boolean isPublished(LayerMeta lm) {
         return "Published".equalsIgnoreCase(lm.getStatus());
     }
 
-    private static LayerMetaView viewOf(LayerMeta lm) {
+    private static LayerMetaView viewOf(LayerSnapshot lm) {
         return new LayerMetaView(
-                lm.getSlug(),
-                lm.getName(),
-                lm.getStatus(),
-                lm.getCategory(),
-                lm.getMinzoom(),
-                lm.getMaxzoom(),
-                lm.getFeatureCount(),
-                bboxArray(lm.getBbox()),
-                ts(lm.getUpdatedAt()));
+                lm.slug(),
+                lm.name(),
+                lm.status(),
+                lm.category(),
+                lm.minzoom(),
+                lm.maxzoom(),
+                lm.featureCount(),
+                lm.bbox(),
+                lm.updatedAt(),
+                lm.clusterMaxZoom(),
+                lm.dataMaxZoom());
     }
 
     // ---- READ ----
@@ -103,8 +113,8 @@ public class MetaController {
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
     public List<LayerMetaView> list() {
         boolean allowedRestricted = canAccessRestricted();
-        return metaRepo.findAll().stream()
-                .filter(lm -> allowedRestricted || isPublished(lm))
+        return registry.all().stream()
+                .filter(lm -> allowedRestricted || lm.published())
                 .map(MetaController::viewOf)
                 .toList();
     }
@@ -112,13 +122,13 @@ public class MetaController {
     /** Detail per slug. Draft akan jadi 404 jika user tak berhak. */
     @GetMapping(path = "/{slug}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getOne(@PathVariable String slug) {
-        Optional<LayerMeta> opt = metaRepo.findBySlug(slug);
+        Optional<LayerSnapshot> opt = registry.get(slug);
         if (opt.isEmpty())
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 
-        LayerMeta lm = opt.get();
+        LayerSnapshot lm = opt.get();
         boolean allowedRestricted = canAccessRestricted();
-        if (!allowedRestricted && !isPublished(lm)) {
+        if (!allowedRestricted && !lm.published()) {
             // samarkan sebagai 404 agar tidak bocor
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
@@ -148,7 +158,51 @@ public class MetaController {
         if (lm == null)
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         lm.setStatus(Character.toUpperCase(v.charAt(0)) + v.substring(1).toLowerCase(Locale.ROOT));
-        metaRepo.save(lm);
+        // tile Draft/Published tidak boleh tertukar antar scope cache
+        saveTileChange(lm);
         return ResponseEntity.noContent().build();
     }
+
+    /** Atur mode clustering titik untuk tile zoom rendah. */
+    @PutMapping(path = "/{slug}/cluster", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> changeCluster(@PathVariable String slug, @RequestBody ClusterRequest req) {
+        if (req == null || (req.maxZoom() != null && (req.maxZoom() < 0 || req.maxZoom() > 22))) {
+            return ResponseEntity.badRequest().build();
+        }
+        LayerMeta lm = metaRepo.findBySlug(slug).orElse(null);
+        if (lm == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        List<String> props = req.props() == null ? List.of()
+                : req.props().stream()
+                        .filter(p -> p != null && !p.isBlank() && p.indexOf(',') < 0)
+                        .map(String::trim)
+                        .distinct()
+                        .toList();
+        lm.setClusterMaxZoom(req.maxZoom());
+        lm.setClusterProps(req.maxZoom() == null || props.isEmpty() ? null : String.join(",", props));
+        saveTileChange(lm);
+        return ResponseEntity.noContent().build();
+    }
+
+    /** Simpan perubahan yang memengaruhi isi tile: versi baru, cache dibuang, seeding ulang. */
+    private void saveTileChange(LayerMeta lm) {
+        String slug = lm.getSlug();
+        lm.setCacheVersion(nextVersion(lm));
+        lm.setUpdatedAt(OffsetDateTime.now()); // sumber Last-Modified setelah restart
+        metaRepo.save(lm);
+        registry.refresh(slug);
+        tileCache.invalidateLayer(slug);
+        if (isPublished(lm)) {
+            // warm-up tile cache di background
+            try {
+                seeder.start(slug);
+            } catch (Exception e) {
+                System.err.println("[TileSeed] Tidak bisa mulai seeding " + slug + ": " + e.getMessage());
+            }
+        } else {
+            seeder.cancel(slug);
+        }
+    }
 }
@@ -1,6 +1,6 @@
 package com.spatiallens.Server.controller;
 
-import java.time.Duration;
+import java.util.List;
 
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
@@ -11,12 +11,16 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.spatiallens.Server.service.GeoJsonExportService;
 import com.spatiallens.Server.service.GeoJsonExportService.GeoJsonResult;
+import com.spatiallens.Server.service.LayerRegistry;
+import com.spatiallens.Server.service.LayerRegistry.Validator;
+import com.spatiallens.Server.service.RasterFormat;
 import com.spatiallens.Server.service.WmsRasterService;
 import com.spatiallens.Server.service.WmsRasterService.WmsResult;
 
@@ -32,10 +36,13 @@ public class PublicApiController {
 
     private final GeoJsonExportService geoJsonService;
     private final WmsRasterService wmsService;
+    private final LayerRegistry registry;
 
-    public PublicApiController(GeoJsonExportService geoJsonService, WmsRasterService wmsService) {
+    public PublicApiController(GeoJsonExportService geoJsonService, WmsRasterService wmsService,
+            LayerRegistry registry) {
         this.geoJsonService = geoJsonService;
         this.wmsService = wmsService;
+        this.registry = registry;
     }
 
     /**
@@ -51,20 +58,34 @@ public class PublicApiController {
     @GetMapping(path = "/geojson/{slug}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> getGeoJson(
             @PathVariable("slug") String slug,
-            @RequestParam(value = "bbox", required = false) String bbox) {
+            @RequestParam(value = "bbox", required = false) String bbox,
+            @RequestHeader HttpHeaders requestHeaders) {
 
         boolean canAccessRestricted = hasAnyRole("ADMIN", "EDITOR");
+
+        // Revalidasi berbasis versi layer → 304 tanpa query
+        Validator validator = registry.validator("geojson", List.of(slug), canAccessRestricted).orElse(null);
+        if (ConditionalRequests.notModified(requestHeaders, validator)) {
+            return notModified(validator, ConditionalRequests.publicRevalidate());
+        }
+
         GeoJsonResult res = geoJsonService.getGeoJson(slug, bbox, canAccessRestricted);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
 
+        if (res.error()) {
+            // Export gagal → jangan di-cache & tanpa validator
+            headers.setCacheControl(CacheControl.noStore().getHeaderValue());
+            return new ResponseEntity<>(res.json(), headers, HttpStatus.OK);
+        }
         if (res.publicPublished()) {
-            // Cache for public published layers
-            headers.setCacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePublic().getHeaderValue());
+            // Cache for public published layers; edit fitur mengganti ETag → wajib revalidasi
+            headers.setCacheControl(ConditionalRequests.publicRevalidate().getHeaderValue());
         } else {
             headers.setCacheControl(CacheControl.noStore().getHeaderValue());
         }
+        ConditionalRequests.apply(headers, validator);
 
         if (res.empty()) {
             return new ResponseEntity<>(res.json(), headers, HttpStatus.OK);
@@ -76,33 +97,52 @@ public class PublicApiController {
     /**
      * WMS-like endpoint untuk raster tiles.
      * 
-     * GET /api/public/wms/{slug}?bbox=minX,minY,maxX,maxY&width=256&height=256
+     * GET /api/public/wms/{slug}?bbox=minX,minY,maxX,maxY&width=256&height=256[&format=image/jpeg]
      * 
      * @param slug   layer identifier
      * @param bbox   bounding box dalam EPSG:3857 (Web Mercator)
      * @param width  tile width (default 256, max 2048)
      * @param height tile height (default 256, max 2048)
-     * @return PNG image
+     * @param format format output; tanpa ini dipilih dari header Accept (default PNG)
+     * @return image PNG/WebP/JPEG
      */
-    @GetMapping(path = "/wms/{slug}", produces = "image/png")
+    @GetMapping(path = "/wms/{slug}", produces = { "image/png", "image/webp", "image/jpeg" })
     public ResponseEntity<byte[]> getWmsTile(
             @PathVariable("slug") String slug,
             @RequestParam(value = "bbox", required = true) String bbox,
             @RequestParam(value = "width", defaultValue = "256") int width,
-            @RequestParam(value = "height", defaultValue = "256") int height) {
+            @RequestParam(value = "height", defaultValue = "256") int height,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestHeader HttpHeaders requestHeaders) {
 
         boolean canAccessRestricted = hasAnyRole("ADMIN", "EDITOR");
-        WmsResult res = wmsService.getWmsTile(slug, bbox, width, height, canAccessRestricted);
+        RasterFormat fmt = RasterFormat.negotiate(format, requestHeaders.getFirst(HttpHeaders.ACCEPT));
+
+        // Revalidasi berbasis versi layer → 304 tanpa query/render
+        Validator validator = registry.validator("wms", List.of(slug), canAccessRestricted)
+                .map(v -> (fmt == RasterFormat.PNG) ? v : ConditionalRequests.variant(v, fmt.extension()))
+                .orElse(null);
+        if (ConditionalRequests.notModified(requestHeaders, validator)) {
+            return notModified(validator, ConditionalRequests.publicRevalidate());
+        }
+
+        WmsResult res = wmsService.getWmsTile(slug, bbox, width, height, canAccessRestricted, fmt);
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.IMAGE_PNG);
+        headers.setContentType(MediaType.parseMediaType(fmt.mediaType()));
+        headers.setVary(List.of(HttpHeaders.ACCEPT));
 
+        if (res.error()) {
+            // Render gagal → image transparan, jangan di-cache & tanpa validator
+            headers.setCacheControl(CacheControl.noStore().getHeaderValue());
+            return new ResponseEntity<>(res.image(), headers, HttpStatus.OK);
+        }
         if (res.publicPublished()) {
-            headers.setCacheControl(
-                    CacheControl.maxAge(Duration.ofDays(1)).cachePublic().immutable().getHeaderValue());
+            headers.setCacheControl(ConditionalRequests.publicRevalidate().getHeaderValue());
         } else {
             headers.setCacheControl(CacheControl.noStore().getHeaderValue());
         }
+        ConditionalRequests.apply(headers, validator);
 
         if (res.empty()) {
             return new ResponseEntity<>(res.image(), headers, HttpStatus.NO_CONTENT);
@@ -113,6 +153,15 @@ public class PublicApiController {
 
     // --- Helpers ---
 
+    private <T> ResponseEntity<T> notModified(Validator validator, CacheControl publicPolicy) {
+        HttpHeaders h = new HttpHeaders();
+        ConditionalRequests.apply(h, validator);
+        h.setCacheControl(validator.publicPublished()
+                ? publicPolicy.getHeaderValue()
+                : CacheControl.noStore().getHeaderValue());
+        return new ResponseEntity<>(null, h, HttpStatus.NOT_MODIFIED);
+    }
+
     private boolean hasAnyRole(String... roles) {
         var auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || auth.getAuthorities() == null)
@@ -0,0 +1,57 @@
+package com.spatiallens.Server.controller;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Framing biner response batch tile (/tiles/batch), big-endian.
+ * - Header stream: "SLTB" + uint8 versi (1).
+ * - Per frame: uint8 z, uint32 x, uint32 y, uint8 status, uint8 flags,
+ *   uint32 panjang body, lalu body (MVT; ter-gzip bila FLAG_GZIP).
+ * - Frame dikirim sesuai urutan selesai, bukan urutan request → z/x/y selalu ada.
+ * - Tiap frame di-flush agar klien bisa memakai tile sebelum batch selesai.
+ */
+final class TileBatchWriter {
+
+    static final String CONTENT_TYPE = "application/vnd.spatiallens.tile-batch";
+
+    static final byte[] MAGIC = { 'S', 'L', 'T', 'B' };
+    static final int VERSION = 1;
+
+    /** Tile berisi data (body = MVT). */
+    static final int STATUS_DATA = 0;
+    /** Tile kosong / di luar jangkauan / tanpa akses (body kosong). */
+    static final int STATUS_EMPTY = 1;
+    /** Budget DB penuh → klien boleh mencoba lagi nanti. */
+    static final int STATUS_BUSY = 2;
+    /** Gagal dirender. */
+    static final int STATUS_ERROR = 3;
+
+    /** Body ter-gzip. */
+    static final int FLAG_GZIP = 1;
+    /** Layer Published → klien boleh menyimpan tile di cache-nya. */
+    static final int FLAG_PUBLIC = 2;
+
+    private final DataOutputStream out;
+
+    TileBatchWriter(OutputStream os) throws IOException {
+        this.out = new DataOutputStream(os);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.flush();
+    }
+
+    void frame(int z, int x, int y, int status, int flags, byte[] body) throws IOException {
+        int len = (body == null) ? 0 : body.length;
+        out.writeByte(z);
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeByte(status);
+        out.writeByte(flags);
+        out.writeInt(len);
+        if (len > 0)
+            out.write(body);
+        out.flush();
+    }
+}
@@ -0,0 +1,69 @@
+package com.spatiallens.Server.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.spatiallens.Server.service.TileSeedService;
+
+/**
+ * Admin endpoint untuk seeding tile cache layer Published.
+ * - POST   /api/admin/layers/{slug}/seed?minZoom=&maxZoom= → antrikan job
+ * - GET    /api/admin/layers/{slug}/seed → progres job terakhir
+ * - DELETE /api/admin/layers/{slug}/seed → batalkan job
+ */
+@RestController
+@RequestMapping("/api/admin/layers")
+public class TileSeedController {
+
+    private final TileSeedService seeder;
+
+    public TileSeedController(TileSeedService seeder) {
+        this.seeder = seeder;
+    }
+
+    @PostMapping("/{slug}/seed")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> start(
+            @PathVariable String slug,
+            @RequestParam(value = "minZoom", required = false) Integer minZoom,
+            @RequestParam(value = "maxZoom", required = false) Integer maxZoom) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(seeder.start(slug, minZoom, maxZoom));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(msg(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(msg(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{slug}/seed")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> status(@PathVariable String slug) {
+        return seeder.status(slug)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(msg("No seeding job")));
+    }
+
+    @DeleteMapping("/{slug}/seed")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> cancel(@PathVariable String slug) {
+        if (!seeder.cancel(slug)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(msg("No seeding job"));
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private static Map<String, String> msg(String m) {
+        return Map.of("message", m);
+    }
+}
@@ -1,6 +1,18 @@
 // src/main/java/com/spatiallens/Server/controller/TilesController.java
 package com.spatiallens.Server.controller;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.springframework.beans.factory.annotation.Value;
+
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -10,21 +22,48 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.spatiallens.Server.service.DbBusyException;
+import com.spatiallens.Server.service.LayerRegistry;
+import com.spatiallens.Server.service.LayerRegistry.Validator;
 import com.spatiallens.Server.service.MvtTileService;
 import com.spatiallens.Server.service.MvtTileService.TileResult;
+import com.spatiallens.Server.service.RasterFormat;
+import com.spatiallens.Server.service.WmsRasterService;
+import com.spatiallens.Server.service.WmsRasterService.WmsResult;
 
 @RestController
 public class TilesController {
 
     private final MvtTileService tiles;
+    private final WmsRasterService raster;
+    private final LayerRegistry registry;
+
+    /** Batas jumlah tile per request /tiles/batch. */
+    private final int batchMaxTiles;
 
-    public TilesController(MvtTileService tiles) {
+    public TilesController(MvtTileService tiles, WmsRasterService raster, LayerRegistry registry,
+            @Value("${tiles.batch.max-tiles:128}") int batchMaxTiles) {
         this.tiles = tiles;
+        this.raster = raster;
+        this.registry = registry;
+        this.batchMaxTiles = batchMaxTiles;
+    }
+
+    /** Body /tiles/batch: slug layer + daftar tile "z/x/y". */
+    public record TileBatchRequest(List<String> layers, List<String> tiles) {
     }
 
+    /** Batas jumlah slug pada tile komposit /tiles/{a,b,c}/z/x/y.pbf */
+    private static final int MAX_COMPOSITE_LAYERS = 32;
+
     // Satu mapping untuk .mvt dan .pbf
+    // {layerKey} boleh berisi beberapa slug dipisah koma → satu MVT multi-layer
     @GetMapping(value = {
             "/tiles/{layerKey}/{z}/{x}/{y}.{ext:mvt|pbf}",
             "/api/public/tiles/{layerKey}/{z}/{x}/{y}.{ext:mvt|pbf}"
@@ -34,7 +73,8 @@ public class TilesController {
             @PathVariable int z,
             @PathVariable int x,
             @PathVariable int y,
-            @PathVariable String ext) {
+            @PathVariable String ext,
+            @RequestHeader HttpHeaders requestHeaders) {
 
         // Validasi dasar & out-of-range: x,y ∈ [0, 2^z - 1]
         if (z < 0 || x < 0 || y < 0) {
@@ -46,17 +86,50 @@ public class TilesController {
         }
 
         boolean canAccessRestricted = hasAnyRole("ADMIN", "EDITOR");
-        TileResult res = tiles.getTile(slug, z, x, y, canAccessRestricted);
+        List<String> slugs = splitSlugs(slug);
+        if (slugs.isEmpty() || slugs.size() > MAX_COMPOSITE_LAYERS) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        // Tile tersimpan ter-gzip; klien tanpa gzip mendapat body yang di-decompress.
+        // Representasi berbeda → ETag berbeda (mvt-gz vs mvt).
+        boolean gzip = acceptsGzip(requestHeaders);
+
+        // Revalidasi: versi layer tidak berubah → 304 tanpa render/query
+        Validator validator = registry.validator(gzip ? "mvt-gz" : "mvt", slugs, canAccessRestricted).orElse(null);
+        if (ConditionalRequests.notModified(requestHeaders, validator)) {
+            HttpHeaders h = new HttpHeaders();
+            ConditionalRequests.apply(h, validator);
+            h.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+            h.add(HttpHeaders.CACHE_CONTROL, validator.publicPublished()
+                    ? ConditionalRequests.publicRevalidate().getHeaderValue()
+                    : CacheControl.noStore().getHeaderValue());
+            return new ResponseEntity<>(null, h, HttpStatus.NOT_MODIFIED);
+        }
+
+        TileResult res = (slugs.size() == 1)
+                ? tiles.getTile(slugs.get(0), z, x, y, canAccessRestricted)
+                : tiles.getCompositeTile(slugs, z, x, y, canAccessRestricted);
+
+        // Render gagal -> 204 no-store tanpa ETag/Last-Modified (jangan sampai direvalidasi jadi 304)
+        if (res.error()) {
+            HttpHeaders h = new HttpHeaders();
+            h.setCacheControl(CacheControl.noStore().getHeaderValue());
+            h.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+            return new ResponseEntity<>(null, h, HttpStatus.NO_CONTENT);
+        }
 
         // Empty -> 204 No Content
         if (res.empty()) {
             HttpHeaders h = new HttpHeaders();
-            // cache policy konservatif utk empty
+            // empty juga direvalidasi: edit fitur bisa mengisi tile ini
             if (res.publicPublished()) {
-                h.add(HttpHeaders.CACHE_CONTROL, "public, max-age=600");
+                h.add(HttpHeaders.CACHE_CONTROL, ConditionalRequests.publicRevalidate().getHeaderValue());
             } else {
                 h.add(HttpHeaders.CACHE_CONTROL, "no-store");
             }
+            ConditionalRequests.apply(h, validator);
+            h.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
             return new ResponseEntity<>(null, h, HttpStatus.NO_CONTENT);
         }
 
@@ -64,14 +137,252 @@ public class TilesController {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.parseMediaType("application/vnd.mapbox-vector-tile"));
         if (res.publicPublished()) {
-            // aman untuk di-cache edge/CDN
-            headers.add(HttpHeaders.CACHE_CONTROL, "public, max-age=86400, immutable");
+            // boleh di-cache edge/CDN, tapi direvalidasi dengan ETag versi/revisi layer
+            headers.add(HttpHeaders.CACHE_CONTROL, ConditionalRequests.publicRevalidate().getHeaderValue());
         } else {
             // Draft -> jangan di-cache
             headers.setCacheControl(CacheControl.noStore().getHeaderValue());
         }
+        ConditionalRequests.apply(headers, validator);
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(res.body(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(res.raw(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Tile raster 256px di grid XYZ Web Mercator, dirender dengan style layer.
+     * - Di-cache (memory + disk) dengan invalidasi versi layer yang sama seperti MVT.
+     * - ETag ikut style & revisi data; max-age pendek + must-revalidate → restyle/edit
+     *   terlihat paling lambat setelah max-age tsb (revalidasi dijawab 304 murah).
+     * - Format mengikuti ekstensi URL (.png/.webp/.jpg), tanpa negosiasi Accept → satu URL
+     *   selalu satu format (aman untuk CDN tanpa Vary). WebP tanpa writer → 404.
+     */
+    @GetMapping(value = {
+            "/raster/{slug}/{z}/{x}/{y}.{ext:png|webp|jpg}",
+            "/api/public/raster/{slug}/{z}/{x}/{y}.{ext:png|webp|jpg}"
+    })
+    public ResponseEntity<byte[]> getRasterTile(
+            @PathVariable String slug,
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            @PathVariable String ext,
+            @RequestHeader HttpHeaders requestHeaders) {
+
+        boolean canAccessRestricted = hasAnyRole("ADMIN", "EDITOR");
+
+        RasterFormat fmt = RasterFormat.negotiate(ext, null);
+        if (!fmt.extension().equals(ext))
+            return ResponseEntity.notFound().build();
+        Validator validator = registry.validator("raster", List.of(slug), canAccessRestricted)
+                .map(v -> (fmt == RasterFormat.PNG) ? v : ConditionalRequests.variant(v, fmt.extension()))
+                .orElse(null);
+        if (ConditionalRequests.notModified(requestHeaders, validator)) {
+            HttpHeaders h = new HttpHeaders();
+            ConditionalRequests.apply(h, validator);
+            h.add(HttpHeaders.CACHE_CONTROL, validator.publicPublished()
+                    ? ConditionalRequests.publicRevalidate().getHeaderValue()
+                    : CacheControl.noStore().getHeaderValue());
+            return new ResponseEntity<>(null, h, HttpStatus.NOT_MODIFIED);
+        }
+
+        WmsResult res = raster.getRasterTile(slug, z, x, y, canAccessRestricted, fmt);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(fmt.mediaType()));
+        if (res.error()) {
+            // render gagal → jangan di-cache & tanpa validator
+            headers.setCacheControl(CacheControl.noStore().getHeaderValue());
+            return new ResponseEntity<>(null, headers, HttpStatus.NO_CONTENT);
+        }
+        if (res.empty()) {
+            headers.add(HttpHeaders.CACHE_CONTROL, res.publicPublished()
+                    ? ConditionalRequests.publicRevalidate().getHeaderValue()
+                    : CacheControl.noStore().getHeaderValue());
+            ConditionalRequests.apply(headers, validator);
+            return new ResponseEntity<>(null, headers, HttpStatus.NO_CONTENT);
+        }
+        headers.add(HttpHeaders.CACHE_CONTROL, res.publicPublished()
+                ? ConditionalRequests.publicRevalidate().getHeaderValue()
+                : CacheControl.noStore().getHeaderValue());
+        ConditionalRequests.apply(headers, validator);
+        return new ResponseEntity<>(res.image(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Batch tile untuk prefetch viewport: satu POST berisi banyak z/x/y.
+     * - Body: {"layers": ["a", "b"], "tiles": ["14/13062/8120", ...]}
+     * - Tiap tile lewat jalur yang sama dengan GET single-tile (akses Draft, cache,
+     *   single-flight, admission) dan dikerjakan paralel di pool batch.
+     * - Response di-stream sebagai frame biner ({@link TileBatchWriter}) sesuai urutan selesai;
+     *   body frame ter-gzip bila Accept-Encoding gzip, selain itu MVT mentah.
+     * - Budget DB penuh → frame BUSY untuk tile tsb (tile lain tetap dikirim).
+     */
+    @PostMapping(value = "/tiles/batch", produces = TileBatchWriter.CONTENT_TYPE)
+    public ResponseEntity<StreamingResponseBody> getTileBatch(
+            @RequestBody TileBatchRequest request,
+            @RequestHeader HttpHeaders requestHeaders) {
+
+        if (request == null || request.layers() == null || request.tiles() == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        List<String> slugs = splitSlugs(String.join(",", request.layers()));
+        if (slugs.isEmpty() || slugs.size() > MAX_COMPOSITE_LAYERS) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        List<int[]> coords = parseTileList(request.tiles());
+        if (coords == null || coords.isEmpty() || coords.size() > batchMaxTiles) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        // dihitung di thread request (SecurityContext belum tentu ada di thread streaming)
+        boolean canAccessRestricted = hasAnyRole("ADMIN", "EDITOR");
+        boolean gzip = acceptsGzip(requestHeaders);
+
+        StreamingResponseBody body = out -> {
+            TileBatchWriter writer = new TileBatchWriter(out);
+
+            List<int[]> pending = new ArrayList<>(coords.size());
+            List<CompletableFuture<TileResult>> futures = new ArrayList<>(coords.size());
+            BlockingQueue<Integer> done = new LinkedBlockingQueue<>();
+            for (int[] c : coords) {
+                if (!inRange(c[0], c[1], c[2])) {
+                    writer.frame(c[0], c[1], c[2], TileBatchWriter.STATUS_EMPTY, 0, null);
+                    continue;
+                }
+                int idx = futures.size();
+                pending.add(c);
+                CompletableFuture<TileResult> f = tiles.getTileAsync(slugs, c[0], c[1], c[2], canAccessRestricted);
+                futures.add(f);
+                f.whenComplete((r, ex) -> done.add(idx));
+            }
+
+            try {
+                for (int n = 0; n < futures.size(); n++) {
+                    int idx = done.take();
+                    int[] c = pending.get(idx);
+                    writeBatchFrame(writer, c, futures.get(idx), gzip);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(false));
+            } catch (IOException e) {
+                // klien putus → sisa tile tidak perlu ditunggu
+                futures.forEach(f -> f.cancel(false));
+                throw e;
+            }
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(TileBatchWriter.CONTENT_TYPE));
+        headers.setCacheControl(CacheControl.noStore().getHeaderValue());
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    private static void writeBatchFrame(TileBatchWriter writer, int[] c, CompletableFuture<TileResult> f,
+            boolean gzip) throws IOException {
+        TileResult res;
+        try {
+            res = f.join();
+        } catch (Exception ex) {
+            int status = (ex.getCause() instanceof DbBusyException)
+                    ? TileBatchWriter.STATUS_BUSY
+                    : TileBatchWriter.STATUS_ERROR;
+            writer.frame(c[0], c[1], c[2], status, 0, null);
+            return;
+        }
 
-        return new ResponseEntity<>(res.body(), headers, HttpStatus.OK);
+        int flags = res.publicPublished() ? TileBatchWriter.FLAG_PUBLIC : 0;
+        if (res.error()) {
+            writer.frame(c[0], c[1], c[2], TileBatchWriter.STATUS_ERROR, 0, null);
+        } else if (res.empty()) {
+            writer.frame(c[0], c[1], c[2], TileBatchWriter.STATUS_EMPTY, flags, null);
+        } else if (gzip) {
+            writer.frame(c[0], c[1], c[2], TileBatchWriter.STATUS_DATA, flags | TileBatchWriter.FLAG_GZIP,
+                    res.body());
+        } else {
+            writer.frame(c[0], c[1], c[2], TileBatchWriter.STATUS_DATA, flags, res.raw());
+        }
+    }
+
+    /** ["z/x/y", ...] → [[z,x,y], ...] tanpa duplikat; format salah / z di luar 0..30 → null. */
+    private static List<int[]> parseTileList(List<String> raw) {
+        Set<String> seen = new LinkedHashSet<>();
+        List<int[]> out = new ArrayList<>();
+        for (String t : raw) {
+            if (t == null)
+                return null;
+            String[] parts = t.trim().split("/");
+            if (parts.length != 3)
+                return null;
+            int[] c = new int[3];
+            try {
+                for (int i = 0; i < 3; i++)
+                    c[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (c[0] < 0 || c[0] > 30)
+                return null;
+            if (seen.add(c[0] + "/" + c[1] + "/" + c[2]))
+                out.add(c);
+        }
+        return out;
+    }
+
+    /** x,y ∈ [0, 2^z - 1] (z sudah divalidasi 0..30). */
+    private static boolean inRange(int z, int x, int y) {
+        if (x < 0 || y < 0)
+            return false;
+        int maxIndex = 1 << z;
+        return x < maxIndex && y < maxIndex;
+    }
+
+    /** "a,b,,a" → [a, b] (urutan dipertahankan, duplikat dibuang). */
+    private List<String> splitSlugs(String layerKey) {
+        List<String> out = new ArrayList<>();
+        for (String part : layerKey.split(",")) {
+            String s = part.trim();
+            if (!s.isEmpty() && !out.contains(s))
+                out.add(s);
+        }
+        return out;
+    }
+
+    /** Accept-Encoding memuat gzip (atau *) dengan q > 0. */
+    private static boolean acceptsGzip(HttpHeaders requestHeaders) {
+        List<String> values = requestHeaders.get(HttpHeaders.ACCEPT_ENCODING);
+        if (values == null)
+            return false;
+
+        Boolean gzip = null;
+        Boolean wildcard = null;
+        for (String value : values) {
+            for (String token : value.split(",")) {
+                String[] parts = token.trim().split(";");
+                String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+                boolean allowed = true;
+                for (int i = 1; i < parts.length; i++) {
+                    String p = parts[i].trim();
+                    if (p.startsWith("q=")) {
+                        try {
+                            allowed = Double.parseDouble(p.substring(2).trim()) > 0;
+                        } catch (NumberFormatException e) {
+                            allowed = false;
+                        }
+                    }
+                }
+                if ("gzip".equals(coding) || "x-gzip".equals(coding))
+                    gzip = allowed;
+                else if ("*".equals(coding))
+                    wildcard = allowed;
+            }
+        }
+        return gzip != null ? gzip : Boolean.TRUE.equals(wildcard);
     }
 
     private boolean hasAnyRole(String... roles) {
@@ -81,6 +81,32 @@ public class LayerMeta {
     @Column
     private Integer maxzoom;
 
+    /** Cache version (bumped on re-import / status change) */
+    @Column(name = "cache_version", nullable = false)
+    @Builder.Default
+    private Long cacheVersion = 1L;
+
+    /** Data revision (bumped on every feature edit; part of HTTP validators only) */
+    @Column(name = "data_revision", nullable = false)
+    @Builder.Default
+    private Long dataRevision = 0L;
+
+    /** Zoom bands with generalized tables, e.g. "5,8,11" (null = none) */
+    @Column(name = "gen_zooms")
+    private String genZooms;
+
+    /** Point clustering for tiles z <= clusterMaxZoom (null = off) */
+    @Column(name = "cluster_max_zoom")
+    private Integer clusterMaxZoom;
+
+    /** Numeric props summed per cluster (comma-separated or JSON list) */
+    @Column(name = "cluster_props", columnDefinition = "text")
+    private String clusterProps;
+
+    /** Highest zoom rendered from PostGIS; deeper tiles are overzoomed (null = off) */
+    @Column(name = "data_max_zoom")
+    private Integer dataMaxZoom;
+
     /** Comma-separated or JSON whitelist of props for MVT */
     @Column(name = "props_whitelist", columnDefinition = "text")
     private String propsWhitelist;
@@ -86,11 +86,17 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/batas-admin/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/uploads/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/tiles/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/raster/**").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/tiles/batch").permitAll() // akses dicek per tile
                         .requestMatchers(HttpMethod.GET, "/api/public/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/layers/meta/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/layers/*/style").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/styles/**").permitAll()
 
+                        // Actuator: health publik, metrik hanya ADMIN
+                        .requestMatchers(HttpMethod.GET, "/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+
                         // AUTH
                         .requestMatchers("/api/auth/**").permitAll()
 
@@ -99,6 +105,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/layers").hasAnyRole("ADMIN", "EDITOR", "VIEWER")
                         .requestMatchers(HttpMethod.PUT, "/api/layers/*").hasAnyRole("ADMIN", "EDITOR")
                         .requestMatchers(HttpMethod.DELETE, "/api/layers/*").hasAnyRole("ADMIN", "EDITOR")
+                        .requestMatchers("/api/layers/*/features/**").hasAnyRole("ADMIN", "EDITOR")
 
                         // ADMIN
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
@@ -0,0 +1,93 @@
+package com.spatiallens.Server.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admission control di depan pool koneksi DB (Hikari).
+ * - INTERACTIVE (tile/WMS) dan BULK (export/import) punya budget concurrency
+ *   terpisah → export/import besar tidak bisa menghabiskan pool untuk peta.
+ * - Menunggu permit maksimal queue-timeout; lewat dari itu → {@link DbBusyException}
+ *   (503 + Retry-After) daripada antre tanpa batas.
+ * - BACKGROUND (seeding) memakai budget BULK tapi menunggu tanpa deadline.
+ * - Dengan virtual threads, request yang menunggu permit hampir tanpa biaya.
+ */
+@Service
+public class DbAdmission {
+
+    public enum Workload {
+        INTERACTIVE, BULK, BACKGROUND
+    }
+
+    private final Semaphore interactive;
+    private final Semaphore bulk;
+    private final long interactiveTimeoutMs;
+    private final long bulkTimeoutMs;
+    private final long interactiveRetryAfter;
+    private final long bulkRetryAfter;
+
+    public DbAdmission(
+            @Value("${db.admission.interactive.permits:7}") int interactivePermits,
+            @Value("${db.admission.interactive.queue-timeout-ms:2000}") long interactiveTimeoutMs,
+            @Value("${db.admission.interactive.retry-after-seconds:1}") long interactiveRetryAfter,
+            @Value("${db.admission.bulk.permits:2}") int bulkPermits,
+            @Value("${db.admission.bulk.queue-timeout-ms:10000}") long bulkTimeoutMs,
+            @Value("${db.admission.bulk.retry-after-seconds:30}") long bulkRetryAfter) {
+        this.interactive = new Semaphore(Math.max(1, interactivePermits), true);
+        this.bulk = new Semaphore(Math.max(1, bulkPermits), true);
+        this.interactiveTimeoutMs = interactiveTimeoutMs;
+        this.bulkTimeoutMs = bulkTimeoutMs;
+        this.interactiveRetryAfter = interactiveRetryAfter;
+        this.bulkRetryAfter = bulkRetryAfter;
+    }
+
+    /** Jalankan pekerjaan DB di bawah budget workload-nya. */
+    public <T> T run(Workload workload, Supplier<T> work) {
+        Semaphore permits = (workload == Workload.INTERACTIVE) ? interactive : bulk;
+        acquire(workload, permits);
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Varian {@link #run} untuk pekerjaan dengan checked exception (mis. import file). */
+    public <T> T call(Workload workload, Callable<T> work) throws Exception {
+        Semaphore permits = (workload == Workload.INTERACTIVE) ? interactive : bulk;
+        acquire(workload, permits);
+        try {
+            return work.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Permit tersedia per budget (untuk monitoring). */
+    public int available(Workload workload) {
+        return (workload == Workload.INTERACTIVE ? interactive : bulk).availablePermits();
+    }
+
+    private void acquire(Workload workload, Semaphore permits) {
+        try {
+            if (workload == Workload.BACKGROUND) {
+                permits.acquire();
+                return;
+            }
+            long timeout = (workload == Workload.INTERACTIVE) ? interactiveTimeoutMs : bulkTimeoutMs;
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new DbBusyException(workload,
+                        workload == Workload.INTERACTIVE ? interactiveRetryAfter : bulkRetryAfter);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for DB permit (" + workload + ")");
+        }
+    }
+}
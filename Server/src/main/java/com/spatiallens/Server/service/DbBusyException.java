@@ -0,0 +1,25 @@
+package com.spatiallens.Server.service;
+
+/**
+ * Budget koneksi DB untuk kelas workload habis sampai batas antre.
+ * Dipetakan ke 503 + Retry-After (bukan hasil kosong yang bisa ter-cache).
+ */
+public class DbBusyException extends RuntimeException {
+
+    private final DbAdmission.Workload workload;
+    private final long retryAfterSeconds;
+
+    public DbBusyException(DbAdmission.Workload workload, long retryAfterSeconds) {
+        super("Database busy (" + workload + "), retry after " + retryAfterSeconds + "s");
+        this.workload = workload;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public DbAdmission.Workload getWorkload() {
+        return workload;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
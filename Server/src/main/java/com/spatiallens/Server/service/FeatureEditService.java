@@ -0,0 +1,401 @@
+package com.spatiallens.Server.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spatiallens.Server.service.LayerRegistry.LayerSnapshot;
+
+/**
+ * Edit fitur langsung pada tabel gis.<slug> (insert/update/delete/batch).
+ * - Satu batch = satu transaksi; gagal di tengah → tidak ada yang berubah.
+ * - Tiap operasi mengembalikan bbox lama/baru → hanya tile di area itu yang
+ *   di-invalidasi (semua zoom); cache tile lain tetap hangat (cache_version tetap).
+ * - data_revision naik → ETag tile/WMS/GeoJSON berubah sehingga klien merevalidasi.
+ * - Key properties di-uppercase seperti import (SQL tile/WMS membaca props->>'KEY');
+ *   key baru ditambahkan ke whitelist layer agar ikut ter-render.
+ * - Tabel generalisasi, coverage index, feature_count & bbox layer ikut disinkronkan.
+ * - Satu operasi berjalan di budget INTERACTIVE, batch di budget BULK {@link DbAdmission}.
+ */
+@Service
+public class FeatureEditService {
+
+    private static final double HALF_WORLD = 20037508.342789244;
+
+    /** Key properti baru (belum di whitelist) → dipakai apa adanya sebagai nama kolom SQL tile. */
+    private static final Pattern NEW_KEY = Pattern.compile("[A-Z0-9_]{1,63}");
+
+    /** Kolom bbox 3857 (invalidasi/coverage) + 4326 (extent layer) dari sebuah fitur. */
+    private static final String BOX_COLUMNS = "ST_XMin(geom_3857) AS x0, ST_YMin(geom_3857) AS y0," +
+            " ST_XMax(geom_3857) AS x1, ST_YMax(geom_3857) AS y1," +
+            " ST_XMin(geom) AS lon0, ST_YMin(geom) AS lat0, ST_XMax(geom) AS lon1, ST_YMax(geom) AS lat1";
+
+    private static final RowMapper<Box> BOX_MAPPER = (rs, rowNum) -> new Box(
+            rs.getDouble("x0"), rs.getDouble("y0"), rs.getDouble("x1"), rs.getDouble("y1"),
+            rs.getDouble("lon0"), rs.getDouble("lat0"), rs.getDouble("lon1"), rs.getDouble("lat1"));
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final LayerRegistry registry;
+    private final TileCacheService tileCache;
+    private final LayerImportService importService;
+    private final DbAdmission admission;
+    private final ObjectMapper om = new ObjectMapper();
+
+    /** Batas operasi per batch. */
+    @Value("${features.edit.max-batch:500}")
+    private int maxBatch;
+
+    /** Batas tile coverage yang disentuh satu edit; lebih → coverage index layer dibuang. */
+    @Value("${features.edit.max-coverage-tiles:100000}")
+    private int maxCoverageTiles;
+
+    public FeatureEditService(JdbcTemplate jdbc, TransactionTemplate tx, LayerRegistry registry,
+            TileCacheService tileCache, LayerImportService importService, DbAdmission admission) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.registry = registry;
+        this.tileCache = tileCache;
+        this.importService = importService;
+        this.admission = admission;
+    }
+
+    /** Fitur masukan (GeoJSON): geometry/properties null pada update = tidak diubah. */
+    public record FeatureInput(Long id, Map<String, Object> geometry, Map<String, Object> properties) {
+    }
+
+    public record EditBatch(List<FeatureInput> insert, List<FeatureInput> update, List<Long> delete) {
+    }
+
+    public record EditResult(String slug, List<Long> inserted, int updated, int deleted, int tilesInvalidated,
+            long revision) {
+    }
+
+    /** bbox fitur: EPSG:3857 (x/y) + EPSG:4326 (lon/lat). */
+    private record Box(double x0, double y0, double x1, double y1,
+            double lon0, double lat0, double lon1, double lat1) {
+    }
+
+    // ------------------------------------------------------------
+    // Public API
+    // ------------------------------------------------------------
+
+    public EditResult insert(String slug, FeatureInput feature) {
+        return apply(slug, new EditBatch(List.of(feature), List.of(), List.of()));
+    }
+
+    public EditResult update(String slug, long id, FeatureInput feature) {
+        FeatureInput f = new FeatureInput(id, feature.geometry(), feature.properties());
+        return apply(slug, new EditBatch(List.of(), List.of(f), List.of()));
+    }
+
+    public EditResult delete(String slug, long id) {
+        return apply(slug, new EditBatch(List.of(), List.of(), List.of(id)));
+    }
+
+    /**
+     * Jalankan batch edit dalam satu transaksi lalu invalidasi tile terdampak.
+     * @throws NoSuchElementException layer / fitur tidak ada
+     * @throws IllegalArgumentException input tidak valid
+     */
+    public EditResult apply(String slug, EditBatch batch) {
+        LayerSnapshot lm = registry.get(slug).orElseThrow(() -> new NoSuchElementException("Layer tidak ditemukan"));
+        if (!lm.hasTable())
+            throw new IllegalArgumentException("Metadata tabel layer belum lengkap");
+
+        List<FeatureInput> inserts = batch.insert() != null ? batch.insert() : List.of();
+        List<FeatureInput> updates = batch.update() != null ? batch.update() : List.of();
+        List<Long> deletes = batch.delete() != null ? batch.delete() : List.of();
+        int ops = inserts.size() + updates.size() + deletes.size();
+        if (ops == 0)
+            throw new IllegalArgumentException("Batch kosong");
+        if (ops > maxBatch)
+            throw new IllegalArgumentException("Batch melebihi " + maxBatch + " operasi");
+
+        DbAdmission.Workload workload = (ops == 1) ? DbAdmission.Workload.INTERACTIVE : DbAdmission.Workload.BULK;
+        Outcome out = admission.run(workload, () -> tx.execute(status -> write(lm, inserts, updates, deletes)));
+
+        // setelah commit: snapshot (revisi + coverage) dulu, baru cache → render yang berpacu
+        // dengan edit tidak menaruh tile basi (lihat MvtTileService.putIfCurrent)
+        if (out.dropCoverage) {
+            registry.refresh(slug);
+            registry.dropCoverage(slug);
+        } else {
+            registry.refreshAfterEdit(slug, out.addedXs, out.addedYs);
+        }
+        int invalidated = tileCache.invalidateArea(slug, out.dirty,
+                WmsRasterService.rasterPadFraction(lm.wmsStyle()));
+
+        return new EditResult(slug, out.inserted, updates.size(), deletes.size(), invalidated, out.revision);
+    }
+
+    // ------------------------------------------------------------
+    // Transaksi
+    // ------------------------------------------------------------
+
+    private static final class Outcome {
+        final List<Long> inserted = new ArrayList<>();
+        final List<double[]> dirty = new ArrayList<>();
+        final List<Box> added = new ArrayList<>();
+        final List<Box> removed = new ArrayList<>();
+        final Set<Long> geometryIds = new LinkedHashSet<>();
+        final Set<String> newKeys = new LinkedHashSet<>();
+        int[] addedXs = new int[0];
+        int[] addedYs = new int[0];
+        boolean dropCoverage;
+        long revision;
+    }
+
+    private Outcome write(LayerSnapshot lm, List<FeatureInput> inserts, List<FeatureInput> updates,
+            List<Long> deletes) {
+        String q = lm.qualifiedTable();
+        Outcome out = new Outcome();
+        Set<String> known = new HashSet<>();
+        for (String k : lm.whitelist())
+            known.add(k.toUpperCase(Locale.ROOT).trim());
+
+        for (FeatureInput f : inserts) {
+            if (f == null || f.geometry() == null)
+                throw new IllegalArgumentException("Insert butuh geometry");
+            Map<String, Object> row = jdbc.queryForMap("INSERT INTO " + q + " (geom, props)" +
+                    " VALUES (ST_SetSRID(ST_GeomFromGeoJSON(?), 4326), ?::jsonb)" +
+                    " RETURNING id, " + BOX_COLUMNS, toJson(f.geometry()),
+                    toJson(normalizeProps(f.properties(), known, out.newKeys)));
+            long id = ((Number) row.get("id")).longValue();
+            out.inserted.add(id);
+            out.geometryIds.add(id);
+            addBox(out.added, out.dirty, boxOf(row));
+        }
+
+        for (FeatureInput f : updates) {
+            if (f == null || f.id() == null)
+                throw new IllegalArgumentException("Update butuh id");
+            if (f.geometry() == null && f.properties() == null)
+                throw new IllegalArgumentException("Update " + f.id() + " tanpa geometry/properties");
+            Box before = lockBox(q, f.id());
+            Box after = jdbc.queryForObject("UPDATE " + q + " SET" +
+                    " geom = COALESCE(ST_SetSRID(ST_GeomFromGeoJSON(?), 4326), geom)," +
+                    " props = COALESCE(?::jsonb, props)" +
+                    " WHERE id = ? RETURNING " + BOX_COLUMNS,
+                    BOX_MAPPER, toJson(f.geometry()), toJson(normalizeProps(f.properties(), known, out.newKeys)),
+                    f.id());
+            if (f.geometry() != null) {
+                out.geometryIds.add(f.id());
+                addBox(out.removed, out.dirty, before);
+                addBox(out.added, out.dirty, after);
+            } else {
+                // hanya props → tile yang sama, isinya berubah
+                out.dirty.add(new double[] { after.x0(), after.y0(), after.x1(), after.y1() });
+            }
+        }
+
+        for (Long id : deletes) {
+            if (id == null)
+                throw new IllegalArgumentException("Delete butuh id");
+            List<Box> gone = jdbc.query("DELETE FROM " + q + " WHERE id = ? RETURNING " + BOX_COLUMNS,
+                    BOX_MAPPER, id);
+            if (gone.isEmpty())
+                throw new NoSuchElementException("Fitur " + id + " tidak ditemukan");
+            out.geometryIds.add(id);
+            addBox(out.removed, out.dirty, gone.get(0));
+        }
+
+        importService.syncGeneralized(q, lm.genZooms(), out.geometryIds);
+        updateCoverage(lm, out);
+        updateLayerRow(lm, out, inserts.size() - deletes.size());
+        extendWhitelist(lm, out);
+        return out;
+    }
+
+    /**
+     * Key properties → uppercase (sama dengan LayerImportService.extractProps).
+     * - Key yang belum ada di whitelist harus [A-Z0-9_] dan dicatat ke newKeys.
+     * - Dua key yang sama setelah uppercase → IllegalArgumentException.
+     */
+    static Map<String, Object> normalizeProps(Map<String, Object> props, Set<String> known,
+            Set<String> newKeys) {
+        if (props == null)
+            return null;
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : props.entrySet()) {
+            String key = (e.getKey() == null) ? "" : e.getKey().toUpperCase(Locale.ROOT).trim();
+            if (!known.contains(key)) {
+                if (!NEW_KEY.matcher(key).matches())
+                    throw new IllegalArgumentException("Nama properti tidak valid: " + e.getKey());
+                newKeys.add(key);
+            }
+            if (out.containsKey(key))
+                throw new IllegalArgumentException("Properti duplikat: " + key);
+            out.put(key, e.getValue());
+        }
+        return out;
+    }
+
+    private Box lockBox(String q, long id) {
+        List<Box> rows = jdbc.query("SELECT " + BOX_COLUMNS + " FROM " + q + " WHERE id = ? FOR UPDATE",
+                BOX_MAPPER, id);
+        if (rows.isEmpty())
+            throw new NoSuchElementException("Fitur " + id + " tidak ditemukan");
+        return rows.get(0);
+    }
+
+    /**
+     * Coverage index (zoom dasar): +1 untuk tile bbox baru, -1 untuk bbox lama.
+     * Layer tanpa index dilewati; edit raksasa → index layer dibuang (fallback bbox).
+     */
+    private void updateCoverage(LayerSnapshot lm, Outcome out) {
+        TileCoverage coverage = lm.coverage();
+        if (coverage == null)
+            return;
+        int z = coverage.maxZoom();
+
+        long cells = 0;
+        for (Box b : out.added)
+            cells += tileRange(b, z)[4];
+        for (Box b : out.removed)
+            cells += tileRange(b, z)[4];
+        if (cells > maxCoverageTiles) {
+            jdbc.update("DELETE FROM layer_tile_coverage WHERE layer_slug = ?", lm.slug());
+            out.dropCoverage = true;
+            return;
+        }
+
+        List<int[]> plus = new ArrayList<>();
+        List<int[]> minus = new ArrayList<>();
+        for (Box b : out.added)
+            addTiles(tileRange(b, z), plus);
+        for (Box b : out.removed)
+            addTiles(tileRange(b, z), minus);
+
+        jdbc.batchUpdate("INSERT INTO layer_tile_coverage (layer_slug, z, x, y, feature_count)" +
+                " VALUES (?, ?, ?, ?, 1)" +
+                " ON CONFLICT (layer_slug, z, x, y)" +
+                " DO UPDATE SET feature_count = layer_tile_coverage.feature_count + 1",
+                plus, 500, (ps, t) -> {
+                    ps.setString(1, lm.slug());
+                    ps.setInt(2, z);
+                    ps.setInt(3, t[0]);
+                    ps.setInt(4, t[1]);
+                });
+        if (!minus.isEmpty()) {
+            jdbc.batchUpdate("UPDATE layer_tile_coverage SET feature_count = feature_count - 1" +
+                    " WHERE layer_slug = ? AND z = ? AND x = ? AND y = ?",
+                    minus, 500, (ps, t) -> {
+                        ps.setString(1, lm.slug());
+                        ps.setInt(2, z);
+                        ps.setInt(3, t[0]);
+                        ps.setInt(4, t[1]);
+                    });
+            jdbc.update("DELETE FROM layer_tile_coverage WHERE layer_slug = ? AND feature_count <= 0", lm.slug());
+        }
+
+        out.addedXs = new int[plus.size()];
+        out.addedYs = new int[plus.size()];
+        for (int i = 0; i < plus.size(); i++) {
+            out.addedXs[i] = plus.get(i)[0];
+            out.addedYs[i] = plus.get(i)[1];
+        }
+    }
+
+    /** data_revision + updated_at (Last-Modified) + feature_count + perluas bbox layer dengan fitur baru. */
+    private void updateLayerRow(LayerSnapshot lm, Outcome out, int featureDelta) {
+        out.revision = jdbc.queryForObject("UPDATE layers SET data_revision = data_revision + 1, updated_at = now()," +
+                " feature_count = GREATEST(0, COALESCE(feature_count, 0) + ?)" +
+                " WHERE slug = ? RETURNING data_revision", Long.class, featureDelta, lm.slug());
+
+        if (out.added.isEmpty())
+            return;
+        double lon0 = Double.MAX_VALUE, lat0 = Double.MAX_VALUE;
+        double lon1 = -Double.MAX_VALUE, lat1 = -Double.MAX_VALUE;
+        for (Box b : out.added) {
+            lon0 = Math.min(lon0, b.lon0());
+            lat0 = Math.min(lat0, b.lat0());
+            lon1 = Math.max(lon1, b.lon1());
+            lat1 = Math.max(lat1, b.lat1());
+        }
+        jdbc.update("UPDATE layers SET bbox = ST_MakeEnvelope(" +
+                " LEAST(COALESCE(ST_XMin(bbox), ?), ?), LEAST(COALESCE(ST_YMin(bbox), ?), ?)," +
+                " GREATEST(COALESCE(ST_XMax(bbox), ?), ?), GREATEST(COALESCE(ST_YMax(bbox), ?), ?), 4326)" +
+                " WHERE slug = ?",
+                lon0, lon0, lat0, lat0, lon1, lon1, lat1, lat1, lm.slug());
+    }
+
+    /** Key properti baru → tambahkan ke props_whitelist (snapshot dibangun ulang setelah commit). */
+    private void extendWhitelist(LayerSnapshot lm, Outcome out) {
+        if (out.newKeys.isEmpty())
+            return;
+        List<String> whitelist = new ArrayList<>(lm.whitelist());
+        whitelist.addAll(out.newKeys);
+        try {
+            jdbc.update("UPDATE layers SET props_whitelist = ? WHERE slug = ?",
+                    om.writeValueAsString(whitelist), lm.slug());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------
+
+    private static void addBox(List<Box> target, List<double[]> dirty, Box b) {
+        target.add(b);
+        dirty.add(new double[] { b.x0(), b.y0(), b.x1(), b.y1() });
+    }
+
+    private static Box boxOf(Map<String, Object> row) {
+        return new Box(num(row, "x0"), num(row, "y0"), num(row, "x1"), num(row, "y1"),
+                num(row, "lon0"), num(row, "lat0"), num(row, "lon1"), num(row, "lat1"));
+    }
+
+    private static double num(Map<String, Object> row, String key) {
+        return ((Number) row.get(key)).doubleValue();
+    }
+
+    /** Rentang tile zoom z yang disentuh bbox (EPSG:3857): [x0, x1, y0, y1, jumlah]. */
+    private static long[] tileRange(Box b, int z) {
+        int n = 1 << z;
+        double size = 2 * HALF_WORLD / n;
+        long x0 = clamp((int) Math.floor((b.x0() + HALF_WORLD) / size), n);
+        long x1 = clamp((int) Math.floor((b.x1() + HALF_WORLD) / size), n);
+        long y0 = clamp((int) Math.floor((HALF_WORLD - b.y1()) / size), n);
+        long y1 = clamp((int) Math.floor((HALF_WORLD - b.y0()) / size), n);
+        return new long[] { x0, x1, y0, y1, (x1 - x0 + 1) * (y1 - y0 + 1) };
+    }
+
+    private static void addTiles(long[] r, List<int[]> out) {
+        for (long x = r[0]; x <= r[1]; x++) {
+            for (long y = r[2]; y <= r[3]; y++)
+                out.add(new int[] { (int) x, (int) y });
+        }
+    }
+
+    private static int clamp(int v, int n) {
+        return Math.max(0, Math.min(n - 1, v));
+    }
+
+    private String toJson(Map<String, Object> value) {
+        if (value == null)
+            return null;
+        try {
+            return om.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON tidak valid: " + e.getOriginalMessage());
+        }
+    }
+}
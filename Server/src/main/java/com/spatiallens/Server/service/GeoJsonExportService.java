@@ -1,12 +1,9 @@
 package com.spatiallens.Server.service;
 
-import java.util.Optional;
-
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import com.spatiallens.Server.model.LayerMeta;
-import com.spatiallens.Server.repository.LayerMetaRepository;
+import com.spatiallens.Server.service.LayerRegistry.LayerSnapshot;
 
 /**
  * Service untuk export layer sebagai GeoJSON.
@@ -16,14 +13,24 @@ import com.spatiallens.Server.repository.LayerMetaRepository;
 public class GeoJsonExportService {
 
     private final JdbcTemplate jdbc;
-    private final LayerMetaRepository metaRepo;
+    private final LayerRegistry registry;
+    private final LayerMetrics metrics;
+    private final DbAdmission admission;
 
-    public GeoJsonExportService(JdbcTemplate jdbc, LayerMetaRepository metaRepo) {
+    public GeoJsonExportService(JdbcTemplate jdbc, LayerRegistry registry, LayerMetrics metrics,
+            DbAdmission admission) {
         this.jdbc = jdbc;
-        this.metaRepo = metaRepo;
+        this.registry = registry;
+        this.metrics = metrics;
+        this.admission = admission;
     }
 
-    public record GeoJsonResult(String json, boolean empty, boolean publicPublished) {
+    /** error = export gagal (FeatureCollection kosong pengganti) → jangan di-cache / diberi validator. */
+    public record GeoJsonResult(String json, boolean empty, boolean publicPublished, boolean error) {
+
+        public GeoJsonResult(String json, boolean empty, boolean publicPublished) {
+            this(json, empty, publicPublished, false);
+        }
     }
 
     /**
@@ -33,13 +40,32 @@ public class GeoJsonExportService {
      * - Transform ke EPSG:4326 untuk compatibility
      */
     public GeoJsonResult getGeoJson(String slug, String bboxParam, boolean canAccessRestricted) {
-        Optional<LayerMeta> opt = metaRepo.findBySlug(slug);
-        if (opt.isEmpty()) {
+        long t0 = System.nanoTime();
+        LayerSnapshot lm = registry.get(slug).orElse(null);
+        String layer = (lm != null) ? slug : LayerMetrics.UNKNOWN_LAYER;
+
+        try {
+            GeoJsonResult res = resolveGeoJson(lm, bboxParam, canAccessRestricted);
+            metrics.request(LayerMetrics.GEOJSON, layer, res.empty() ? "empty" : "data", t0);
+            return res;
+        } catch (DbBusyException busy) {
+            metrics.request(LayerMetrics.GEOJSON, layer, "shed", t0);
+            throw busy;
+        } catch (Exception ex) {
+            // Fail-closed → FeatureCollection kosong bertanda error
+            metrics.error(LayerMetrics.GEOJSON, layer, ex);
+            metrics.request(LayerMetrics.GEOJSON, layer, "error", t0);
+            System.err.println("[GeoJSON] Export gagal " + slug + ": " + ex.getMessage());
+            return new GeoJsonResult(emptyFeatureCollection(), true, lm != null && lm.published(), true);
+        }
+    }
+
+    private GeoJsonResult resolveGeoJson(LayerSnapshot lm, String bboxParam, boolean canAccessRestricted) {
+        if (lm == null) {
             return new GeoJsonResult(emptyFeatureCollection(), true, false);
         }
 
-        LayerMeta lm = opt.get();
-        boolean isPublished = "Published".equalsIgnoreCase(lm.getStatus());
+        boolean isPublished = lm.published();
         boolean publicPublished = isPublished;
 
         // Access control
@@ -48,18 +74,42 @@ public class GeoJsonExportService {
         }
 
         // Validate metadata
-        if (isBlank(lm.getSchemaName()) || isBlank(lm.getTableName()) || isBlank(lm.getGeomColumn())) {
+        if (!lm.hasTable()) {
             return new GeoJsonResult(emptyFeatureCollection(), true, publicPublished);
         }
 
-        final String qualified = safeIdent(lm.getSchemaName()) + "." + safeIdent(lm.getTableName());
-        final String geomCol = safeIdent(lm.getGeomColumn());
+        // bbox tidak valid → export tanpa filter (perilaku lama)
+        double[] bbox = parseBbox(bboxParam);
+
+        // export = workload BULK → tidak bisa memonopoli pool koneksi tile
+        String json = admission.run(DbAdmission.Workload.BULK, () -> {
+            long tDb = System.nanoTime();
+            try {
+                return bbox == null
+                        ? jdbc.queryForObject(lm.exportSql(), String.class)
+                        : jdbc.queryForObject(lm.exportBboxSql(), String.class, bbox[0], bbox[1], bbox[2], bbox[3]);
+            } finally {
+                metrics.db(LayerMetrics.GEOJSON, lm.slug(), tDb);
+            }
+        });
+        if (json == null || json.isBlank()) {
+            return new GeoJsonResult(emptyFeatureCollection(), true, publicPublished);
+        }
+        metrics.bytes(LayerMetrics.GEOJSON, lm.slug(), json.length());
+        return new GeoJsonResult(json, false, publicPublished);
+    }
 
-        // Build query with optional bbox filter
-        String whereClause = buildWhereClause(bboxParam, geomCol);
+    /**
+     * SQL export GeoJSON untuk satu layer (dipakai {@link LayerRegistry}).
+     * - withBbox=true → parameter minLon, minLat, maxLon, maxLat (EPSG:4326).
+     */
+    static String buildExportSql(String qualified, String geomCol, boolean withBbox) {
+        String whereClause = withBbox
+                ? "WHERE ST_Intersects(ST_Transform(t.%s, 4326), ST_MakeEnvelope(?, ?, ?, ?, 4326))"
+                        .formatted(geomCol)
+                : "";
 
-        // Query untuk generate GeoJSON FeatureCollection
-        String sql = String.format("""
+        return String.format("""
                 SELECT jsonb_build_object(
                     'type', 'FeatureCollection',
                     'features', COALESCE(jsonb_agg(feature), '[]'::jsonb)
@@ -76,54 +126,32 @@ public class GeoJsonExportService {
                     LIMIT 10000
                 ) AS features
                 """, geomCol, qualified, whereClause);
-
-        try {
-            String json = jdbc.queryForObject(sql, String.class);
-            if (json == null || json.isBlank()) {
-                return new GeoJsonResult(emptyFeatureCollection(), true, publicPublished);
-            }
-            return new GeoJsonResult(json, false, publicPublished);
-        } catch (Exception ex) {
-            // Fail-closed
-            return new GeoJsonResult(emptyFeatureCollection(), true, publicPublished);
-        }
     }
 
     // --- Helpers ---
 
-    private String buildWhereClause(String bboxParam, String geomCol) {
+    private double[] parseBbox(String bboxParam) {
         if (bboxParam == null || bboxParam.isBlank()) {
-            return "";
+            return null;
         }
 
         try {
             String[] parts = bboxParam.split(",");
             if (parts.length != 4) {
-                return "";
+                return null;
             }
 
-            double minLon = Double.parseDouble(parts[0].trim());
-            double minLat = Double.parseDouble(parts[1].trim());
-            double maxLon = Double.parseDouble(parts[2].trim());
-            double maxLat = Double.parseDouble(parts[3].trim());
-
-            // Create bbox geometry in EPSG:4326
-            return String.format(
-                    "WHERE ST_Intersects(ST_Transform(t.%s, 4326), ST_MakeEnvelope(%f, %f, %f, %f, 4326))",
-                    geomCol, minLon, minLat, maxLon, maxLat);
+            return new double[] {
+                    Double.parseDouble(parts[0].trim()),
+                    Double.parseDouble(parts[1].trim()),
+                    Double.parseDouble(parts[2].trim()),
+                    Double.parseDouble(parts[3].trim())
+            };
         } catch (Exception e) {
-            return "";
+            return null;
         }
     }
 
-    private String safeIdent(String ident) {
-        return ident.replaceAll("[^A-Za-z0-9_]", "_");
-    }
-
-    private boolean isBlank(String s) {
-        return s == null || s.trim().isEmpty();
-    }
-
     private String emptyFeatureCollection() {
         return "{\"type\":\"FeatureCollection\",\"features\":[]}";
     }
@@ -0,0 +1,39 @@
+package com.spatiallens.Server.service;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.precision.GeometryPrecisionReducer;
+
+/**
+ * Snap koordinat (EPSG:4326) ke grid desimal saat import.
+ * - 7 desimal ≈ 1 cm di ekuator; 6 ≈ 11 cm.
+ * - Titik berulang hasil snap dibuang; ring/garis yang kolaps dibuang.
+ * - Poligon: topologi dirapikan (snap-rounding); gagal → snap per titik.
+ * - Hasil kosong → null (feature degenerate, tidak disimpan).
+ */
+final class GeometryQuantizer {
+
+    private final GeometryPrecisionReducer reducer;
+    private final GeometryPrecisionReducer pointwise;
+
+    GeometryQuantizer(int decimals) {
+        PrecisionModel pm = new PrecisionModel(Math.pow(10, decimals));
+        this.reducer = new GeometryPrecisionReducer(pm);
+        this.pointwise = new GeometryPrecisionReducer(pm);
+        this.pointwise.setPointwise(true);
+    }
+
+    Geometry apply(Geometry g) {
+        Geometry out;
+        try {
+            out = reducer.reduce(g);
+        } catch (RuntimeException ex) {
+            // input tidak valid yang tidak bisa dirapikan overlay
+            out = pointwise.reduce(g);
+        }
+        if (out == null || out.isEmpty())
+            return null;
+        out.setSRID(g.getSRID());
+        return out;
+    }
+}
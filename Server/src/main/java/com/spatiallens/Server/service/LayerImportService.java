@@ -19,12 +19,17 @@ import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.geojson.feature.FeatureJSON;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
 import org.locationtech.jts.io.WKBWriter;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.type.PropertyDescriptor;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -39,29 +44,100 @@ public class LayerImportService {
 
     private final JdbcTemplate jdbc;
     private final LayerMetaRepository metaRepo;
+    private final TileCacheService tileCache;
+    private final LayerRegistry registry;
+    private final DbAdmission admission;
     private final ObjectMapper om = new ObjectMapper();
 
-    public LayerImportService(JdbcTemplate jdbc, LayerMetaRepository metaRepo) {
+    /** Resolusi Web Mercator (meter/pixel) di zoom 0 untuk tile 256px. */
+    private static final double RES_Z0 = 156543.03392804097;
+
+    /** Zoom band tabel generalisasi, mis. "5,8,11" (kosong = nonaktif). */
+    @Value("${tiles.generalize.bands:5,8,11}")
+    private String generalizeBands;
+
+    /** Toleransi simplifikasi dalam pixel layar pada zoom tertinggi band. */
+    @Value("${tiles.generalize.pixel-tolerance:0.5}")
+    private double generalizePixelTolerance;
+
+    /** Batas jumlah fitur untuk ST_CoverageSimplify (satu window seluruh layer di memori). */
+    @Value("${tiles.generalize.coverage-max-features:50000}")
+    private long coverageSimplifyMaxFeatures;
+
+    /** Zoom dasar coverage index (tile berisi data); negatif = nonaktif. */
+    @Value("${tiles.coverage.zoom:12}")
+    private int coverageZoom;
+
+    /** Batas jumlah pasangan (fitur × tile) saat membangun coverage; lebih → tanpa index. */
+    @Value("${tiles.coverage.max-cells:5000000}")
+    private long coverageMaxCells;
+
+    /** Batas bawah data maxzoom (di atasnya tile di-overzoom dari parent). */
+    @Value("${tiles.overzoom.min-data-zoom:14}")
+    private int minDataZoom;
+
+    /** Jarak khas data harus >= sekian unit tile (extent 4096) di data maxzoom. */
+    private static final double OVERZOOM_DETAIL_UNITS = 16;
+
+    /** Presisi koordinat default saat import (desimal derajat); negatif (default) = simpan apa adanya. */
+    @Value("${import.precision.decimals:-1}")
+    private int precisionDecimals;
+
+    public LayerImportService(JdbcTemplate jdbc, LayerMetaRepository metaRepo, TileCacheService tileCache,
+            LayerRegistry registry, DbAdmission admission) {
         this.jdbc = jdbc;
         this.metaRepo = metaRepo;
+        this.tileCache = tileCache;
+        this.registry = registry;
+        this.admission = admission;
     }
 
     // ------------------------------------------------------------
     // Public API
     // ------------------------------------------------------------
 
-    public record ImportResult(String slug, String table, long count) {
+    /**
+     * Hasil import + efek quantization koordinat.
+     * - vertices/wkbBytes: sebelum (in) vs sesudah (out) snap ke grid.
+     * - dropped: feature yang kolaps jadi kosong setelah snap.
+     */
+    public record ImportResult(String slug, String table, long count, Integer precision,
+            long verticesIn, long verticesOut, long wkbBytesIn, long wkbBytesOut, long dropped) {
+
+        /** Rasio ukuran WKB sesudah/sebelum (1.0 = tanpa pengurangan). */
+        public double reductionRatio() {
+            return (wkbBytesIn > 0) ? (double) wkbBytesOut / wkbBytesIn : 1.0;
+        }
     }
 
     /**
      * Jalankan impor ke PostGIS dan daftarkan/Update metadata di tabel "layers".
      * - sumber dari upload.rawPath (zip shp atau .geojson)
      * - tabel target: gis.<slug>
+     * - berjalan di bawah budget BULK {@link DbAdmission}: import paralel dibatasi
+     *   agar tidak menghabiskan pool koneksi tile; penuh → {@link DbBusyException}
      */
     public ImportResult importAndRegister(LayerUpload upload) throws Exception {
+        return importAndRegister(upload, null);
+    }
+
+    /**
+     * Sama seperti {@link #importAndRegister(LayerUpload)} dengan presisi koordinat eksplisit.
+     * - precision = jumlah desimal derajat (0..15); negatif = tanpa quantization;
+     *   null = default import.precision.decimals
+     */
+    public ImportResult importAndRegister(LayerUpload upload, Integer precision) throws Exception {
         if (upload == null || !StringUtils.hasText(upload.getRawPath())) {
             throw new IllegalArgumentException("Upload/rawPath kosong");
         }
+        int decimals = (precision != null) ? precision : precisionDecimals;
+        if (decimals > 15) {
+            throw new IllegalArgumentException("Presisi maksimal 15 desimal");
+        }
+        return admission.call(DbAdmission.Workload.BULK, () -> doImport(upload, decimals));
+    }
+
+    private ImportResult doImport(LayerUpload upload, int decimals) throws Exception {
 
         final String slug = upload.getSlug();
         final String safeTable = toIdent(slug);
@@ -74,15 +150,25 @@ public class LayerImportService {
         Path source = Paths.get(upload.getRawPath());
         String lower = source.getFileName().toString().toLowerCase(Locale.ROOT);
 
+        GeometryQuantizer quantizer = (decimals >= 0) ? new GeometryQuantizer(decimals) : null;
+
         ImportStats stats;
         if (lower.endsWith(".zip")) {
-            stats = importShapefileZip(source, qualified);
+            stats = importShapefileZip(source, qualified, quantizer);
         } else if (lower.endsWith(".geojson") || lower.endsWith(".json")) {
-            stats = importGeoJson(source, qualified);
+            stats = importGeoJson(source, qualified, quantizer);
         } else {
             throw new IllegalArgumentException("Tipe file tidak didukung: " + lower);
         }
 
+        // varian geometri tergeneralisasi per zoom band (untuk tile zoom rendah)
+        String genZooms = buildGeneralizedTables(qualified);
+
+        // extent + coverage index → tile di luar data dijawab kosong tanpa query
+        Polygon extent = computeExtent(qualified);
+        buildCoverage(slug, qualified);
+        Integer dataMaxZoom = computeDataMaxZoom(slug, qualified);
+
         // upsert metadata "layers"
         LayerMeta meta = metaRepo.findBySlug(slug).orElseGet(LayerMeta::new);
 
@@ -102,6 +188,11 @@ public class LayerImportService {
         meta.setCategory(upload.getCategory());
         meta.setRawPath(upload.getRawPath());
         meta.setPublicPath(upload.getPublicPath());
+        // versi cache baru: berbasis waktu agar tetap unik bila slug dipakai ulang setelah delete
+        meta.setCacheVersion(System.currentTimeMillis());
+        meta.setGenZooms(genZooms);
+        meta.setBbox(extent);
+        meta.setDataMaxZoom(dataMaxZoom);
         
         // Auto-populate props whitelist dengan semua property names dari shapefile
         if (stats.getPropertyNames() != null && !stats.getPropertyNames().isEmpty()) {
@@ -121,8 +212,136 @@ public class LayerImportService {
         meta.setUpdatedAt(OffsetDateTime.now());
 
         metaRepo.save(meta);
+        registry.refresh(slug);
+        tileCache.invalidateLayer(slug);
+
+        ImportResult result = new ImportResult(slug, safeTable, stats.count(),
+                (quantizer != null) ? decimals : null,
+                stats.verticesIn, stats.verticesOut, stats.wkbBytesIn, stats.wkbBytesOut, stats.dropped);
+        if (quantizer != null) {
+            System.err.printf(Locale.ROOT, "ℹ️ Import %s: presisi %d desimal, vertex %d → %d, WKB %d → %d byte (%.1f%%), %d feature kolaps%n",
+                    slug, decimals, stats.verticesIn, stats.verticesOut, stats.wkbBytesIn, stats.wkbBytesOut,
+                    result.reductionRatio() * 100, stats.dropped);
+        }
+        return result;
+    }
+
+    // ------------------------------------------------------------
+    // Extent & coverage index
+    // ------------------------------------------------------------
 
-        return new ImportResult(slug, safeTable, stats.count());
+    /**
+     * Extent data (EPSG:4326) sebagai polygon untuk kolom layers.bbox.
+     * - Layer kosong → null.
+     * - Extent degenerate (satu titik / garis lurus) diperlebar sedikit
+     *   agar tetap polygon valid.
+     */
+    public Polygon computeExtent(String qualified) {
+        Map<String, Object> row = jdbc.queryForMap("SELECT ST_XMin(e) AS minx, ST_YMin(e) AS miny," +
+                " ST_XMax(e) AS maxx, ST_YMax(e) AS maxy" +
+                " FROM (SELECT ST_Extent(geom) AS e FROM " + qualified + ") s");
+        if (row.get("minx") == null)
+            return null;
+
+        Envelope env = new Envelope(
+                ((Number) row.get("minx")).doubleValue(), ((Number) row.get("maxx")).doubleValue(),
+                ((Number) row.get("miny")).doubleValue(), ((Number) row.get("maxy")).doubleValue());
+        if (env.getWidth() == 0 || env.getHeight() == 0)
+            env.expandBy(1e-7);
+
+        Geometry g = new GeometryFactory(new PrecisionModel(), 4326).toGeometry(env);
+        return g instanceof Polygon p ? p : null;
+    }
+
+    /**
+     * Isi ulang layer_tile_coverage untuk satu layer: tile (coverageZoom) yang
+     * bersinggungan dengan bbox tiap fitur + jumlah fitur per tile.
+     * - Berbasis bbox fitur → konservatif (tidak pernah melewatkan tile berisi).
+     * - Gagal → baris coverage dihapus; layer tetap jalan tanpa index.
+     */
+    public void buildCoverage(String slug, String qualified) {
+        jdbc.update("DELETE FROM layer_tile_coverage WHERE layer_slug = ?", slug);
+        if (coverageZoom < 0)
+            return;
+
+        int z = Math.min(coverageZoom, 20);
+        long n = 1L << z;
+        double half = 20037508.342789244;
+        String size = String.format(Locale.ROOT, "%.10f", 2 * half / n);
+        String h = String.format(Locale.ROOT, "%.9f", half);
+        String col = "LEAST(" + (n - 1) + ", GREATEST(0, floor((%s) / " + size + ")))::int";
+
+        String ranges = "SELECT " + col.formatted("ST_XMin(b) + " + h) + " AS x0," +
+                "        " + col.formatted("ST_XMax(b) + " + h) + " AS x1," +
+                "        " + col.formatted(h + " - ST_YMax(b)") + " AS y0," +
+                "        " + col.formatted(h + " - ST_YMin(b)") + " AS y1" +
+                " FROM (SELECT Box2D(geom_3857) AS b FROM " + qualified +
+                "         WHERE geom_3857 IS NOT NULL AND NOT ST_IsEmpty(geom_3857)) f";
+        try {
+            // fitur raksasa (mis. poligon sebenua) bisa meledakkan jumlah baris → cek dulu
+            Long cells = jdbc.queryForObject("SELECT COALESCE(SUM((x1 - x0 + 1)::bigint * (y1 - y0 + 1)), 0)" +
+                    " FROM (" + ranges + ") r", Long.class);
+            if (cells != null && cells > coverageMaxCells) {
+                System.err.println("⚠️ Coverage index " + slug + " dilewati: " + cells + " sel > batas "
+                        + coverageMaxCells + " (fallback ke bbox)");
+                return;
+            }
+
+            jdbc.update("INSERT INTO layer_tile_coverage (layer_slug, z, x, y, feature_count)" +
+                    " SELECT ?, " + z + ", gx, gy, COUNT(*) FROM (" + ranges + ") r" +
+                    " CROSS JOIN LATERAL generate_series(r.x0, r.x1) gx" +
+                    " CROSS JOIN LATERAL generate_series(r.y0, r.y1) gy" +
+                    " GROUP BY gx, gy", slug);
+        } catch (Exception ex) {
+            System.err.println("⚠️ Coverage index " + slug + " gagal: " + ex.getMessage());
+            jdbc.update("DELETE FROM layer_tile_coverage WHERE layer_slug = ?", slug);
+        }
+    }
+
+    /**
+     * Data maxzoom dari densitas/detail data: zoom terendah di mana jarak khas
+     * data >= OVERZOOM_DETAIL_UNITS unit tile → zoom lebih dalam cukup di-overzoom.
+     * - Garis/poligon: median jarak antar vertex.
+     * - Titik: sisi tile coverage terpadat / sqrt(jumlah fitur); tanpa coverage → extent titik.
+     * - Dibatasi tiles.overzoom.min-data-zoom..22; layer kosong / gagal → null (tanpa overzoom).
+     */
+    public Integer computeDataMaxZoom(String slug, String qualified) {
+        try {
+            Double spacing = jdbc.queryForObject("SELECT percentile_cont(0.5) WITHIN GROUP (ORDER BY s) FROM (" +
+                    " SELECT CASE WHEN ST_Dimension(g) = 2 THEN ST_Perimeter(g) ELSE ST_Length(g) END" +
+                    "        / NULLIF(ST_NPoints(g) - 1, 0) AS s" +
+                    " FROM (SELECT geom_3857 AS g FROM " + qualified + " WHERE ST_Dimension(geom_3857) > 0) f" +
+                    ") v WHERE s > 0", Double.class);
+
+            Map<String, Object> pts = jdbc.queryForMap("SELECT n," +
+                    " ST_XMax(e) - ST_XMin(e) AS w, ST_YMax(e) - ST_YMin(e) AS h" +
+                    " FROM (SELECT ST_Extent(geom_3857) AS e, COUNT(*) AS n FROM " + qualified +
+                    "       WHERE ST_Dimension(geom_3857) = 0) s");
+            long points = pts.get("n") == null ? 0 : ((Number) pts.get("n")).longValue();
+            if (points > 0) {
+                Double pointSpacing = null;
+                Map<String, Object> dense = jdbc.queryForMap(
+                        "SELECT MAX(z) AS z, MAX(feature_count) AS c FROM layer_tile_coverage WHERE layer_slug = ?",
+                        slug);
+                if (dense.get("c") != null) {
+                    double tile = 2 * 20037508.342789244 / Math.pow(2, ((Number) dense.get("z")).intValue());
+                    pointSpacing = tile / Math.sqrt(((Number) dense.get("c")).doubleValue());
+                } else if (pts.get("w") != null) {
+                    double area = ((Number) pts.get("w")).doubleValue() * ((Number) pts.get("h")).doubleValue();
+                    pointSpacing = area > 0 ? Math.sqrt(area / points) : null;
+                }
+                if (pointSpacing != null && (spacing == null || pointSpacing < spacing))
+                    spacing = pointSpacing;
+            }
+            if (spacing == null || !(spacing > 0))
+                return null;
+
+            double z = Math.log(OVERZOOM_DETAIL_UNITS * RES_Z0 * 256 / (4096 * spacing)) / Math.log(2);
+            return Math.max(minDataZoom, Math.min(22, (int) Math.ceil(z)));
+        } catch (Exception ex) {
+            System.err.println("⚠️ Data maxzoom " + slug + " gagal: " + ex.getMessage());
+            return null;
+        }
     }
 
     // ------------------------------------------------------------
@@ -130,7 +349,8 @@ public class LayerImportService {
     // ------------------------------------------------------------
 
     /** SHP di dalam ZIP → PostGIS */
-    private ImportStats importShapefileZip(Path zipFile, String qualifiedTarget) throws Exception {
+    private ImportStats importShapefileZip(Path zipFile, String qualifiedTarget, GeometryQuantizer quantizer)
+            throws Exception {
         Path tempDir = Files.createTempDirectory("sl_shp_");
         Path shpPath = null;
 
@@ -172,7 +392,7 @@ public class LayerImportService {
             MathTransform tx = buildTransformTo4326(srcCrs);
 
             try (SimpleFeatureIterator it = src.getFeatures().features()) {
-                return writeIntoPostgis(it, qualifiedTarget, tx);
+                return writeIntoPostgis(it, qualifiedTarget, tx, quantizer);
             }
         } finally {
             if (ds != null)
@@ -182,7 +402,8 @@ public class LayerImportService {
     }
 
     /** GeoJSON → PostGIS */
-    private ImportStats importGeoJson(Path geojsonFile, String qualifiedTarget) throws Exception {
+    private ImportStats importGeoJson(Path geojsonFile, String qualifiedTarget, GeometryQuantizer quantizer)
+            throws Exception {
         FeatureJSON fj = new FeatureJSON();
         try (InputStream in = new BufferedInputStream(Files.newInputStream(geojsonFile))) {
             SimpleFeatureCollection fc = (SimpleFeatureCollection) fj.readFeatureCollection(in);
@@ -193,7 +414,7 @@ public class LayerImportService {
             MathTransform tx = buildTransformTo4326(srcCrs);
 
             try (SimpleFeatureIterator it = fc.features()) {
-                return writeIntoPostgis(it, qualifiedTarget, tx);
+                return writeIntoPostgis(it, qualifiedTarget, tx, quantizer);
             }
         }
     }
@@ -204,7 +425,8 @@ public class LayerImportService {
 
     private ImportStats writeIntoPostgis(SimpleFeatureIterator it,
             String qualifiedTarget,
-            MathTransform tx) {
+            MathTransform tx,
+            GeometryQuantizer quantizer) {
         ImportStats stats = new ImportStats();
         WKBWriter wkbWriter = new WKBWriter();
         Set<String> allPropertyNames = new LinkedHashSet<>();
@@ -223,7 +445,22 @@ public class LayerImportService {
                 continue;
             }
 
+            // snap ke grid presisi; kolaps (garis/poligon jadi titik) → feature dibuang
+            stats.verticesIn += g4326.getNumPoints();
+            if (quantizer != null) {
+                stats.wkbBytesIn += wkbWriter.write(g4326).length;
+                g4326 = quantizer.apply(g4326);
+                if (g4326 == null) {
+                    stats.dropped++;
+                    continue;
+                }
+            }
+            stats.verticesOut += g4326.getNumPoints();
+
             byte[] wkb = wkbWriter.write(g4326);
+            stats.wkbBytesOut += wkb.length;
+            if (quantizer == null)
+                stats.wkbBytesIn += wkb.length;
             Map<String, Object> props = extractProps(f);
             
             // Collect all property names for whitelist
@@ -256,9 +493,173 @@ public class LayerImportService {
                 + qualifiedTarget + " USING GIST(geom)'; " +
                 "END IF; END $$;");
 
+        // index GIST untuk kolom 3857 (dipakai tile & WMS), lalu refresh statistik planner
+        String table = qualifiedTarget.substring(qualifiedTarget.indexOf('.') + 1);
+        jdbc.execute("CREATE INDEX IF NOT EXISTS " + table + "_geom_3857_gix ON " + qualifiedTarget
+                + " USING GIST(geom_3857)");
+        jdbc.execute("ANALYZE " + qualifiedTarget);
+
         return stats;
     }
 
+    // ------------------------------------------------------------
+    // Generalized variants (zoom bands)
+    // ------------------------------------------------------------
+
+    /**
+     * Bangun tabel <table>_g<z> berisi (id, geom_3857) yang disederhanakan
+     * dengan toleransi ~pixel pada zoom z.
+     * - Layer poligon murni dengan coverage valid (tanpa overlap/gap) dan jumlah fitur
+     *   di bawah batas → ST_CoverageSimplify (batas bersama tetap rapat).
+     * - Lainnya / PostGIS lama → ST_SimplifyPreserveTopology per feature.
+     * - Feature yang menyusut di bawah 1 toleransi (area/panjang) dibuang.
+     * - Layer titik tidak digeneralisasi.
+     * @return daftar band yang berhasil dibuat ("5,8,11") atau null.
+     */
+    private String buildGeneralizedTables(String qualifiedTarget) {
+        List<Integer> bands = parseBands(generalizeBands);
+        dropGeneralizedTables(qualifiedTarget, bands);
+        if (bands.isEmpty())
+            return null;
+
+        Map<String, Object> kind = jdbc.queryForMap("SELECT " +
+                " COALESCE(bool_and(ST_Dimension(geom) = 0), true) AS all_points," +
+                " COALESCE(bool_and(ST_Dimension(geom) = 2), false) AS all_polygons," +
+                " count(*) AS features" +
+                " FROM " + qualifiedTarget);
+        if (Boolean.TRUE.equals(kind.get("all_points")))
+            return null;
+
+        long features = ((Number) kind.get("features")).longValue();
+        boolean coverage = Boolean.TRUE.equals(kind.get("all_polygons")) && hasCoverageSimplify()
+                && features <= coverageSimplifyMaxFeatures && isValidCoverage(qualifiedTarget);
+
+        List<String> built = new ArrayList<>();
+        for (int z : bands) {
+            double tol = RES_Z0 / Math.pow(2, z) * generalizePixelTolerance;
+            String variant = qualifiedTarget + "_g" + z;
+            try {
+                createGeneralized(qualifiedTarget, variant, tol, coverage);
+            } catch (Exception ex) {
+                if (!coverage) {
+                    System.err.println("⚠️ Generalisasi " + variant + " gagal: " + ex.getMessage());
+                    continue;
+                }
+                // gagal di tengah jalan (mis. kehabisan memori) → fallback per-feature
+                try {
+                    createGeneralized(qualifiedTarget, variant, tol, false);
+                } catch (Exception ex2) {
+                    System.err.println("⚠️ Generalisasi " + variant + " gagal: " + ex2.getMessage());
+                    continue;
+                }
+            }
+            built.add(String.valueOf(z));
+        }
+        return built.isEmpty() ? null : String.join(",", built);
+    }
+
+    private void createGeneralized(String source, String variant, double tol, boolean coverage) {
+        String simplified = coverage
+                ? "ST_CoverageSimplify(geom_3857, " + tol + ") OVER ()"
+                : "ST_SimplifyPreserveTopology(geom_3857, " + tol + ")";
+        String table = variant.substring(variant.indexOf('.') + 1);
+
+        jdbc.execute("DROP TABLE IF EXISTS " + variant);
+        jdbc.execute("CREATE TABLE " + variant + " AS" +
+                " SELECT id, geom_3857 FROM (" +
+                "   SELECT id, " + simplified + " AS geom_3857 FROM " + source +
+                " ) s" +
+                " WHERE " + keepGeneralized(tol));
+        jdbc.execute("ALTER TABLE " + variant + " ADD PRIMARY KEY (id)");
+        jdbc.execute("CREATE INDEX " + table + "_gix ON " + variant + " USING GIST(geom_3857)");
+        jdbc.execute("ANALYZE " + variant);
+    }
+
+    /** Filter fitur hasil simplifikasi: buang kosong / yang menyusut di bawah 1 toleransi. */
+    private static String keepGeneralized(double tol) {
+        return "geom_3857 IS NOT NULL AND NOT ST_IsEmpty(geom_3857)" +
+                " AND NOT (ST_Dimension(geom_3857) = 2 AND ST_Area(geom_3857) < " + (tol * tol) + ")" +
+                " AND NOT (ST_Dimension(geom_3857) = 1 AND ST_Length(geom_3857) < " + tol + ")";
+    }
+
+    /**
+     * Sinkronkan tabel generalisasi untuk fitur tertentu (dipakai edit fitur).
+     * - Baris lama dibuang, lalu geometri terbaru disederhanakan per feature
+     *   (ST_SimplifyPreserveTopology; coverage simplify butuh seluruh layer).
+     * - id yang sudah dihapus dari tabel sumber otomatis hilang dari band.
+     */
+    public void syncGeneralized(String qualified, List<Integer> bands, Collection<Long> ids) {
+        if (bands == null || bands.isEmpty() || ids == null || ids.isEmpty())
+            return;
+        Long[] idArray = ids.toArray(new Long[0]);
+        for (int z : bands) {
+            double tol = RES_Z0 / Math.pow(2, z) * generalizePixelTolerance;
+            String variant = qualified + "_g" + z;
+            jdbc.update("DELETE FROM " + variant + " WHERE id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", idArray)));
+            jdbc.update("INSERT INTO " + variant + " (id, geom_3857)" +
+                    " SELECT id, geom_3857 FROM (" +
+                    "   SELECT id, ST_SimplifyPreserveTopology(geom_3857, " + tol + ") AS geom_3857" +
+                    "   FROM " + qualified + " WHERE id = ANY(?)" +
+                    " ) s WHERE " + keepGeneralized(tol),
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", idArray)));
+        }
+    }
+
+    private void dropGeneralizedTables(String qualifiedTarget, List<Integer> bands) {
+        // band lama bisa berbeda dari konfigurasi saat ini → hapus semua yang cocok pola
+        String schema = safeSchema(qualifiedTarget);
+        String table = qualifiedTarget.substring(qualifiedTarget.indexOf('.') + 1);
+        List<String> existing = jdbc.queryForList(
+                "SELECT table_name FROM information_schema.tables WHERE table_schema = ? AND table_name ~ ?",
+                String.class, schema, "^" + table + "_g[0-9]+$");
+        for (String t : existing) {
+            jdbc.execute("DROP TABLE IF EXISTS " + schema + "." + t);
+        }
+    }
+
+    /**
+     * Coverage valid = tidak ada edge overlap/gap (ST_CoverageInvalidEdges null semua).
+     * - ST_CoverageSimplify pada coverage tidak valid tidak selalu error; hasilnya bisa rusak diam-diam.
+     */
+    private boolean isValidCoverage(String qualifiedTarget) {
+        try {
+            Boolean ok = jdbc.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM (" +
+                    " SELECT ST_CoverageInvalidEdges(geom_3857) OVER () AS e FROM " + qualifiedTarget +
+                    " ) s WHERE e IS NOT NULL)", Boolean.class);
+            return Boolean.TRUE.equals(ok);
+        } catch (Exception e) {
+            System.err.println("⚠️ Cek coverage " + qualifiedTarget + " gagal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean hasCoverageSimplify() {
+        try {
+            Boolean ok = jdbc.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_proc WHERE proname = 'st_coveragesimplify')", Boolean.class);
+            return Boolean.TRUE.equals(ok);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static List<Integer> parseBands(String raw) {
+        List<Integer> out = new ArrayList<>();
+        if (raw == null || raw.isBlank())
+            return out;
+        for (String part : raw.split(",")) {
+            try {
+                int z = Integer.parseInt(part.trim());
+                if (z >= 0 && z <= 22 && !out.contains(z))
+                    out.add(z);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        Collections.sort(out);
+        return out;
+    }
+
     /** Ambil properti non-geom sebagai Map untuk JSONB. */
     private Map<String, Object> extractProps(SimpleFeature f) {
         Map<String, Object> map = new LinkedHashMap<>();
@@ -299,6 +700,15 @@ public class LayerImportService {
     // DDL helpers
     // ------------------------------------------------------------
 
+    /**
+     * Definisi kolom geom_3857 (sama dengan V15).
+     * - Geometri di luar batas Web Mercator (lintang ±85.0511, mis. kutub) dipotong dulu;
+     *   ST_Transform langsung akan error dan menggagalkan INSERT/UPDATE.
+     */
+    private static final String GEOM_3857_COLUMN = "geometry(Geometry,3857) GENERATED ALWAYS AS" +
+            " (ST_Transform(ST_ClipByBox2D(geom, ST_MakeEnvelope(-180, -85.0511, 180, 85.0511, 4326)), 3857))" +
+            " STORED";
+
     private void createTargetTableIfAbsent(String qualified) {
         // qualified: schema.table (contoh: gis.jalur_prov)
         jdbc.execute("CREATE SCHEMA IF NOT EXISTS " + safeSchema(qualified) + ";");
@@ -306,8 +716,12 @@ public class LayerImportService {
                 "CREATE TABLE IF NOT EXISTS " + qualified + " (" +
                         " id BIGSERIAL PRIMARY KEY," +
                         " geom geometry(Geometry,4326) NOT NULL," +
-                        " props jsonb" +
+                        " props jsonb," +
+                        " geom_3857 " + GEOM_3857_COLUMN +
                         ")");
+        // tabel lama (sebelum kolom 3857 ada) → tambahkan sekali
+        jdbc.execute("ALTER TABLE " + qualified + " ADD COLUMN IF NOT EXISTS" +
+                " geom_3857 " + GEOM_3857_COLUMN);
     }
 
     private String safeSchema(String qualified) {
@@ -368,6 +782,11 @@ public class LayerImportService {
 
     public static class ImportStats {
         private long count = 0L;
+        private long verticesIn = 0L;
+        private long verticesOut = 0L;
+        private long wkbBytesIn = 0L;
+        private long wkbBytesOut = 0L;
+        private long dropped = 0L;
         private Set<String> propertyNames = new LinkedHashSet<>();
 
         public void inc() {
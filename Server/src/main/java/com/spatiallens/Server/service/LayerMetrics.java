@@ -0,0 +1,107 @@
+package com.spatiallens.Server.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Metrik Micrometer per endpoint (mvt/wms/raster/geojson) dan per layer.
+ * - spatiallens.request   : latency total, tag result=data|empty|error (→ rasio tile kosong)
+ * - spatiallens.db        : waktu query PostGIS
+ * - spatiallens.encode    : waktu encode (gzip MVT / render PNG)
+ * - spatiallens.response.bytes : ukuran body yang dihasilkan
+ * - spatiallens.cache     : hit/miss tile cache
+ * - spatiallens.errors    : jumlah error per cause (nama class exception)
+ * Tag layer hanya slug yang terdaftar (selain itu "unknown") agar kardinalitas terbatas.
+ */
+@Service
+public class LayerMetrics {
+
+    public static final String MVT = "mvt";
+    public static final String WMS = "wms";
+    public static final String RASTER = "raster";
+    public static final String GEOJSON = "geojson";
+
+    public static final String UNKNOWN_LAYER = "unknown";
+
+    private final MeterRegistry registry;
+
+    /** Meter di-cache per kombinasi tag → hot path tanpa builder/lookup registry. */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public LayerMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Selesai satu request; result = data | empty | error. */
+    public void request(String endpoint, String layer, String result, long startNanos) {
+        timer("spatiallens.request", "Latency request per endpoint/layer",
+                "endpoint", endpoint, "layer", layer, "result", result)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void db(String endpoint, String layer, long startNanos) {
+        timer("spatiallens.db", "Waktu query PostGIS",
+                "endpoint", endpoint, "layer", layer)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void encode(String endpoint, String layer, long startNanos) {
+        timer("spatiallens.encode", "Waktu encode/kompresi hasil",
+                "endpoint", endpoint, "layer", layer)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void bytes(String endpoint, String layer, long size) {
+        String key = "bytes|" + endpoint + "|" + layer;
+        summaries.computeIfAbsent(key, k -> DistributionSummary.builder("spatiallens.response.bytes")
+                .description("Ukuran body yang dihasilkan")
+                .baseUnit("bytes")
+                .tags("endpoint", endpoint, "layer", layer)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry))
+                .record(size);
+    }
+
+    public void cache(String endpoint, String layer, boolean hit) {
+        counter("spatiallens.cache", "Hit/miss tile cache",
+                "endpoint", endpoint, "layer", layer, "result", hit ? "hit" : "miss")
+                .increment();
+    }
+
+    public void error(String endpoint, String layer, Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        counter("spatiallens.errors", "Error per cause",
+                "endpoint", endpoint, "layer", layer, "cause", root.getClass().getSimpleName())
+                .increment();
+    }
+
+    // --- helpers ---
+
+    private Timer timer(String name, String description, String... tags) {
+        return timers.computeIfAbsent(name + "|" + String.join("|", tags), k -> Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry));
+    }
+
+    private Counter counter(String name, String description, String... tags) {
+        return counters.computeIfAbsent(name + "|" + String.join("|", tags), k -> Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry));
+    }
+}
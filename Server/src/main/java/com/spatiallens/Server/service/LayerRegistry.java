@@ -0,0 +1,538 @@
+package com.spatiallens.Server.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.spatiallens.Server.model.LayerMeta;
+import com.spatiallens.Server.model.LayerStyle;
+import com.spatiallens.Server.repository.LayerMetaRepository;
+import com.spatiallens.Server.repository.LayerStyleRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Registry in-memory berisi snapshot immutable per slug.
+ * - Hot path (tile/WMS/GeoJSON/style/meta) membaca dari sini → nol query metadata.
+ * - Snapshot memuat tabel ter-resolve, whitelist ter-parse dan SQL siap pakai.
+ * - Semua penulis metadata (import, status, rename, style, delete, fix whitelist)
+ *   memanggil {@link #refresh(String)} / {@link #remove(String)} → swap atomik.
+ * - Reload penuh berkala (layers.registry.reload-seconds) sebagai jaring pengaman
+ *   untuk perubahan di luar aplikasi.
+ */
+@Service
+public class LayerRegistry {
+
+    /** Snapshot immutable untuk satu layer. */
+    public record LayerSnapshot(
+            Long id,
+            String slug,
+            String name,
+            String status,
+            boolean published,
+            String category,
+            Integer minzoom,
+            Integer maxzoom,
+            Integer dataMaxZoom, // zoom > ini dibuat dari tile parent (overzoom), null = nonaktif
+            Long featureCount,
+            double[] bbox, // [minLon,minLat,maxLon,maxLat] (EPSG:4326) atau null
+            String updatedAt,
+            long version,
+            long revision, // naik tiap edit fitur; hanya ikut validator HTTP, bukan kunci cache
+            long lastModified, // epoch millis (detik penuh) saat versi ini mulai berlaku
+            String qualifiedTable, // null bila metadata tabel belum lengkap
+            String geomColumn,
+            List<String> whitelist,
+            List<Integer> genZooms,
+            String tileSql,
+            Map<Integer, String> tileSqlByBand,
+            Integer clusterMaxZoom, // null = clustering nonaktif
+            String clusterSql,
+            String wmsSql,
+            String exportSql,
+            String exportBboxSql,
+            String styleJson,
+            WmsStyle wmsStyle, // styleJson terkompilasi untuk render WMS
+            TileCoverage coverage) { // null = belum ada index (pakai bbox / query)
+
+        public boolean hasTable() {
+            return qualifiedTable != null;
+        }
+
+        /**
+         * SQL tile untuk zoom z: cluster bila z <= clusterMaxZoom, lalu band
+         * generalisasi terkecil yang >= z, atau tabel penuh.
+         */
+        public String tileSqlFor(int z) {
+            if (clusteredAt(z))
+                return clusterSql;
+            for (Integer band : genZooms) {
+                if (band >= z)
+                    return tileSqlByBand.get(band);
+            }
+            return tileSql;
+        }
+
+        /** Tile MVT zoom z berisi cluster titik, bukan geometry fitur. */
+        public boolean clusteredAt(int z) {
+            return clusterSql != null && z <= clusterMaxZoom;
+        }
+
+        /** Salinan dengan coverage index lain (edit fitur menambah tile berisi). */
+        public LayerSnapshot withCoverage(TileCoverage c) {
+            return new LayerSnapshot(id, slug, name, status, published, category, minzoom, maxzoom, dataMaxZoom,
+                    featureCount, bbox, updatedAt, version, revision, lastModified, qualifiedTable, geomColumn,
+                    whitelist, genZooms, tileSql, tileSqlByBand, clusterMaxZoom, clusterSql, wmsSql, exportSql,
+                    exportBboxSql, styleJson, wmsStyle, c);
+        }
+
+        /**
+         * Zoom tile yang benar-benar dirender dari DB untuk request zoom z:
+         * z sendiri, atau data maxzoom bila z di atasnya (tidak pernah di zona cluster).
+         */
+        public int renderZoom(int z) {
+            if (dataMaxZoom == null)
+                return z;
+            int base = dataMaxZoom;
+            if (clusterSql != null)
+                base = Math.max(base, clusterMaxZoom + 1);
+            return Math.min(z, base);
+        }
+    }
+
+    /** Validator HTTP (ETag + Last-Modified) untuk conditional request. */
+    public record Validator(String etag, long lastModified, boolean publicPublished) {
+    }
+
+    private final LayerMetaRepository metaRepo;
+    private final LayerStyleRepository styleRepo;
+    private final JdbcTemplate jdbc;
+
+    /** Jumlah sel grid cluster per sisi tile (256 / tiles.cluster.grid-px). */
+    private final int clusterGridCells;
+
+    private final Map<String, LayerSnapshot> snapshots = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "layer-registry-reload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LayerRegistry(
+            LayerMetaRepository metaRepo,
+            LayerStyleRepository styleRepo,
+            JdbcTemplate jdbc,
+            @Value("${layers.registry.reload-seconds:300}") long reloadSeconds,
+            @Value("${tiles.cluster.grid-px:64}") int clusterGridPx) {
+        this.metaRepo = metaRepo;
+        this.styleRepo = styleRepo;
+        this.jdbc = jdbc;
+        this.clusterGridCells = Math.max(1, 256 / Math.max(1, clusterGridPx));
+        if (reloadSeconds > 0) {
+            reloader.scheduleWithFixedDelay(this::reloadQuietly, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloader.shutdownNow();
+    }
+
+    // ------------------------------------------------------------
+    // Read (hot path)
+    // ------------------------------------------------------------
+
+    public Optional<LayerSnapshot> get(String slug) {
+        ensureLoaded();
+        return slug == null ? Optional.empty() : Optional.ofNullable(snapshots.get(slug));
+    }
+
+    /** Semua snapshot, urut id (urutan sama dengan findAll sebelumnya). */
+    public List<LayerSnapshot> all() {
+        ensureLoaded();
+        List<LayerSnapshot> out = new ArrayList<>(snapshots.values());
+        out.sort(Comparator.comparing(LayerSnapshot::id, Comparator.nullsLast(Comparator.naturalOrder())));
+        return out;
+    }
+
+    /**
+     * Validator berbasis versi layer, tanpa query DB.
+     * - kind membedakan representasi (mvt/wms/geojson) pada layer yang sama.
+     * - Kosong bila ada slug yang tidak ada / tidak boleh diakses → request
+     *   diproses penuh (fail-closed, tidak membocorkan keberadaan Draft).
+     */
+    public Optional<Validator> validator(String kind, List<String> slugs, boolean canAccessRestricted) {
+        if (slugs == null || slugs.isEmpty())
+            return Optional.empty();
+
+        StringBuilder tag = new StringBuilder("\"").append(kind);
+        long lastModified = 0L;
+        boolean publicPublished = true;
+        for (String slug : slugs) {
+            LayerSnapshot lm = get(slug).orElse(null);
+            if (lm == null || (!lm.published() && !canAccessRestricted))
+                return Optional.empty();
+            tag.append('-').append(Long.toHexString(lm.version()));
+            if (lm.revision() > 0)
+                tag.append('.').append(Long.toHexString(lm.revision()));
+            // ganti style tidak menaikkan versi → raster WMS butuh identitas style di ETag
+            if ("wms".equals(kind) || "raster".equals(kind))
+                tag.append('~').append(lm.wmsStyle().signature());
+            lastModified = Math.max(lastModified, lm.lastModified());
+            publicPublished &= lm.published();
+        }
+        return Optional.of(new Validator(tag.append('"').toString(), lastModified, publicPublished));
+    }
+
+    // ------------------------------------------------------------
+    // Write (dipanggil setelah metadata/style berubah)
+    // ------------------------------------------------------------
+
+    /** Muat ulang satu slug dari DB dan swap snapshot-nya. */
+    public synchronized void refresh(String slug) {
+        if (slug == null)
+            return;
+        Optional<LayerMeta> lm = metaRepo.findBySlug(slug);
+        if (lm.isEmpty()) {
+            snapshots.remove(slug);
+            return;
+        }
+        LayerStyle style = styleRepo.findByLayerSlug(slug).orElse(null);
+        snapshots.put(slug, build(lm.get(), style, snapshots.get(slug)));
+    }
+
+    /**
+     * Refresh setelah edit fitur: snapshot baru (revisi) + tile base coverage yang
+     * kini berisi data, di-swap sekaligus → tidak ada jeda di mana tile baru
+     * dijawab kosong dari memory.
+     */
+    public synchronized void refreshAfterEdit(String slug, int[] addedXs, int[] addedYs) {
+        refresh(slug);
+        LayerSnapshot s = snapshots.get(slug);
+        if (s == null || s.coverage() == null || addedXs == null || addedXs.length == 0)
+            return;
+        snapshots.put(slug, s.withCoverage(s.coverage().withBaseTiles(addedXs, addedYs)));
+    }
+
+    /** Buang coverage index in-memory (mis. edit terlalu besar untuk dilacak per tile). */
+    public synchronized void dropCoverage(String slug) {
+        LayerSnapshot s = snapshots.get(slug);
+        if (s != null && s.coverage() != null)
+            snapshots.put(slug, s.withCoverage(null));
+    }
+
+    public synchronized void remove(String slug) {
+        if (slug != null)
+            snapshots.remove(slug);
+    }
+
+    /** Reload penuh: snapshot baru dibangun dulu, lalu slug yang hilang dibuang. */
+    public synchronized void reloadAll() {
+        Map<String, LayerStyle> styles = new HashMap<>();
+        for (LayerStyle st : styleRepo.findAll()) {
+            styles.put(st.getLayerSlug(), st);
+        }
+
+        Map<String, LayerSnapshot> fresh = new HashMap<>();
+        for (LayerMeta lm : metaRepo.findAll()) {
+            try {
+                fresh.put(lm.getSlug(), build(lm, styles.get(lm.getSlug()), snapshots.get(lm.getSlug())));
+            } catch (Exception e) {
+                System.err.println("[LayerRegistry] Gagal memuat " + lm.getSlug() + ": " + e.getMessage());
+            }
+        }
+        snapshots.putAll(fresh);
+        snapshots.keySet().retainAll(fresh.keySet());
+        loaded = true;
+    }
+
+    private void ensureLoaded() {
+        if (loaded)
+            return;
+        synchronized (this) {
+            if (!loaded)
+                reloadAll();
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reloadAll();
+        } catch (Exception e) {
+            System.err.println("[LayerRegistry] Reload gagal: " + e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Snapshot builder
+    // ------------------------------------------------------------
+
+    private LayerSnapshot build(LayerMeta lm, LayerStyle style, LayerSnapshot prev) {
+        boolean published = "Published".equalsIgnoreCase(lm.getStatus());
+        long version = lm.getCacheVersion() != null ? lm.getCacheVersion() : 1L;
+        long revision = lm.getDataRevision() != null ? lm.getDataRevision() : 0L;
+        String styleJson = (style != null) ? style.getStyleJson() : null;
+
+        // Last-Modified ikut versi/revisi/style: sama → pertahankan; berubah saat runtime → sekarang.
+        // Load pertama: max(layers.updated_at, layer_styles.updated_at); updated_at layer ikut
+        // naik setiap cache_version/data_revision naik (dan saat style dihapus).
+        boolean sameStyle = prev != null && Objects.equals(prev.styleJson(), styleJson);
+        long lastModified;
+        if (prev != null && prev.version() == version && prev.revision() == revision && sameStyle) {
+            lastModified = prev.lastModified();
+        } else if (prev == null && lm.getUpdatedAt() != null) {
+            lastModified = lm.getUpdatedAt().toInstant().toEpochMilli();
+            if (style != null && style.getUpdatedAt() != null)
+                lastModified = Math.max(lastModified, style.getUpdatedAt().toEpochMilli());
+        } else {
+            lastModified = System.currentTimeMillis();
+        }
+        lastModified -= lastModified % 1000L; // resolusi header HTTP = detik
+
+        String qualified = null;
+        String geomCol = null;
+        List<String> whitelist = List.of();
+        List<Integer> genZooms = List.of();
+        String tileSql = null;
+        Map<Integer, String> tileSqlByBand = Map.of();
+        Integer clusterMaxZoom = lm.getClusterMaxZoom();
+        String clusterSql = null;
+        String wmsSql = null;
+        String exportSql = null;
+        String exportBboxSql = null;
+        WmsStyle wmsStyle = sameStyle ? prev.wmsStyle() : WmsStyle.compile(styleJson);
+
+        if (!isBlank(lm.getSchemaName()) && !isBlank(lm.getTableName()) && !isBlank(lm.getGeomColumn())) {
+            qualified = safeIdent(lm.getSchemaName()) + "." + safeIdent(lm.getTableName());
+            geomCol = safeIdent(lm.getGeomColumn());
+
+            // Auto-populate whitelist jika kosong (null/blank/[]) lalu persist sekali
+            whitelist = parseWhitelist(lm.getPropsWhitelist());
+            if (whitelist.isEmpty()) {
+                String detected = autoDetectProperties(qualified);
+                if (!isBlank(detected)) {
+                    lm.setPropsWhitelist(detected);
+                    metaRepo.save(lm);
+                    whitelist = parseWhitelist(detected);
+                }
+            }
+            whitelist = List.copyOf(whitelist);
+
+            genZooms = parseZooms(lm.getGenZooms());
+            String geom3857 = geomCol + "_3857";
+            tileSql = MvtTileService.buildTileSql(qualified, geom3857, whitelist, null);
+            Map<Integer, String> byBand = new HashMap<>();
+            for (Integer band : genZooms) {
+                byBand.put(band, MvtTileService.buildTileSql(qualified, geom3857, whitelist, band));
+            }
+            tileSqlByBand = Map.copyOf(byBand);
+            if (clusterMaxZoom != null) {
+                clusterSql = MvtTileService.buildClusterSql(qualified, geom3857, clusterGridCells,
+                        List.copyOf(parseWhitelist(lm.getClusterProps())));
+            }
+            wmsSql = WmsRasterService.buildWmsSql(qualified, geom3857, wmsStyle.fields());
+            exportSql = GeoJsonExportService.buildExportSql(qualified, geomCol, false);
+            exportBboxSql = GeoJsonExportService.buildExportSql(qualified, geomCol, true);
+        }
+
+        // coverage dibangun ulang bersama versi (import/fix) → versi sama pakai ulang;
+        // edit fitur menambah tile lewat refreshAfterEdit (tidak perlu baca ulang tabel)
+        TileCoverage coverage = (prev != null && prev.version() == version && prev.coverage() != null)
+                ? prev.coverage()
+                : loadCoverage(lm.getSlug());
+
+        double[] bbox = null;
+        if (lm.getBbox() != null) {
+            Envelope e = lm.getBbox().getEnvelopeInternal();
+            bbox = new double[] { e.getMinX(), e.getMinY(), e.getMaxX(), e.getMaxY() };
+        }
+
+        return new LayerSnapshot(
+                lm.getId(),
+                lm.getSlug(),
+                lm.getName(),
+                lm.getStatus(),
+                published,
+                lm.getCategory(),
+                lm.getMinzoom(),
+                lm.getMaxzoom(),
+                lm.getDataMaxZoom(),
+                lm.getFeatureCount(),
+                bbox,
+                lm.getUpdatedAt() == null ? null : lm.getUpdatedAt().toString(),
+                version,
+                revision,
+                lastModified,
+                qualified,
+                geomCol,
+                whitelist,
+                genZooms,
+                tileSql,
+                tileSqlByBand,
+                clusterMaxZoom,
+                clusterSql,
+                wmsSql,
+                exportSql,
+                exportBboxSql,
+                styleJson,
+                wmsStyle,
+                coverage);
+    }
+
+    /** Muat coverage index dari layer_tile_coverage; tidak ada / gagal → null. */
+    private TileCoverage loadCoverage(String slug) {
+        try {
+            int[][] cols = { new int[256], new int[256], new int[256] };
+            int[] meta = { 0, -1 }; // jumlah baris, zoom dasar
+            jdbc.query("SELECT z, x, y, feature_count FROM layer_tile_coverage WHERE layer_slug = ?",
+                    rs -> {
+                        int n = meta[0];
+                        if (n == cols[0].length) {
+                            for (int c = 0; c < 3; c++)
+                                cols[c] = Arrays.copyOf(cols[c], n * 2);
+                        }
+                        meta[1] = rs.getInt(1);
+                        cols[0][n] = rs.getInt(2);
+                        cols[1][n] = rs.getInt(3);
+                        cols[2][n] = rs.getInt(4);
+                        meta[0] = n + 1;
+                    }, slug);
+            if (meta[0] == 0)
+                return null;
+            return TileCoverage.fromBaseTiles(meta[1], Arrays.copyOf(cols[0], meta[0]),
+                    Arrays.copyOf(cols[1], meta[0]), Arrays.copyOf(cols[2], meta[0]));
+        } catch (Exception e) {
+            System.err.println("⚠️ Gagal memuat coverage " + slug + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Parsing helpers
+    // ------------------------------------------------------------
+
+    static List<String> parseWhitelist(String raw) {
+        List<String> out = new ArrayList<>();
+        if (raw == null || raw.isBlank())
+            return out;
+
+        String s = raw.trim();
+        if (s.startsWith("[") && s.endsWith("]")) {
+            String inner = s.substring(1, s.length() - 1);
+            for (String part : inner.split(",")) {
+                String v = part.trim();
+                if (v.startsWith("\"") && v.endsWith("\"") && v.length() >= 2) {
+                    v = v.substring(1, v.length() - 1);
+                }
+                v = v.trim();
+                if (!v.isBlank())
+                    out.add(v);
+            }
+            return out;
+        }
+
+        for (String part : s.split(",")) {
+            String v = part.trim();
+            if (!v.isBlank())
+                out.add(v);
+        }
+        return out;
+    }
+
+    private static List<Integer> parseZooms(String raw) {
+        List<Integer> out = new ArrayList<>();
+        if (raw == null || raw.isBlank())
+            return out;
+        for (String part : raw.split(",")) {
+            try {
+                int z = Integer.parseInt(part.trim());
+                if (!out.contains(z))
+                    out.add(z);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        Collections.sort(out);
+        return List.copyOf(out);
+    }
+
+    private static String safeIdent(String ident) {
+        return ident.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    /**
+     * Auto-detect property keys dari sample data.
+     * Cek dari schema shapefile jika props kosong.
+     */
+    private String autoDetectProperties(String qualifiedTable) {
+        try {
+            // Coba ambil dari props yang ada (sudah uppercase dari extractProps)
+            String sql = String.format("""
+                    SELECT DISTINCT UPPER(jsonb_object_keys(props)) AS key
+                    FROM %s
+                    WHERE props IS NOT NULL
+                      AND props != '{}'::jsonb
+                    LIMIT 100
+                    """, qualifiedTable);
+
+            List<String> keys = jdbc.query(sql, (rs, rowNum) -> rs.getString("key"));
+
+            // Kalau masih kosong, coba query langsung dari information_schema
+            // untuk ambil column names (kecuali id, geom, props)
+            if (keys.isEmpty()) {
+                String schema = qualifiedTable.split("\\.")[0];
+                String table = qualifiedTable.split("\\.")[1];
+
+                String colSql = """
+                    SELECT column_name
+                    FROM information_schema.columns
+                    WHERE table_schema = ?
+                      AND table_name = ?
+                      AND column_name NOT IN ('id', 'geom', 'geom_3857', 'props')
+                    ORDER BY ordinal_position
+                    """;
+
+                keys = jdbc.query(colSql, (rs, rowNum) -> rs.getString("column_name"), schema, table);
+            }
+
+            if (keys.isEmpty()) {
+                System.err.println("⚠️ No properties detected for table: " + qualifiedTable);
+                return null;
+            }
+
+            // Return as JSON array format: ["key1","key2","key3"]
+            String result = "[" + keys.stream()
+                    .map(k -> "\"" + k + "\"")
+                    .reduce((a, b) -> a + "," + b)
+                    .orElse("") + "]";
+
+            System.out.println("✅ Auto-detected properties for " + qualifiedTable + ": " + result);
+            return result;
+
+        } catch (Exception e) {
+            System.err.println("❌ Error auto-detecting properties for " + qualifiedTable + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.HexFormat;
 import java.util.List;
@@ -25,6 +26,7 @@ import com.spatiallens.Server.model.LayerMeta;
 import com.spatiallens.Server.model.LayerStyle;
 import com.spatiallens.Server.repository.LayerMetaRepository;
 import com.spatiallens.Server.repository.LayerStyleRepository;
+import com.spatiallens.Server.service.LayerRegistry.LayerSnapshot;
 
 @Service
 public class LayerStyleService {
@@ -58,21 +60,24 @@ public class LayerStyleService {
     private final LayerMetaRepository metaRepo;
     private final LayerStyleRepository styleRepo;
     private final ObjectMapper om;
+    private final LayerRegistry registry;
 
-    public LayerStyleService(LayerMetaRepository metaRepo, LayerStyleRepository styleRepo, ObjectMapper om) {
+    public LayerStyleService(LayerMetaRepository metaRepo, LayerStyleRepository styleRepo, ObjectMapper om,
+            LayerRegistry registry) {
         this.metaRepo = metaRepo;
         this.styleRepo = styleRepo;
         this.om = om;
+        this.registry = registry;
     }
 
     /** Ambil style efektif (custom kalau ada, kalau tidak generate default). */
     public Optional<StyleResult> getEffectiveStyle(String slug, boolean canAccessRestricted) {
-        Optional<LayerMeta> metaOpt = metaRepo.findBySlug(slug);
+        Optional<LayerSnapshot> metaOpt = registry.get(slug);
         if (metaOpt.isEmpty())
             return Optional.empty();
 
-        LayerMeta lm = metaOpt.get();
-        boolean isPublished = "Published".equalsIgnoreCase(lm.getStatus());
+        LayerSnapshot lm = metaOpt.get();
+        boolean isPublished = lm.published();
         boolean publicPublished = isPublished;
 
         if (!isPublished && !canAccessRestricted) {
@@ -80,9 +85,7 @@ public class LayerStyleService {
             return Optional.empty();
         }
 
-        String json = styleRepo.findByLayerSlug(slug)
-                .map(LayerStyle::getStyleJson)
-                .orElseGet(() -> defaultStyleFor(slug));
+        String json = lm.styleJson() != null ? lm.styleJson() : defaultStyleFor(slug);
 
         String etag = sha1Etag(json);
         return Optional.of(new StyleResult(json, publicPublished, etag));
@@ -99,6 +102,7 @@ public class LayerStyleService {
                 .orElseGet(() -> LayerStyle.builder().layerSlug(slug).build());
         style.setStyleJson(om.writeValueAsString(node)); // normalized/pretty-safe
         styleRepo.save(style);
+        registry.refresh(slug);
     }
 
     /**
@@ -128,6 +132,7 @@ public class LayerStyleService {
         style.setSldPath(target.toString());
         style.setSldFilename(originalName);
         styleRepo.save(style);
+        registry.refresh(slug);
     }
 
     /** Ambil file SLD yang tersimpan (jika ada) */
@@ -144,6 +149,12 @@ public class LayerStyleService {
 
     public void deleteStyle(String slug) {
         styleRepo.findByLayerSlug(slug).ifPresent(styleRepo::delete);
+        // tanpa baris style, Last-Modified hanya bisa diturunkan dari layers.updated_at
+        metaRepo.findBySlug(slug).ifPresent(meta -> {
+            meta.setUpdatedAt(OffsetDateTime.now());
+            metaRepo.save(meta);
+        });
+        registry.refresh(slug);
     }
 
     private String defaultStyleFor(String slug) {
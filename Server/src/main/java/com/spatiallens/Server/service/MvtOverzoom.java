@@ -0,0 +1,609 @@
+package com.spatiallens.Server.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Overzoom MVT di memory: tile anak dibuat dari tile parent (di atas data maxzoom).
+ * - Decoder/encoder protobuf minimal untuk vector_tile.proto v2 (tanpa dependency).
+ * - keys/values layer disalin mentah (byte) → props tidak perlu di-decode.
+ * - Geometri: skala 2^d, geser ke kuadran anak, lalu clip ke extent + buffer
+ *   (titik disaring, garis dipotong per segmen, ring poligon Sutherland–Hodgman).
+ * - Ring hasil clip tetap searah → exterior/hole (tanda luas) tidak berubah;
+ *   hole dibuang bila exterior-nya habis ter-clip.
+ */
+public final class MvtOverzoom {
+
+    static final int POINT = 1;
+    static final int LINESTRING = 2;
+    static final int POLYGON = 3;
+
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+    private static final int CLOSE_PATH = 7;
+
+    /** Buffer ST_AsMVTGeom relatif ke extent (64 dari 4096). */
+    private static final double BUFFER_FRACTION = 64.0 / 4096.0;
+
+    private MvtOverzoom() {
+    }
+
+    /** Layer MVT; keys/values berupa pesan protobuf mentah. */
+    record Layer(String name, int version, int extent, List<Feature> features, List<byte[]> keys,
+            List<byte[]> values) {
+    }
+
+    /** Feature MVT; id null = tidak ada, geometry = command integer mentah. */
+    record Feature(Long id, int[] tags, int type, int[] geometry) {
+    }
+
+    /**
+     * Tile anak dari tile parent (MVT mentah, bukan gzip).
+     * @param levels  selisih zoom anak - parent (>= 1)
+     * @param dx      offset x anak di dalam parent (0..2^levels-1)
+     * @param dy      offset y anak di dalam parent (0..2^levels-1)
+     * @return MVT mentah; kosong bila tidak ada fitur tersisa.
+     */
+    public static byte[] overzoom(byte[] parent, int levels, int dx, int dy) {
+        if (parent == null || parent.length == 0)
+            return new byte[0];
+
+        double scale = Math.pow(2, levels);
+        List<Layer> out = new ArrayList<>();
+        for (Layer layer : decode(parent)) {
+            double ext = layer.extent();
+            double buffer = ext * BUFFER_FRACTION;
+            double offX = dx * ext;
+            double offY = dy * ext;
+
+            List<Feature> features = new ArrayList<>();
+            for (Feature f : layer.features()) {
+                int[] geom = transform(f.type(), f.geometry(), scale, offX, offY, -buffer, ext + buffer);
+                if (geom != null) {
+                    features.add(new Feature(f.id(), f.tags(), f.type(), geom));
+                }
+            }
+            if (!features.isEmpty()) {
+                out.add(new Layer(layer.name(), layer.version(), layer.extent(), features, layer.keys(),
+                        layer.values()));
+            }
+        }
+        return out.isEmpty() ? new byte[0] : encode(out);
+    }
+
+    // ------------------------------------------------------------
+    // Geometri
+    // ------------------------------------------------------------
+
+    /** Skala + geser + clip satu geometri; null bila habis ter-clip. */
+    private static int[] transform(int type, int[] commands, double scale, double offX, double offY,
+            double min, double max) {
+        List<double[]> parts = decodeGeometry(commands, type);
+        for (double[] part : parts) {
+            for (int i = 0; i < part.length; i += 2) {
+                part[i] = part[i] * scale - offX;
+                part[i + 1] = part[i + 1] * scale - offY;
+            }
+        }
+
+        List<long[]> kept = new ArrayList<>();
+        switch (type) {
+            case POINT -> {
+                for (double[] p : parts) {
+                    for (int i = 0; i < p.length; i += 2) {
+                        if (p[i] >= min && p[i] <= max && p[i + 1] >= min && p[i + 1] <= max)
+                            kept.add(new long[] { Math.round(p[i]), Math.round(p[i + 1]) });
+                    }
+                }
+                if (kept.isEmpty())
+                    return null;
+                // multipoint: satu MoveTo dengan banyak parameter
+                long[] all = new long[kept.size() * 2];
+                for (int i = 0; i < kept.size(); i++) {
+                    all[i * 2] = kept.get(i)[0];
+                    all[i * 2 + 1] = kept.get(i)[1];
+                }
+                return encodeGeometry(List.of(all), POINT);
+            }
+            case LINESTRING -> {
+                for (double[] line : parts) {
+                    for (double[] piece : clipLine(line, min, max)) {
+                        long[] r = roundDedup(piece, false);
+                        if (r.length >= 4)
+                            kept.add(r);
+                    }
+                }
+            }
+            case POLYGON -> {
+                boolean exteriorKept = false;
+                double exteriorSign = 0;
+                for (double[] ring : parts) {
+                    double area = signedArea(ring);
+                    if (area == 0)
+                        continue;
+                    if (exteriorSign == 0)
+                        exteriorSign = Math.signum(area); // ring pertama selalu exterior
+                    boolean exterior = Math.signum(area) == exteriorSign;
+
+                    if (!exterior && !exteriorKept)
+                        continue;
+                    long[] r = roundDedup(clipRing(ring, min, max), true);
+                    boolean ok = r.length >= 6 && signedArea(r) != 0;
+                    if (exterior)
+                        exteriorKept = ok;
+                    if (ok)
+                        kept.add(r);
+                }
+            }
+            default -> {
+                return null;
+            }
+        }
+        return kept.isEmpty() ? null : encodeGeometry(kept, type);
+    }
+
+    /** Potong polyline ke kotak [min,max]² (Liang–Barsky per segmen). */
+    private static List<double[]> clipLine(double[] line, double min, double max) {
+        List<double[]> out = new ArrayList<>();
+        DoubleList cur = null;
+        for (int i = 0; i + 3 < line.length; i += 2) {
+            double x0 = line[i], y0 = line[i + 1], x1 = line[i + 2], y1 = line[i + 3];
+            double ddx = x1 - x0, ddy = y1 - y0;
+            double t0 = 0, t1 = 1;
+            double[] p = { -ddx, ddx, -ddy, ddy };
+            double[] q = { x0 - min, max - x0, y0 - min, max - y0 };
+            boolean visible = true;
+            for (int k = 0; k < 4 && visible; k++) {
+                if (p[k] == 0) {
+                    if (q[k] < 0)
+                        visible = false;
+                } else {
+                    double t = q[k] / p[k];
+                    if (p[k] < 0) {
+                        if (t > t1)
+                            visible = false;
+                        else if (t > t0)
+                            t0 = t;
+                    } else {
+                        if (t < t0)
+                            visible = false;
+                        else if (t < t1)
+                            t1 = t;
+                    }
+                }
+            }
+            if (!visible) {
+                cur = flush(out, cur);
+                continue;
+            }
+            if (cur == null || t0 > 0) {
+                cur = flush(out, cur);
+                cur = new DoubleList();
+                cur.add(x0 + t0 * ddx, y0 + t0 * ddy);
+            }
+            cur.add(x0 + t1 * ddx, y0 + t1 * ddy);
+            if (t1 < 1)
+                cur = flush(out, cur);
+        }
+        flush(out, cur);
+        return out;
+    }
+
+    private static DoubleList flush(List<double[]> out, DoubleList cur) {
+        if (cur != null && cur.size >= 4)
+            out.add(cur.toArray());
+        return null;
+    }
+
+    /** Clip ring ke kotak [min,max]² (Sutherland–Hodgman, 4 sisi). */
+    private static double[] clipRing(double[] ring, double min, double max) {
+        double[] r = ring;
+        for (int edge = 0; edge < 4 && r.length > 0; edge++) {
+            int axis = edge % 2; // 0 = x, 1 = y
+            boolean lower = edge < 2;
+            double bound = lower ? min : max;
+            DoubleList out = new DoubleList();
+            int n = r.length / 2;
+            for (int i = 0; i < n; i++) {
+                int j = (i + 1) % n;
+                double ax = r[i * 2], ay = r[i * 2 + 1];
+                double bx = r[j * 2], by = r[j * 2 + 1];
+                double av = axis == 0 ? ax : ay;
+                double bv = axis == 0 ? bx : by;
+                boolean aIn = lower ? av >= bound : av <= bound;
+                boolean bIn = lower ? bv >= bound : bv <= bound;
+                if (aIn)
+                    out.add(ax, ay);
+                if (aIn != bIn) {
+                    double t = (bound - av) / (bv - av);
+                    out.add(ax + t * (bx - ax), ay + t * (by - ay));
+                }
+            }
+            r = out.toArray();
+        }
+        return r;
+    }
+
+    /** Bulatkan ke integer dan buang titik berurutan yang sama (ring: juga ujung = awal). */
+    private static long[] roundDedup(double[] pts, boolean ring) {
+        long[] out = new long[pts.length];
+        int n = 0;
+        for (int i = 0; i < pts.length; i += 2) {
+            long x = Math.round(pts[i]);
+            long y = Math.round(pts[i + 1]);
+            if (n > 0 && out[n - 2] == x && out[n - 1] == y)
+                continue;
+            out[n++] = x;
+            out[n++] = y;
+        }
+        if (ring && n >= 4 && out[0] == out[n - 2] && out[1] == out[n - 1])
+            n -= 2;
+        return Arrays.copyOf(out, n);
+    }
+
+    private static double signedArea(double[] r) {
+        double sum = 0;
+        int n = r.length / 2;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            sum += r[i * 2] * r[j * 2 + 1] - r[j * 2] * r[i * 2 + 1];
+        }
+        return sum;
+    }
+
+    private static double signedArea(long[] r) {
+        double[] d = new double[r.length];
+        for (int i = 0; i < r.length; i++)
+            d[i] = r[i];
+        return signedArea(d);
+    }
+
+    /**
+     * Command integer → daftar part (titik absolut x,y,x,y,...).
+     * - POINT: semua titik dalam satu part (multipoint).
+     * - LINESTRING/POLYGON: tiap MoveTo memulai part baru; ring tanpa titik penutup.
+     */
+    static List<double[]> decodeGeometry(int[] cmds, int type) {
+        List<double[]> parts = new ArrayList<>();
+        DoubleList cur = null;
+        long x = 0, y = 0;
+        int i = 0;
+        while (i < cmds.length) {
+            int cmd = cmds[i] & 0x7;
+            int count = cmds[i] >>> 3;
+            i++;
+            if (cmd == CLOSE_PATH)
+                continue;
+            if (cmd != MOVE_TO && cmd != LINE_TO)
+                break;
+            for (int c = 0; c < count && i + 1 < cmds.length; c++) {
+                x += zigzagDecode(cmds[i++]);
+                y += zigzagDecode(cmds[i++]);
+                if (cur == null || (cmd == MOVE_TO && type != POINT)) {
+                    if (cur != null && cur.size > 0)
+                        parts.add(cur.toArray());
+                    cur = new DoubleList();
+                }
+                cur.add(x, y);
+            }
+        }
+        if (cur != null && cur.size > 0)
+            parts.add(cur.toArray());
+        return parts;
+    }
+
+    /** Daftar part (koordinat integer absolut) → command integer. */
+    private static int[] encodeGeometry(List<long[]> parts, int type) {
+        IntList out = new IntList();
+        long cx = 0, cy = 0;
+        for (long[] p : parts) {
+            int n = p.length / 2;
+            if (type == POINT) {
+                out.add(command(MOVE_TO, n));
+                for (int i = 0; i < n; i++) {
+                    out.add(zigzagEncode(p[i * 2] - cx));
+                    out.add(zigzagEncode(p[i * 2 + 1] - cy));
+                    cx = p[i * 2];
+                    cy = p[i * 2 + 1];
+                }
+                continue;
+            }
+            out.add(command(MOVE_TO, 1));
+            out.add(zigzagEncode(p[0] - cx));
+            out.add(zigzagEncode(p[1] - cy));
+            cx = p[0];
+            cy = p[1];
+            out.add(command(LINE_TO, n - 1));
+            for (int i = 1; i < n; i++) {
+                out.add(zigzagEncode(p[i * 2] - cx));
+                out.add(zigzagEncode(p[i * 2 + 1] - cy));
+                cx = p[i * 2];
+                cy = p[i * 2 + 1];
+            }
+            if (type == POLYGON)
+                out.add(command(CLOSE_PATH, 1));
+        }
+        return out.toArray();
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    private static int zigzagEncode(long v) {
+        int n = (int) v;
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static long zigzagDecode(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static long zigzagDecode64(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    // ------------------------------------------------------------
+    // Protobuf (vector_tile.proto)
+    // ------------------------------------------------------------
+
+    static List<Layer> decode(byte[] tile) {
+        List<Layer> layers = new ArrayList<>();
+        Reader r = new Reader(tile, 0, tile.length);
+        while (r.hasMore()) {
+            long tag = r.varint();
+            if ((tag >>> 3) == 3 && (tag & 7) == 2) {
+                layers.add(decodeLayer(r.sub()));
+            } else {
+                r.skip((int) (tag & 7));
+            }
+        }
+        return layers;
+    }
+
+    private static Layer decodeLayer(Reader r) {
+        String name = "";
+        int version = 2;
+        int extent = 4096;
+        List<Feature> features = new ArrayList<>();
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        while (r.hasMore()) {
+            long tag = r.varint();
+            int field = (int) (tag >>> 3);
+            int wire = (int) (tag & 7);
+            switch (field) {
+                case 1 -> name = new String(r.bytes(), StandardCharsets.UTF_8);
+                case 2 -> features.add(decodeFeature(r.sub()));
+                case 3 -> keys.add(r.bytes());
+                case 4 -> values.add(r.bytes());
+                case 5 -> extent = (int) r.varint();
+                case 15 -> version = (int) r.varint();
+                default -> r.skip(wire);
+            }
+        }
+        return new Layer(name, version, extent, features, keys, values);
+    }
+
+    private static Feature decodeFeature(Reader r) {
+        Long id = null;
+        IntList tags = new IntList();
+        int type = 0;
+        IntList geometry = new IntList();
+        while (r.hasMore()) {
+            long tag = r.varint();
+            int field = (int) (tag >>> 3);
+            int wire = (int) (tag & 7);
+            if (field == 1 && wire == 0) {
+                id = r.varint();
+            } else if (field == 2 || field == 4) {
+                IntList target = field == 2 ? tags : geometry;
+                if (wire == 2) {
+                    Reader packed = r.sub();
+                    while (packed.hasMore())
+                        target.add((int) packed.varint());
+                } else {
+                    target.add((int) r.varint());
+                }
+            } else if (field == 3 && wire == 0) {
+                type = (int) r.varint();
+            } else {
+                r.skip(wire);
+            }
+        }
+        return new Feature(id, tags.toArray(), type, geometry.toArray());
+    }
+
+    /**
+     * Nilai properti (pesan Value mentah) sebagai teks, setara props->>'key'.
+     * ST_AsMVT dari kolom props->>... selalu string; tipe lain tetap didukung.
+     */
+    static String valueText(byte[] value) {
+        Reader r = new Reader(value, 0, value.length);
+        while (r.hasMore()) {
+            long tag = r.varint();
+            int wire = (int) (tag & 7);
+            switch ((int) (tag >>> 3)) {
+                case 1 -> {
+                    return new String(r.bytes(), StandardCharsets.UTF_8);
+                }
+                case 2 -> {
+                    return Float.toString(Float.intBitsToFloat((int) r.fixed(4)));
+                }
+                case 3 -> {
+                    return Double.toString(Double.longBitsToDouble(r.fixed(8)));
+                }
+                case 4 -> {
+                    return Long.toString(r.varint());
+                }
+                case 5 -> {
+                    return Long.toUnsignedString(r.varint());
+                }
+                case 6 -> {
+                    return Long.toString(zigzagDecode64(r.varint()));
+                }
+                case 7 -> {
+                    return (r.varint() != 0) ? "true" : "false";
+                }
+                default -> r.skip(wire);
+            }
+        }
+        return null;
+    }
+
+    static byte[] encode(List<Layer> layers) {
+        ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        for (Layer layer : layers) {
+            ByteArrayOutputStream l = new ByteArrayOutputStream();
+            writeBytes(l, 1, layer.name().getBytes(StandardCharsets.UTF_8));
+            for (Feature f : layer.features()) {
+                writeBytes(l, 2, encodeFeature(f));
+            }
+            for (byte[] k : layer.keys()) {
+                writeBytes(l, 3, k);
+            }
+            for (byte[] v : layer.values()) {
+                writeBytes(l, 4, v);
+            }
+            writeVarintField(l, 5, layer.extent());
+            writeVarintField(l, 15, layer.version());
+            writeBytes(tile, 3, l.toByteArray());
+        }
+        return tile.toByteArray();
+    }
+
+    private static byte[] encodeFeature(Feature f) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (f.id() != null)
+            writeVarintField(out, 1, f.id());
+        if (f.tags().length > 0)
+            writeBytes(out, 2, packed(f.tags()));
+        writeVarintField(out, 3, f.type());
+        writeBytes(out, 4, packed(f.geometry()));
+        return out.toByteArray();
+    }
+
+    private static byte[] packed(int[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(values.length * 2);
+        for (int v : values)
+            writeVarint(out, v & 0xFFFFFFFFL);
+        return out.toByteArray();
+    }
+
+    private static void writeVarintField(ByteArrayOutputStream out, int field, long value) {
+        writeVarint(out, (long) field << 3);
+        writeVarint(out, value);
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, int field, byte[] data) {
+        writeVarint(out, ((long) field << 3) | 2);
+        writeVarint(out, data.length);
+        out.writeBytes(data);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    /** Pembaca protobuf sederhana di atas potongan byte[]. */
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+        private final int end;
+
+        Reader(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return pos < end;
+        }
+
+        long varint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= end)
+                    throw new IllegalArgumentException("MVT terpotong");
+                byte b = buf[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return result;
+            }
+            throw new IllegalArgumentException("Varint MVT tidak valid");
+        }
+
+        Reader sub() {
+            int len = (int) varint();
+            if (len < 0 || pos + len > end)
+                throw new IllegalArgumentException("MVT terpotong");
+            Reader r = new Reader(buf, pos, pos + len);
+            pos += len;
+            return r;
+        }
+
+        byte[] bytes() {
+            Reader r = sub();
+            return Arrays.copyOfRange(buf, r.pos, r.end);
+        }
+
+        /** Little-endian fixed32/fixed64. */
+        long fixed(int size) {
+            if (pos + size > end)
+                throw new IllegalArgumentException("MVT terpotong");
+            long v = 0;
+            for (int i = 0; i < size; i++)
+                v |= (long) (buf[pos++] & 0xFF) << (8 * i);
+            return v;
+        }
+
+        void skip(int wire) {
+            switch (wire) {
+                case 0 -> varint();
+                case 1 -> pos += 8;
+                case 2 -> sub();
+                case 5 -> pos += 4;
+                default -> throw new IllegalArgumentException("Wire type MVT tidak dikenal: " + wire);
+            }
+        }
+    }
+
+    private static final class DoubleList {
+        private double[] data = new double[16];
+        private int size;
+
+        void add(double x, double y) {
+            if (size + 2 > data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            data[size++] = x;
+            data[size++] = y;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class IntList {
+        private int[] data = new int[16];
+        private int size;
+
+        void add(int v) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
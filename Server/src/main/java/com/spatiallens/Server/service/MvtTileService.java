@@ -1,30 +1,154 @@
 // src/main/java/com/spatiallens/Server/service/MvtTileService.java
 package com.spatiallens.Server.service;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import com.spatiallens.Server.model.LayerMeta;
-import com.spatiallens.Server.repository.LayerMetaRepository;
+import com.spatiallens.Server.service.DbAdmission.Workload;
+import com.spatiallens.Server.service.LayerRegistry.LayerSnapshot;
+import com.spatiallens.Server.service.TileCacheService.Scope;
+import com.spatiallens.Server.service.TileCacheService.TileKey;
+
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class MvtTileService {
 
+    /** Buffer ST_AsMVTGeom (64 dari extent 4096) sebagai fraksi sisi tile. */
+    private static final double TILE_BUFFER_FRACTION = 64.0 / 4096.0;
+
     private final JdbcTemplate jdbc;
-    private final LayerMetaRepository metaRepo;
+    private final LayerRegistry registry;
+    private final TileCacheService cache;
+    private final LayerMetrics metrics;
+    private final DbAdmission admission;
+
+    /** Dedup render tile identik yang sedang berjalan (slug/versi/z/x/y). */
+    private final SingleFlight<TileKey, byte[]> inFlight;
+
+    /** Pool untuk query per-layer pada tile komposit (multi-slug). */
+    private final ExecutorService compositePool;
 
-    public MvtTileService(JdbcTemplate jdbc, LayerMetaRepository metaRepo) {
+    /** Pool untuk batch tile (prefetch viewport), terpisah dari pool komposit. */
+    private final ExecutorService batchPool;
+
+    /** Overzoom di atas data_max_zoom layer (false → semua zoom dirender dari DB). */
+    private final boolean overzoomEnabled;
+
+    public MvtTileService(
+            JdbcTemplate jdbc,
+            LayerRegistry registry,
+            TileCacheService cache,
+            LayerMetrics metrics,
+            DbAdmission admission,
+            @Value("${tiles.composite.threads:8}") int compositeThreads,
+            @Value("${tiles.single-flight.timeout-ms:30000}") long singleFlightTimeoutMs,
+            @Value("${tiles.overzoom.enabled:true}") boolean overzoomEnabled,
+            @Value("${tiles.batch.threads:8}") int batchThreads) {
         this.jdbc = jdbc;
-        this.metaRepo = metaRepo;
+        this.registry = registry;
+        this.cache = cache;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.inFlight = new SingleFlight<>(singleFlightTimeoutMs);
+        this.overzoomEnabled = overzoomEnabled;
+        this.compositePool = Executors.newFixedThreadPool(Math.max(1, compositeThreads), r -> {
+            Thread t = new Thread(r, "tile-composite");
+            t.setDaemon(true);
+            return t;
+        });
+        this.batchPool = Executors.newFixedThreadPool(Math.max(1, batchThreads), r -> {
+            Thread t = new Thread(r, "tile-batch");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
-    /** Hasil tile + hint caching */
-    public record TileResult(byte[] body, boolean empty, boolean publicPublished) {
+    @PreDestroy
+    public void shutdown() {
+        compositePool.shutdownNow();
+        batchPool.shutdownNow();
+    }
+
+    /**
+     * Hasil tile + hint caching. body = MVT ter-gzip (kosong bila empty).
+     * error = render gagal (body kosong pengganti) → jangan di-cache / diberi validator.
+     */
+    public record TileResult(byte[] body, boolean empty, boolean publicPublished, boolean error) {
+
+        public TileResult(byte[] body, boolean empty, boolean publicPublished) {
+            this(body, empty, publicPublished, false);
+        }
+
+        /** MVT mentah untuk klien tanpa gzip (decompress on the fly). */
+        public byte[] raw() {
+            return TileCompression.gunzip(body);
+        }
+    }
+
+    /**
+     * Satu tile dari batch (prefetch viewport), dikerjakan di pool batch.
+     * - Satu slug → {@link #getTile}, lebih → {@link #getCompositeTile}: akses Draft,
+     *   cache, single-flight dan admission identik dengan endpoint single-tile.
+     * - Paralelisme per instance dibatasi tiles.batch.threads (+ budget INTERACTIVE).
+     */
+    public CompletableFuture<TileResult> getTileAsync(List<String> slugs, int z, int x, int y,
+            boolean canAccessRestricted) {
+        return CompletableFuture.supplyAsync(() -> (slugs.size() == 1)
+                ? getTile(slugs.get(0), z, x, y, canAccessRestricted)
+                : getCompositeTile(slugs, z, x, y, canAccessRestricted), batchPool);
+    }
+
+    /**
+     * Tile komposit: satu MVT berisi satu layer bernama per slug.
+     * - Tiap slug dirender (atau diambil dari cache) secara paralel lewat {@link #getTile}
+     *   → cek akses Draft & cache sama persis dengan endpoint single-layer.
+     * - MVT = deretan field "layers" protobuf, jadi body per slug cukup disambung sesuai
+     *   urutan slug. Body cache sudah gzip → disambung apa adanya sebagai gzip multi-member
+     *   (RFC 1952), tanpa gunzip + gzip ulang per request.
+     * - publicPublished hanya true bila SEMUA slug Published.
+     */
+    public TileResult getCompositeTile(List<String> slugs, int z, int x, int y, boolean canAccessRestricted) {
+        List<CompletableFuture<TileResult>> parts = new ArrayList<>(slugs.size());
+        for (String slug : slugs) {
+            parts.add(CompletableFuture.supplyAsync(
+                    () -> getTile(slug, z, x, y, canAccessRestricted), compositePool));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean allPublic = true;
+        boolean error = false;
+        for (CompletableFuture<TileResult> f : parts) {
+            TileResult r;
+            try {
+                r = f.join();
+            } catch (Exception ex) {
+                // DB penuh → seluruh tile 503 (jangan kirim tile parsial yang bisa ter-cache)
+                if (ex.getCause() instanceof DbBusyException busy)
+                    throw busy;
+                // satu layer gagal → layer lain tetap dikirim (tile ditandai error)
+                allPublic = false;
+                error = true;
+                continue;
+            }
+            allPublic &= r.publicPublished();
+            error |= r.error();
+            if (!r.empty()) {
+                out.writeBytes(r.body());
+            }
+        }
+
+        byte[] body = out.toByteArray();
+        return new TileResult(body, body.length == 0, allPublic, error);
     }
 
     /**
@@ -32,52 +156,217 @@ public class MvtTileService {
      * - Draft → butuh akses; jika tidak, empty.
      * - di luar min/max zoom → empty.
      * - metadata penting kosong (schema/table/geom) → empty.
-     * - Geometri ditransform ke 3857 agar cocok dengan ST_TileEnvelope.
+     * - Geometri dibaca dari kolom 3857 pra-proyeksi agar cocok dengan ST_TileEnvelope.
+     * - Zoom rendah memakai tabel generalisasi (gen_zooms) bila ada.
+     * - Zoom di atas data_max_zoom dibuat dari tile parent (overzoom, tanpa query).
+     * - Hasil di-gzip sekali lalu di-cache per slug/versi/z/x/y; Draft masuk scope RESTRICTED.
+     * - Cache miss yang bersamaan untuk key sama hanya memicu satu query.
+     * - Latency/hasil/error tercatat di {@link LayerMetrics} per layer.
+     * - Query berjalan di bawah budget INTERACTIVE {@link DbAdmission};
+     *   budget habis → {@link DbBusyException} (503), bukan tile kosong.
      */
     public TileResult getTile(String slug, int z, int x, int y, boolean canAccessRestricted) {
-        Optional<LayerMeta> opt = metaRepo.findBySlug(slug);
-        if (opt.isEmpty()) {
+        return getTile(slug, z, x, y, canAccessRestricted, Workload.INTERACTIVE);
+    }
+
+    /** Sama dengan {@link #getTile(String, int, int, int, boolean)} dengan kelas workload eksplisit (seeding). */
+    public TileResult getTile(String slug, int z, int x, int y, boolean canAccessRestricted, Workload workload) {
+        long t0 = System.nanoTime();
+        LayerSnapshot lm = registry.get(slug).orElse(null);
+        String layer = (lm != null) ? slug : LayerMetrics.UNKNOWN_LAYER;
+
+        try {
+            TileResult res = resolveTile(lm, z, x, y, canAccessRestricted, workload);
+            metrics.request(LayerMetrics.MVT, layer, res.empty() ? "empty" : "data", t0);
+            return res;
+        } catch (DbBusyException busy) {
+            metrics.request(LayerMetrics.MVT, layer, "shed", t0);
+            throw busy;
+        } catch (Exception ex) {
+            // Fail-closed → empty tile bertanda error (controller: no-store, tanpa validator)
+            metrics.error(LayerMetrics.MVT, layer, ex);
+            metrics.request(LayerMetrics.MVT, layer, "error", t0);
+            System.err.println("[MVT] Render gagal " + slug + " " + z + "/" + x + "/" + y + ": " + ex.getMessage());
+            return new TileResult(emptyTile(), true, lm != null && lm.published(), true);
+        }
+    }
+
+    /**
+     * MVT ter-gzip untuk snapshot yang hak aksesnya sudah dicek pemanggil (render raster).
+     * - Cache/single-flight/overzoom sama dengan {@link #getTile}; tanpa metrik request.
+     * - Error DB dilempar (bukan tile kosong) → pemanggil tidak meng-cache hasil gagal.
+     * @return MVT gzip; byte[0] = kosong
+     */
+    byte[] vectorTile(LayerSnapshot lm, int z, int x, int y, Workload workload) {
+        return resolveTile(lm, z, x, y, true, workload).body();
+    }
+
+    private TileResult resolveTile(LayerSnapshot lm, int z, int x, int y, boolean canAccessRestricted,
+            Workload workload) {
+        if (lm == null) {
             return new TileResult(emptyTile(), true, false);
         }
 
-        LayerMeta lm = opt.get();
-        boolean isPublished = "Published".equalsIgnoreCase(lm.getStatus());
+        boolean isPublished = lm.published();
         boolean publicPublished = isPublished;
 
         if (!isPublished && !canAccessRestricted) {
             return new TileResult(emptyTile(), true, publicPublished);
         }
 
-        Integer minz = lm.getMinzoom();
-        Integer maxz = lm.getMaxzoom();
+        Integer minz = lm.minzoom();
+        Integer maxz = lm.maxzoom();
         if ((minz != null && z < minz) || (maxz != null && z > maxz)) {
             return new TileResult(emptyTile(), true, publicPublished);
         }
 
-        if (isBlank(lm.getSchemaName()) || isBlank(lm.getTableName()) || isBlank(lm.getGeomColumn())) {
+        if (!lm.hasTable()) {
             return new TileResult(emptyTile(), true, publicPublished);
         }
 
-        final String qualified = safeIdent(lm.getSchemaName()) + "." + safeIdent(lm.getTableName());
-        final String geomCol = safeIdent(lm.getGeomColumn());
-        
-        // Auto-populate whitelist jika kosong dengan semua properties dari sample data
-        String whitelist = lm.getPropsWhitelist();
-        // Treat null/blank/[] as empty so we can auto-detect and persist once
-        List<String> parsedWhitelist = parseWhitelist(whitelist);
-        if (isBlank(whitelist) || parsedWhitelist.isEmpty()) {
-            whitelist = autoDetectProperties(qualified);
-            if (!isBlank(whitelist)) {
-                lm.setPropsWhitelist(whitelist);
-                metaRepo.save(lm);
+        // tile tanpa data → jawab dari memory (coverage index / extent), tanpa DB & cache
+        if (outsideData(lm, z, x, y)) {
+            return new TileResult(emptyTile(), true, publicPublished);
+        }
+
+        TileKey key = new TileKey(isPublished ? Scope.PUBLIC : Scope.RESTRICTED, lm.slug(), lm.version(), z, x, y);
+        byte[] cached = cache.get(key);
+        metrics.cache(LayerMetrics.MVT, lm.slug(), cached != null);
+        if (cached != null) {
+            return new TileResult(cached, cached.length == 0, publicPublished);
+        }
+
+        // request identik yang bersamaan → satu query, sisanya menunggu hasilnya;
+        // di atas data maxzoom → dibuat dari tile parent tanpa query
+        int renderZ = overzoomEnabled ? lm.renderZoom(z) : z;
+        byte[] tile = (renderZ < z)
+                ? inFlight.execute(key, () -> overzoomAndCache(lm, key, renderZ, workload))
+                : inFlight.execute(key, () -> renderAndCache(lm, key, workload));
+        boolean empty = (tile == null || tile.length == 0);
+        return new TileResult(empty ? emptyTile() : tile, empty, publicPublished);
+    }
+
+    /**
+     * true bila tile pasti kosong menurut coverage index, atau (tanpa index)
+     * bila tile + buffer tidak bersinggungan dengan extent layer.
+     */
+    private static boolean outsideData(LayerSnapshot lm, int z, int x, int y) {
+        TileCoverage coverage = lm.coverage();
+        if (coverage != null)
+            return !coverage.occupiedWithBuffer(z, x, y, TILE_BUFFER_FRACTION);
+
+        double[] bbox = lm.bbox();
+        if (bbox == null)
+            return false;
+        double n = Math.pow(2, z);
+        double pad = TILE_BUFFER_FRACTION;
+        double west = (x - pad) / n * 360.0 - 180.0;
+        double east = (x + 1 + pad) / n * 360.0 - 180.0;
+        double north = tileLat(y - pad, n);
+        double south = tileLat(y + 1 + pad, n);
+        return east < bbox[0] || west > bbox[2] || north < bbox[1] || south > bbox[3];
+    }
+
+    private static double tileLat(double y, double n) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n))));
+    }
+
+    /** Render tile dari PostGIS, gzip, lalu simpan ke cache. Dipanggil hanya oleh leader single-flight. */
+    private byte[] renderAndCache(LayerSnapshot lm, TileKey key, Workload workload) {
+        // leader sebelumnya bisa saja baru selesai mengisi cache
+        byte[] again = cache.get(key);
+        if (again != null) {
+            return again;
+        }
+
+        byte[] tile = admission.run(workload, () -> {
+            long tDb = System.nanoTime();
+            try {
+                // SQL sudah dikompilasi di snapshot registry (termasuk pilihan band generalisasi)
+                return jdbc.queryForObject(lm.tileSqlFor(key.z()), byte[].class,
+                        key.z(), key.x(), key.y(), key.slug());
+            } catch (EmptyResultDataAccessException ex) {
+                return null;
+            } finally {
+                metrics.db(LayerMetrics.MVT, key.slug(), tDb);
             }
+        });
+
+        // simpan ter-gzip: hemat memory/disk cache dan tidak ada kompresi per hit
+        if (tile == null || tile.length == 0) {
+            tile = emptyTile();
+        } else {
+            long tEnc = System.nanoTime();
+            tile = TileCompression.gzip(tile);
+            metrics.encode(LayerMetrics.MVT, key.slug(), tEnc);
+            metrics.bytes(LayerMetrics.MVT, key.slug(), tile.length);
         }
-        
+        putIfCurrent(lm, key, tile);
+        return tile;
+    }
+
+    /**
+     * Tile di atas data maxzoom: potong & skala tile parent di memory (decoder/encoder MVT).
+     * - Parent diambil dari cache, atau dirender sekali lewat single-flight parent.
+     * - Hasil anak di-gzip & di-cache seperti tile biasa.
+     */
+    private byte[] overzoomAndCache(LayerSnapshot lm, TileKey key, int parentZ, Workload workload) {
+        byte[] again = cache.get(key);
+        if (again != null) {
+            return again;
+        }
+
+        int levels = key.z() - parentZ;
+        TileKey parentKey = new TileKey(key.scope(), key.slug(), key.version(), parentZ,
+                key.x() >> levels, key.y() >> levels);
+        byte[] parent = cache.get(parentKey);
+        if (parent == null) {
+            parent = inFlight.execute(parentKey, () -> renderAndCache(lm, parentKey, workload));
+        }
+
+        byte[] tile = emptyTile();
+        if (parent != null && parent.length > 0) {
+            long tEnc = System.nanoTime();
+            int mask = (1 << levels) - 1;
+            byte[] raw = MvtOverzoom.overzoom(TileCompression.gunzip(parent), levels,
+                    key.x() & mask, key.y() & mask);
+            if (raw.length > 0) {
+                tile = TileCompression.gzip(raw);
+                metrics.bytes(LayerMetrics.MVT, key.slug(), tile.length);
+            }
+            metrics.encode(LayerMetrics.MVT, key.slug(), tEnc);
+        }
+        putIfCurrent(lm, key, tile);
+        return tile;
+    }
+
+    /**
+     * Simpan ke cache hanya bila layer tidak berubah (versi/revisi) sejak snapshot
+     * request diambil → render yang berpacu dengan edit fitur tidak menaruh tile basi
+     * setelah invalidasi area.
+     */
+    private void putIfCurrent(LayerSnapshot lm, TileKey key, byte[] tile) {
+        LayerSnapshot now = registry.get(lm.slug()).orElse(null);
+        if (now != null && now.version() == lm.version() && now.revision() == lm.revision()) {
+            cache.put(key, tile);
+        }
+    }
+
+    /**
+     * SQL tile untuk satu layer (dipakai {@link LayerRegistry} saat membangun snapshot).
+     * - Envelope: ST_TileEnvelope(z,x,y) → SRID 3857
+     * - Data: kolom <geom>_3857 langsung dipakai ST_AsMVTGeom & filter intersect
+     * - band != null → tabel generalisasi <table>_g<band> di-join ke tabel sumber untuk props
+     * Parameter: z, x, y, nama layer MVT (slug).
+     */
+    static String buildTileSql(String qualified, String geom3857Col, List<String> whitelist, Integer band) {
         final String projectedCols = buildProjectedColumns(whitelist);
+        final String from = (band == null)
+                ? qualified + " t"
+                : qualified + "_g" + band + " g JOIN " + qualified + " t ON t.id = g.id";
+        final String geomRef = (band == null) ? "t." + geom3857Col : "g.geom_3857";
 
-        // Envelope: ST_TileEnvelope(z,x,y) → SRID 3857
-        // Data: transform ke 3857 sebelum ST_AsMVTGeom dan filter intersect
-        String sql = """
+        return """
                 WITH env AS (
                   SELECT ST_TileEnvelope(?, ?, ?) AS box
                 )
@@ -85,42 +374,85 @@ public class MvtTileService {
                   (SELECT ST_AsMVT(q, ?, 4096, 'geom') FROM (
                     SELECT %s,
                            ST_AsMVTGeom(
-                             ST_Transform(t.%s, 3857),
+                             %s,
                              env.box,
                              4096, 64, true
                            ) AS geom
-                    FROM %s t, env
-                    WHERE ST_Intersects(ST_Transform(t.%s, 3857), env.box)
+                    FROM %s, env
+                    WHERE ST_Intersects(%s, env.box)
                   ) AS q),
                   '\\x'::bytea
                 ) AS tile
-                """.formatted(projectedCols, geomCol, qualified, geomCol);
+                """.formatted(projectedCols, geomRef, from, geomRef);
+    }
 
-        try {
-            byte[] tile = jdbc.queryForObject(sql, byte[].class, z, x, y, slug);
-            boolean empty = (tile == null || tile.length == 0);
-            if (empty) {
-                return new TileResult(emptyTile(), true, publicPublished);
-            }
-            return new TileResult(tile, false, publicPublished);
-        } catch (EmptyResultDataAccessException ex) {
-            return new TileResult(emptyTile(), true, publicPublished);
-        } catch (Exception ex) {
-            // Fail-closed → empty tile agar endpoint selalu resilient
-            return new TileResult(emptyTile(), true, publicPublished);
+    /**
+     * SQL tile cluster (mode clustering titik, dipakai untuk z <= cluster_max_zoom).
+     * - Grid dijangkar ke tepi tile: gridCells sel per sisi → sel antar tile selalu sejajar.
+     * - Tiap sel → satu titik rata-rata + point_count (+ SUM props numerik "sum_KEY").
+     * - Geometri non-titik memakai centroid-nya.
+     * - Sel berisi 1 titik tetap membawa id fitur; cluster → id NULL, cluster=true.
+     * Parameter sama dengan {@link #buildTileSql}: z, x, y, nama layer MVT (slug).
+     */
+    static String buildClusterSql(String qualified, String geom3857Col, int gridCells, List<String> sumProps) {
+        StringBuilder sums = new StringBuilder();
+        StringBuilder sumCols = new StringBuilder();
+        for (String key : sumProps) {
+            String upperKey = key.toUpperCase().trim();
+            if (upperKey.isEmpty())
+                continue;
+            String escapedKey = upperKey.replace("'", "''");
+            String alias = "\"sum_" + upperKey.replace("\"", "") + "\"";
+            // nilai non-numerik diabaikan (bukan error)
+            sums.append(",\n         SUM(CASE WHEN p.props->>'").append(escapedKey)
+                    .append("' ~ '^\\s*-?[0-9]+(\\.[0-9]+)?([eE][-+]?[0-9]+)?\\s*$' THEN (p.props->>'")
+                    .append(escapedKey).append("')::numeric END) AS ").append(alias);
+            sumCols.append(", ").append(alias);
         }
+
+        return """
+                WITH env AS (
+                  SELECT ST_TileEnvelope(?, ?, ?) AS box
+                ),
+                grid AS (
+                  SELECT box, ST_XMin(box) AS x0, ST_YMin(box) AS y0,
+                         (ST_XMax(box) - ST_XMin(box)) / %d AS cell
+                  FROM env
+                ),
+                pts AS (
+                  SELECT t.id, t.props, ST_Centroid(t.%s) AS c
+                  FROM %s t, grid
+                  WHERE ST_Intersects(t.%s, grid.box)
+                ),
+                clusters AS (
+                  SELECT CASE WHEN COUNT(*) = 1 THEN MIN(p.id) END AS id,
+                         COUNT(*) AS point_count,
+                         ST_SetSRID(ST_MakePoint(AVG(ST_X(p.c)), AVG(ST_Y(p.c))), 3857) AS g%s
+                  FROM pts p, grid
+                  GROUP BY floor((ST_X(p.c) - grid.x0) / grid.cell),
+                           floor((ST_Y(p.c) - grid.y0) / grid.cell)
+                )
+                SELECT COALESCE(
+                  (SELECT ST_AsMVT(q, ?, 4096, 'geom') FROM (
+                    SELECT cl.id, cl.point_count, (cl.point_count > 1) AS cluster%s,
+                           ST_AsMVTGeom(cl.g, grid.box, 4096, 64, true) AS geom
+                    FROM clusters cl, grid
+                  ) AS q),
+                  '\\x'::bytea
+                ) AS tile
+                """.formatted(gridCells, geom3857Col, qualified, geom3857Col, sums, sumCols);
     }
 
     // --- helpers ---
 
-    private String buildProjectedColumns(String whitelistRaw) {
+    private static String buildProjectedColumns(List<String> whitelist) {
         // selalu include id
         List<String> cols = new ArrayList<>();
         cols.add("t.id");
 
         // kolom props (JSONB) → props->>'key' AS "key"
         // Uppercase key untuk match dengan extractProps yang sudah uppercase
-        for (String key : parseWhitelist(whitelistRaw)) {
+        for (String key : whitelist) {
             String upperKey = key.toUpperCase().trim();
             if (!upperKey.isEmpty()) {
                 // Escape single quote untuk PostgreSQL JSONB
@@ -132,103 +464,7 @@ public class MvtTileService {
         return String.join(", ", cols);
     }
 
-    private List<String> parseWhitelist(String raw) {
-        List<String> out = new ArrayList<>();
-        if (raw == null || raw.isBlank())
-            return out;
-
-        String s = raw.trim();
-        if (s.startsWith("[") && s.endsWith("]")) {
-            String inner = s.substring(1, s.length() - 1);
-            for (String part : inner.split(",")) {
-                String v = part.trim();
-                if (v.startsWith("\"") && v.endsWith("\"") && v.length() >= 2) {
-                    v = v.substring(1, v.length() - 1);
-                }
-                v = v.trim();
-                if (!v.isBlank())
-                    out.add(v);
-            }
-            return out;
-        }
-
-        for (String part : s.split(",")) {
-            String v = part.trim();
-            if (!v.isBlank())
-                out.add(v);
-        }
-        return out;
-    }
-
-    private String safeIdent(String ident) {
-        return ident.replaceAll("[^A-Za-z0-9_]", "_");
-    }
-
-    private String safePropKey(String key) {
-        return key.replaceAll("[^A-Za-z0-9_]", "");
-    }
-
-    private boolean isBlank(String s) {
-        return s == null || s.trim().isEmpty();
-    }
-
     private byte[] emptyTile() {
         return new byte[0];
     }
-    
-    /**
-     * Auto-detect property keys dari sample data.
-     * Cek dari schema shapefile jika props kosong.
-     */
-    private String autoDetectProperties(String qualifiedTable) {
-        try {
-            // Coba ambil dari props yang ada (sudah uppercase dari extractProps)
-            String sql = String.format("""
-                    SELECT DISTINCT UPPER(jsonb_object_keys(props)) AS key
-                    FROM %s
-                    WHERE props IS NOT NULL 
-                      AND props != '{}'::jsonb
-                    LIMIT 100
-                    """, qualifiedTable);
-            
-            List<String> keys = jdbc.query(sql, (rs, rowNum) -> rs.getString("key"));
-            
-            // Kalau masih kosong, coba query langsung dari information_schema
-            // untuk ambil column names (kecuali id, geom, props)
-            if (keys.isEmpty()) {
-                String schema = qualifiedTable.split("\\.")[0];
-                String table = qualifiedTable.split("\\.")[1];
-                
-                String colSql = """
-                    SELECT column_name
-                    FROM information_schema.columns
-                    WHERE table_schema = ? 
-                      AND table_name = ?
-                      AND column_name NOT IN ('id', 'geom', 'props')
-                    ORDER BY ordinal_position
-                    """;
-                
-                keys = jdbc.query(colSql, (rs, rowNum) -> rs.getString("column_name"), schema, table);
-            }
-            
-            if (keys.isEmpty()) {
-                System.err.println("⚠️ No properties detected for table: " + qualifiedTable);
-                return null;
-            }
-            
-            // Return as JSON array format: ["key1","key2","key3"]
-            String result = "[" + keys.stream()
-                    .map(k -> "\"" + k + "\"")
-                    .reduce((a, b) -> a + "," + b)
-                    .orElse("") + "]";
-            
-            System.out.println("✅ Auto-detected properties for " + qualifiedTable + ": " + result);
-            return result;
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error auto-detecting properties for " + qualifiedTable + ": " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        }
-    }
 }
@@ -0,0 +1,59 @@
+package com.spatiallens.Server.service;
+
+import java.awt.image.BufferedImage;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool BufferedImage ARGB per ukuran untuk render raster.
+ * - Request berjalan di virtual thread → pool bersama, bukan ThreadLocal.
+ * - Total pixel yang disimpan dibatasi (byte); lebih → image dilepas ke GC.
+ * - Isi image TIDAK dibersihkan; pemakai wajib clear sebelum menggambar.
+ */
+final class RasterBufferPool {
+
+    private final long maxBytes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final Map<Long, Deque<BufferedImage>> free = new ConcurrentHashMap<>();
+
+    RasterBufferPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    BufferedImage acquire(int width, int height) {
+        Deque<BufferedImage> q = free.get(sizeKey(width, height));
+        BufferedImage img = (q != null) ? q.pollFirst() : null;
+        if (img == null)
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pooledBytes.addAndGet(-bytes(img));
+        return img;
+    }
+
+    void release(BufferedImage img) {
+        if (img == null)
+            return;
+        long b = bytes(img);
+        if (pooledBytes.addAndGet(b) > maxBytes) {
+            pooledBytes.addAndGet(-b);
+            return;
+        }
+        free.computeIfAbsent(sizeKey(img.getWidth(), img.getHeight()), k -> new ConcurrentLinkedDeque<>())
+                .offerFirst(img);
+    }
+
+    /** Byte yang sedang ditahan pool. */
+    long pooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private static long sizeKey(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+
+    private static long bytes(BufferedImage img) {
+        return (long) img.getWidth() * img.getHeight() * 4;
+    }
+}
@@ -0,0 +1,301 @@
+package com.spatiallens.Server.service;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+/**
+ * Kanvas render raster satu request: geometry EPSG:3857 (JTS atau fitur MVT) digambar satu per satu.
+ * - Per part (poligon/garis/titik) satu Path2D yang dipakai ulang; poligon
+ *   memakai even-odd → hole tetap berlubang.
+ * - Vertex yang bergeser < {@link #DECIMATE_PX} pixel dari vertex sebelumnya dibuang.
+ * - Part di luar viewport (+ margin stroke) dilewati; rangkaian vertex di
+ *   region luar yang sama (outcode Cohen-Sutherland) dipangkas ke ujungnya.
+ * - Image dipinjam dari {@link RasterBufferPool} dan dikembalikan oleh {@link #close()}.
+ * - Tidak thread-safe (satu kanvas per render).
+ */
+final class RasterCanvas implements AutoCloseable {
+
+    /** Jarak minimal (pixel) antar vertex yang digambar. */
+    static final double DECIMATE_PX = 0.5;
+
+    private final RasterBufferPool pool;
+    private final BufferedImage img;
+    private final Graphics2D g2d;
+    private final WmsStyle style;
+    private final Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD, 256);
+    private final Ellipse2D.Double dot = new Ellipse2D.Double();
+
+    private final double minX;
+    private final double maxY;
+    private final double scaleX;
+    private final double scaleY;
+    private final int width;
+    private final int height;
+
+    /** Batas viewport (pixel) yang diperluas margin stroke untuk part yang sedang digambar. */
+    private double lo;
+    private double hiX;
+    private double hiY;
+
+    RasterCanvas(RasterBufferPool pool, double[] bounds, int width, int height, WmsStyle style) {
+        this.pool = pool;
+        this.img = pool.acquire(width, height);
+        this.g2d = img.createGraphics();
+
+        // image dari pool bisa berisi render sebelumnya → kosongkan
+        g2d.setComposite(AlphaComposite.Clear);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        this.style = style;
+        this.minX = bounds[0];
+        this.maxY = bounds[3];
+        this.scaleX = width / (bounds[2] - bounds[0]);
+        this.scaleY = height / (bounds[3] - bounds[1]);
+        this.width = width;
+        this.height = height;
+    }
+
+    /** Gambar satu fitur; vals = nilai properti style (sejajar style.fields()). */
+    void draw(Geometry geom, String[] vals) {
+        for (int i = 0; i < geom.getNumGeometries(); i++) {
+            Geometry part = geom.getGeometryN(i);
+            if (part instanceof Polygon poly) {
+                drawPolygon(poly, vals);
+            } else if (part instanceof LineString line) {
+                drawLine(line, vals);
+            } else if (part instanceof Point pt) {
+                drawPoint(pt, vals);
+            } else if (part != geom) {
+                draw(part, vals); // koleksi bersarang
+            }
+        }
+    }
+
+    private void drawPolygon(Polygon poly, String[] vals) {
+        BasicStroke stroke = style.stroke(vals);
+        if (!visible(poly.getEnvelopeInternal(), stroke.getLineWidth()))
+            return;
+        path.reset();
+        if (append(poly.getExteriorRing().getCoordinateSequence(), true) < 3)
+            return;
+        for (int r = 0; r < poly.getNumInteriorRing(); r++)
+            append(poly.getInteriorRingN(r).getCoordinateSequence(), true);
+
+        fillPath(stroke, vals);
+    }
+
+    private void drawLine(LineString line, String[] vals) {
+        BasicStroke stroke = style.stroke(vals);
+        if (!visible(line.getEnvelopeInternal(), stroke.getLineWidth()))
+            return;
+        path.reset();
+        if (append(line.getCoordinateSequence(), false) < 2)
+            return;
+        strokePath(stroke, vals);
+    }
+
+    private void drawPoint(Point pt, String[] vals) {
+        if (!pt.isEmpty())
+            drawDot(px(pt.getX()), py(pt.getY()), vals);
+    }
+
+    /**
+     * Gambar satu fitur MVT (part dari {@link MvtOverzoom#decodeGeometry}, koordinat tile 0..extent).
+     * - Kanvas harus dibuat dengan bounds tile yang sama; part diubah ke EPSG:3857 di tempat.
+     * - Semua ring poligon masuk satu path → even-odd menangani hole tanpa merakit Polygon.
+     */
+    void drawTile(int type, List<double[]> parts, int extent, String[] vals) {
+        double resX = width / scaleX / extent;
+        double resY = height / scaleY / extent;
+        for (double[] p : parts) {
+            for (int i = 0; i + 1 < p.length; i += 2) {
+                p[i] = minX + p[i] * resX;
+                p[i + 1] = maxY - p[i + 1] * resY;
+            }
+        }
+        if (type == MvtOverzoom.POINT) {
+            for (double[] p : parts) {
+                for (int i = 0; i + 1 < p.length; i += 2)
+                    drawDot(px(p[i]), py(p[i + 1]), vals);
+            }
+            return;
+        }
+        BasicStroke stroke = style.stroke(vals);
+        if (type == MvtOverzoom.LINESTRING) {
+            for (double[] p : parts) {
+                if (!visible(envelope(p), stroke.getLineWidth()))
+                    continue;
+                path.reset();
+                if (append(new PackedCoordinateSequence.Double(p, 2, 0), false) >= 2)
+                    strokePath(stroke, vals);
+            }
+        } else if (type == MvtOverzoom.POLYGON && !parts.isEmpty()) {
+            Envelope env = new Envelope();
+            for (double[] p : parts)
+                env.expandToInclude(envelope(p));
+            if (!visible(env, stroke.getLineWidth()))
+                return;
+            path.reset();
+            int exterior = -1;
+            for (double[] p : parts) {
+                int n = append(new PackedCoordinateSequence.Double(p, 2, 0), true);
+                if (exterior < 0)
+                    exterior = n;
+            }
+            if (exterior >= 3)
+                fillPath(stroke, vals);
+        }
+    }
+
+    private void fillPath(BasicStroke stroke, String[] vals) {
+        g2d.setColor(style.fill(vals));
+        g2d.fill(path);
+        strokePath(stroke, vals);
+    }
+
+    private void strokePath(BasicStroke stroke, String[] vals) {
+        g2d.setColor(style.line(vals));
+        g2d.setStroke(stroke);
+        g2d.draw(path);
+    }
+
+    /** Lingkaran titik di koordinat pixel (x, y). */
+    private void drawDot(double x, double y, String[] vals) {
+        double r = style.circleRadius(vals);
+        BasicStroke stroke = style.stroke(vals);
+        double m = r + stroke.getLineWidth();
+        if (x < -m || y < -m || x > width + m || y > height + m)
+            return;
+        dot.setFrame(x - r, y - r, r * 2, r * 2);
+        g2d.setColor(style.circle(vals));
+        g2d.fill(dot);
+        g2d.setColor(style.line(vals));
+        g2d.setStroke(stroke);
+        g2d.draw(dot);
+    }
+
+    /** Envelope part bersinggungan dengan viewport + margin; sekaligus set batas outcode. */
+    private boolean visible(Envelope env, float strokeWidth) {
+        double margin = strokeWidth + 2;
+        lo = -margin;
+        hiX = width + margin;
+        hiY = height + margin;
+        return px(env.getMaxX()) >= lo && px(env.getMinX()) <= hiX
+                && py(env.getMinY()) >= lo && py(env.getMaxY()) <= hiY;
+    }
+
+    /**
+     * Tambahkan ring/garis ke path dalam koordinat pixel.
+     * - Vertex i di luar viewport dibuang bila i-1 dan i+1 di region luar yang sama:
+     *   region itu konveks → chord penggantinya tetap di luar viewport.
+     * - Vertex pertama & terakhir selalu dipertahankan.
+     * @return jumlah vertex yang masuk path
+     */
+    int append(CoordinateSequence seq, boolean close) {
+        int n = seq.size();
+        if (n == 0)
+            return 0;
+        double lastX = 0, lastY = 0;
+        int emitted = 0;
+        int prevCode = -1;
+        double x = px(seq.getX(0));
+        double y = py(seq.getY(0));
+        int code = outcode(x, y);
+        for (int i = 0; i < n; i++) {
+            boolean last = (i == n - 1);
+            double nx = 0, ny = 0;
+            int nextCode = -1;
+            if (!last) {
+                nx = px(seq.getX(i + 1));
+                ny = py(seq.getY(i + 1));
+                nextCode = outcode(nx, ny);
+            }
+            boolean skip = !last && emitted > 0
+                    && ((code != 0 && code == prevCode && code == nextCode)
+                            || (Math.abs(x - lastX) < DECIMATE_PX && Math.abs(y - lastY) < DECIMATE_PX));
+            if (!skip) {
+                if (emitted == 0)
+                    path.moveTo(x, y);
+                else
+                    path.lineTo(x, y);
+                lastX = x;
+                lastY = y;
+                emitted++;
+            }
+            prevCode = code;
+            x = nx;
+            y = ny;
+            code = nextCode;
+        }
+        if (close && emitted > 0)
+            path.closePath();
+        return emitted;
+    }
+
+    private static Envelope envelope(double[] xy) {
+        Envelope env = new Envelope();
+        for (int i = 0; i + 1 < xy.length; i += 2)
+            env.expandToInclude(xy[i], xy[i + 1]);
+        return env;
+    }
+
+    private int outcode(double x, double y) {
+        int c = 0;
+        if (x < lo)
+            c |= 1;
+        else if (x > hiX)
+            c |= 2;
+        if (y < lo)
+            c |= 4;
+        else if (y > hiY)
+            c |= 8;
+        return c;
+    }
+
+    private double px(double x) {
+        return (x - minX) * scaleX;
+    }
+
+    private double py(double y) {
+        return (maxY - y) * scaleY;
+    }
+
+    /** Path terakhir yang dibangun (untuk test). */
+    Path2D.Double path() {
+        return path;
+    }
+
+    BufferedImage image() {
+        return img;
+    }
+
+    /** Selesai menggambar → encode image ke format output. */
+    byte[] encode(RasterEncoder encoder, RasterFormat format) {
+        g2d.dispose();
+        return encoder.encode(img, format);
+    }
+
+    /** Lepas Graphics2D dan kembalikan image ke pool (setelah encode). */
+    @Override
+    public void close() {
+        g2d.dispose();
+        pool.release(img);
+    }
+}
@@ -0,0 +1,322 @@
+package com.spatiallens.Server.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Encoder image raster WMS/XYZ.
+ * - PNG: pixel ARGB di-scan sekali; ≤256 warna unik → PNG palette 1/2/4/8 bit
+ *   (alpha lewat tRNS). Lebih (tepi antialias) → median cut 256 warna bila
+ *   wms.png.quantize aktif (opt-in, lossy), selain itu PNG 32-bit. Level deflate: wms.png.deflate-level.
+ * - Image kosong per ukuran/format di-encode sekali lalu disimpan.
+ * - JPEG di-flatten ke latar putih; WEBP lewat writer ImageIO bila terpasang.
+ * - Stream di memory (tanpa file cache ImageIO); writer dibuat per encode dari SPI
+ *   yang di-resolve sekali → thread-safe.
+ */
+final class RasterEncoder {
+
+    private static final int MAX_PALETTE = 256;
+
+    /** Batas entri image kosong yang disimpan (ukuran WMS bebas). */
+    private static final int MAX_CACHED_EMPTY = 64;
+
+    private final int deflateLevel;
+    private final float jpegQuality;
+    private final boolean quantize;
+    private final Map<RasterFormat, ImageWriterSpi> writers = new EnumMap<>(RasterFormat.class);
+    private final Map<EmptyKey, byte[]> empties = new ConcurrentHashMap<>();
+
+    private record EmptyKey(int width, int height, RasterFormat format) {
+    }
+
+    /**
+     * @param deflateLevel 0 (tanpa kompresi) .. 9 (terkecil, paling lambat)
+     * @param jpegQuality  0..1
+     * @param quantize     image >256 warna dikuantisasi ke palette (lossy) alih-alih PNG 32-bit
+     */
+    RasterEncoder(int deflateLevel, float jpegQuality, boolean quantize) {
+        this.deflateLevel = Math.max(0, Math.min(9, deflateLevel));
+        this.jpegQuality = Math.max(0f, Math.min(1f, jpegQuality));
+        this.quantize = quantize;
+        for (RasterFormat f : RasterFormat.values()) {
+            Iterator<ImageWriter> it = ImageIO.getImageWritersByMIMEType(f.mediaType());
+            if (it.hasNext())
+                writers.put(f, it.next().getOriginatingProvider());
+        }
+    }
+
+    byte[] encode(BufferedImage img, RasterFormat format) {
+        return switch (format) {
+            case PNG -> {
+                BufferedImage indexed = toIndexed(img, quantize);
+                yield write(RasterFormat.PNG, (indexed != null) ? indexed : img);
+            }
+            case JPEG -> write(RasterFormat.JPEG, flatten(img));
+            case WEBP -> write(RasterFormat.WEBP, img);
+        };
+    }
+
+    /** Image transparan (JPEG: putih) width×height; hasil di-cache per ukuran. */
+    byte[] empty(int width, int height, RasterFormat format) {
+        EmptyKey key = new EmptyKey(width, height, format);
+        byte[] cached = empties.get(key);
+        if (cached != null)
+            return cached;
+        byte[] out = encode(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), format);
+        if (empties.size() < MAX_CACHED_EMPTY)
+            empties.putIfAbsent(key, out);
+        return out;
+    }
+
+    /**
+     * Salinan palette dari image ARGB.
+     * - ≤256 warna unik → palette persis (lossless).
+     * - Lebih: quantize → {@link #medianCut}, selain itu null (tulis 32-bit).
+     * - Pixel transparan penuh dianggap satu warna (RGB-nya tidak terlihat).
+     * - Bit depth terkecil yang muat: 1, 2, 4 atau 8.
+     */
+    static BufferedImage toIndexed(BufferedImage img, boolean quantize) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int[] px = img.getRGB(0, 0, w, h, null, 0, w);
+        for (int i = 0; i < px.length; i++) {
+            if ((px[i] >>> 24) == 0)
+                px[i] = 0;
+        }
+
+        // hash terbuka warna → index palette (1024 slot untuk ≤256 warna)
+        int[] slotColor = new int[1024];
+        int[] slotIndex = new int[1024];
+        Arrays.fill(slotIndex, -1);
+        int[] palette = new int[MAX_PALETTE];
+        int n = 0;
+        byte[] indices = new byte[w * h];
+        int lastColor = 0;
+        int lastIndex = -1;
+        for (int i = 0; i < px.length; i++) {
+            int c = px[i];
+            // run warna sama (isi poligon, latar kosong) → tanpa lookup
+            if (c != lastColor || lastIndex < 0) {
+                int s = (c * 0x9E3779B9) >>> 22;
+                while (slotIndex[s] >= 0 && slotColor[s] != c)
+                    s = (s + 1) & 1023;
+                if (slotIndex[s] < 0) {
+                    if (n == MAX_PALETTE)
+                        return quantize ? medianCut(px, w, h) : null;
+                    slotColor[s] = c;
+                    slotIndex[s] = n;
+                    palette[n++] = c;
+                }
+                lastColor = c;
+                lastIndex = slotIndex[s];
+            }
+            indices[i] = (byte) lastIndex;
+        }
+
+        return paletted(palette, n, indices, w, h);
+    }
+
+    /**
+     * Kuantisasi median cut ke ≤256 warna.
+     * - Warna dikelompokkan dulu ke bin ARGB 4-4-4-4 (count + jumlah channel asli).
+     * - Box dengan rentang channel terlebar dibelah di median berbobot → warna yang
+     *   berjauhan (kategori style) terpisah lebih dulu daripada gradasi tepi antialias.
+     * - Warna palette = rata-rata berbobot pixel asli di box → isi poligon tetap persis.
+     */
+    static BufferedImage medianCut(int[] px, int w, int h) {
+        int[] count = new int[65536];
+        long[] sumA = new long[65536], sumR = new long[65536], sumG = new long[65536], sumB = new long[65536];
+        for (int c : px) {
+            int bin = bin(c);
+            count[bin]++;
+            sumA[bin] += c >>> 24;
+            sumR[bin] += (c >>> 16) & 0xFF;
+            sumG[bin] += (c >>> 8) & 0xFF;
+            sumB[bin] += c & 0xFF;
+        }
+        int used = 0;
+        int[] bins = new int[65536];
+        for (int i = 0; i < 65536; i++) {
+            if (count[i] > 0)
+                bins[used++] = i;
+        }
+
+        // box = rentang [starts[k], ends[k]) di array bins; rentang channel terlebar dihitung sekali per box
+        int[] starts = new int[MAX_PALETTE];
+        int[] ends = new int[MAX_PALETTE];
+        int[] widest = new int[MAX_PALETTE];
+        int[] channel = new int[MAX_PALETTE];
+        int boxes = 1;
+        ends[0] = used;
+        measure(bins, 0, used, 0, widest, channel);
+        while (boxes < MAX_PALETTE) {
+            int best = -1;
+            for (int k = 0; k < boxes; k++) {
+                if (widest[k] > 0 && (best < 0 || widest[k] > widest[best]))
+                    best = k;
+            }
+            if (best < 0)
+                break;
+
+            int from = starts[best], to = ends[best];
+            int shift = 12 - channel[best] * 4;
+            int[] keyed = new int[to - from];
+            for (int i = from; i < to; i++)
+                keyed[i - from] = (((bins[i] >>> shift) & 0xF) << 16) | bins[i];
+            Arrays.sort(keyed);
+            long total = 0;
+            for (int i = from; i < to; i++) {
+                bins[i] = keyed[i - from] & 0xFFFF;
+                total += count[bins[i]];
+            }
+            // median berbobot, minimal satu bin di tiap sisi
+            long acc = 0;
+            int split = from + 1;
+            for (int i = from; i < to - 1; i++) {
+                acc += count[bins[i]];
+                split = i + 1;
+                if (acc * 2 >= total)
+                    break;
+            }
+            starts[boxes] = split;
+            ends[boxes] = to;
+            ends[best] = split;
+            measure(bins, from, split, best, widest, channel);
+            measure(bins, split, to, boxes, widest, channel);
+            boxes++;
+        }
+
+        int[] palette = new int[boxes];
+        byte[] binIndex = new byte[65536];
+        for (int k = 0; k < boxes; k++) {
+            long n = 0, a = 0, r = 0, g = 0, b = 0;
+            for (int i = starts[k]; i < ends[k]; i++) {
+                int bin = bins[i];
+                n += count[bin];
+                a += sumA[bin];
+                r += sumR[bin];
+                g += sumG[bin];
+                b += sumB[bin];
+                binIndex[bin] = (byte) k;
+            }
+            palette[k] = (int) (((a + n / 2) / n) << 24 | ((r + n / 2) / n) << 16 | ((g + n / 2) / n) << 8
+                    | ((b + n / 2) / n));
+        }
+        byte[] indices = new byte[px.length];
+        for (int i = 0; i < px.length; i++)
+            indices[i] = binIndex[bin(px[i])];
+        return paletted(palette, boxes, indices, w, h);
+    }
+
+    /** Channel (A,R,G,B) dengan rentang bin terlebar untuk box k. */
+    private static void measure(int[] bins, int from, int to, int k, int[] widest, int[] channel) {
+        widest[k] = 0;
+        channel[k] = 0;
+        for (int ch = 0; ch < 4; ch++) {
+            int lo = 15, hi = 0;
+            for (int i = from; i < to; i++) {
+                int v = (bins[i] >>> (12 - ch * 4)) & 0xF;
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+            }
+            if (hi - lo > widest[k]) {
+                widest[k] = hi - lo;
+                channel[k] = ch;
+            }
+        }
+    }
+
+    private static int bin(int c) {
+        return ((c >>> 16) & 0xF000) | ((c >>> 12) & 0x0F00) | ((c >>> 8) & 0x00F0) | ((c >>> 4) & 0x000F);
+    }
+
+    /** Image palette n warna dari index per pixel (baris demi baris). */
+    private static BufferedImage paletted(int[] palette, int n, byte[] indices, int w, int h) {
+        int bits = (n <= 2) ? 1 : (n <= 4) ? 2 : (n <= 16) ? 4 : 8;
+        byte[] r = new byte[n], g = new byte[n], b = new byte[n], a = new byte[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = (byte) (palette[i] >>> 24);
+            r[i] = (byte) (palette[i] >>> 16);
+            g[i] = (byte) (palette[i] >>> 8);
+            b[i] = (byte) palette[i];
+        }
+        IndexColorModel icm = new IndexColorModel(bits, n, r, g, b, a);
+
+        if (bits == 8) {
+            BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, icm);
+            byte[] data = ((DataBufferByte) out.getRaster().getDataBuffer()).getData();
+            System.arraycopy(indices, 0, data, 0, indices.length);
+            return out;
+        }
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY, icm);
+        WritableRaster raster = out.getRaster();
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++)
+                row[x] = indices[y * w + x] & 0xFF;
+            raster.setSamples(0, y, w, 1, 0, row);
+        }
+        return out;
+    }
+
+    private static BufferedImage flatten(BufferedImage img) {
+        BufferedImage rgb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, img.getWidth(), img.getHeight());
+            g.drawImage(img, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private byte[] write(RasterFormat format, BufferedImage img) {
+        ImageWriterSpi spi = writers.get(format);
+        if (spi == null)
+            throw new IllegalStateException("Tidak ada ImageIO writer untuk " + format.mediaType());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(8192);
+        ImageWriter writer = null;
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(baos)) {
+            writer = spi.createWriterInstance();
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format != RasterFormat.WEBP && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null)
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                // PNG writer JDK: level deflate = 9 - round(9 × quality)
+                param.setCompressionQuality(
+                        (format == RasterFormat.PNG) ? (9 - deflateLevel) / 9f : jpegQuality);
+            }
+            writer.write(null, new IIOImage(img, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (writer != null)
+                writer.dispose();
+        }
+        return baos.toByteArray();
+    }
+}
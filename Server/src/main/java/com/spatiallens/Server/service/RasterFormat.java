@@ -0,0 +1,102 @@
+package com.spatiallens.Server.service;
+
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Format output raster WMS/XYZ.
+ * - PNG: default, lossless + alpha (palette bila warnanya muat).
+ * - WEBP: hanya bila ada ImageIO writer image/webp di classpath (JDK tidak punya).
+ * - JPEG: tanpa alpha (latar putih) → dipilih hanya bila diminta eksplisit.
+ */
+public enum RasterFormat {
+
+    PNG("image/png", "png"),
+    JPEG("image/jpeg", "jpg"),
+    WEBP("image/webp", "webp");
+
+    private final String mediaType;
+    private final String extension;
+    private volatile Boolean available;
+
+    RasterFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    /** Ekstensi file; juga prefix format di kunci cache raster. */
+    public String extension() {
+        return extension;
+    }
+
+    /** Ada ImageIO writer untuk format ini (dicek sekali). */
+    public boolean available() {
+        Boolean a = available;
+        if (a == null) {
+            a = (this == PNG) || ImageIO.getImageWritersByMIMEType(mediaType).hasNext();
+            available = a;
+        }
+        return a;
+    }
+
+    /**
+     * Pilih format output.
+     * - Parameter format (WMS FORMAT=image/jpeg, "png", ...) menang bila dikenal & tersedia.
+     * - Tanpa parameter: Accept memuat image/webp → WEBP (bila tersedia); JPEG hanya bila
+     *   Accept menerima image/jpeg tapi tidak image/png, image/* atau wildcard penuh.
+     * - Selain itu PNG.
+     */
+    public static RasterFormat negotiate(String format, String accept) {
+        if (format != null && !format.isBlank()) {
+            String f = format.trim().toLowerCase(Locale.ROOT);
+            for (RasterFormat r : values()) {
+                if ((f.equals(r.mediaType) || f.equals(r.extension) || f.equals(r.name().toLowerCase(Locale.ROOT))
+                        || (r == JPEG && f.equals("image/jpg"))) && r.available())
+                    return r;
+            }
+            return PNG;
+        }
+        if (accept == null || accept.isBlank())
+            return PNG;
+
+        boolean webp = false, jpeg = false, png = false;
+        for (String range : accept.split(",")) {
+            String[] p = range.split(";");
+            String type = p[0].trim().toLowerCase(Locale.ROOT);
+            if (rejected(p))
+                continue;
+            switch (type) {
+                case "image/webp" -> webp = true;
+                case "image/jpeg" -> jpeg = true;
+                case "image/png", "image/*", "*/*" -> png = true;
+                default -> {
+                }
+            }
+        }
+        if (webp && WEBP.available())
+            return WEBP;
+        if (jpeg && !png)
+            return JPEG;
+        return PNG;
+    }
+
+    /** Media range dengan q=0 berarti ditolak. */
+    private static boolean rejected(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String kv = params[i].trim();
+            if (kv.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(kv.substring(2).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,63 @@
+package com.spatiallens.Server.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Deduplikasi request identik yang sedang berjalan (single-flight).
+ * - Pemanggil pertama untuk sebuah key menghitung di thread-nya sendiri.
+ * - Pemanggil lain dengan key sama menunggu hasil yang sama (maks. timeout).
+ * - Entry selalu dilepas di finally → gagal/cancel tidak pernah "nyangkut".
+ * - Error leader diteruskan ke waiter (tidak dihitung ulang beramai-ramai).
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+
+    SingleFlight(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, mine);
+
+        if (leader == null) {
+            try {
+                V value = loader.get();
+                mine.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+
+        try {
+            return leader.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for in-flight " + key);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out waiting for in-flight " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re)
+                throw re;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /** Jumlah key yang sedang dihitung (untuk monitoring). */
+    int size() {
+        return inFlight.size();
+    }
+}
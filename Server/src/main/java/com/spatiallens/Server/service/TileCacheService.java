@@ -0,0 +1,389 @@
+package com.spatiallens.Server.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cache tile dua tingkat di depan {@link MvtTileService} dan raster XYZ {@link WmsRasterService}.
+ * - Memory: LRU berbobot ukuran byte (budget tiles.cache.memory-max-bytes).
+ * - Disk: file per tile di tiles.cache.dir dengan kuota, bertahan saat restart.
+ * - Kunci: scope + slug + cacheVersion + format + z/x/y → versi baru otomatis "miss".
+ * - Body disimpan apa adanya: MVT ter-gzip (file .pbf.gz) atau PNG (subdir format).
+ * - Scope RESTRICTED (Draft untuk ADMIN/EDITOR) hanya di memory, tidak pernah
+ *   ditulis ke disk maupun dicampur dengan scope PUBLIC.
+ */
+@Service
+public class TileCacheService {
+
+    public enum Scope {
+        PUBLIC, RESTRICTED
+    }
+
+    /** Format tile vektor (default); raster memakai format lain, mis. "png-<style>". */
+    public static final String MVT = "mvt";
+
+    public record TileKey(Scope scope, String slug, long version, String format, int z, int x, int y) {
+
+        public TileKey(Scope scope, String slug, long version, int z, int x, int y) {
+            this(scope, slug, version, MVT, z, x, y);
+        }
+    }
+
+    private static final double HALF_WORLD = 20037508.342789244;
+
+    /** Buffer ST_AsMVTGeom (64 dari extent 4096) sebagai fraksi sisi tile. */
+    private static final double BUFFER_FRACTION = 64.0 / 4096.0;
+
+    /** Overhead kira-kira per entry (key + node map) agar tile kosong tetap berbobot. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final boolean enabled;
+    private final long memoryMaxBytes;
+    private final long diskMaxBytes;
+    private final Path diskDir;
+
+    private final LinkedHashMap<TileKey, byte[]> memory = new LinkedHashMap<>(1024, 0.75f, true);
+    private long memoryBytes = 0L;
+
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicBoolean trimming = new AtomicBoolean(false);
+
+    public TileCacheService(
+            @Value("${tiles.cache.enabled:true}") boolean enabled,
+            @Value("${tiles.cache.memory-max-bytes:67108864}") long memoryMaxBytes,
+            @Value("${tiles.cache.disk-max-bytes:1073741824}") long diskMaxBytes,
+            @Value("${tiles.cache.dir:${upload.dir:uploads}/tile-cache}") String diskDir) {
+        this.enabled = enabled;
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.diskMaxBytes = diskMaxBytes;
+        this.diskDir = Paths.get(diskDir).toAbsolutePath();
+        if (enabled && diskMaxBytes > 0) {
+            diskBytes.set(scanDiskUsage());
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Public API
+    // ------------------------------------------------------------
+
+    /** Ambil tile dari memory, lalu disk (hanya scope PUBLIC). null = miss. */
+    public byte[] get(TileKey key) {
+        if (!enabled)
+            return null;
+
+        synchronized (memory) {
+            byte[] hit = memory.get(key);
+            if (hit != null)
+                return hit;
+        }
+
+        if (key.scope() != Scope.PUBLIC || diskMaxBytes <= 0)
+            return null;
+
+        Path p = diskPath(key);
+        try {
+            byte[] body = Files.readAllBytes(p);
+            putMemory(key, body);
+            return body;
+        } catch (IOException notCached) {
+            return null;
+        }
+    }
+
+    /** Simpan tile (body kosong tetap disimpan sebagai penanda tile kosong). */
+    public void put(TileKey key, byte[] body) {
+        if (!enabled || body == null)
+            return;
+
+        putMemory(key, body);
+
+        if (key.scope() == Scope.PUBLIC && diskMaxBytes > 0) {
+            writeDisk(key, body);
+        }
+    }
+
+    /** Buang semua tile untuk slug (semua scope/versi), memory + disk. */
+    public void invalidateLayer(String slug) {
+        if (slug == null)
+            return;
+
+        synchronized (memory) {
+            Iterator<Map.Entry<TileKey, byte[]>> it = memory.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<TileKey, byte[]> e = it.next();
+                if (slug.equals(e.getKey().slug())) {
+                    memoryBytes -= weight(e.getValue());
+                    it.remove();
+                }
+            }
+        }
+
+        Path layerDir = diskDir.resolve(safeSegment(slug));
+        diskBytes.addAndGet(-deleteRecursive(layerDir));
+    }
+
+    /**
+     * Buang hanya tile slug yang bersinggungan dengan area (EPSG:3857), semua zoom,
+     * memory + disk. Tile diperlakukan dengan buffer agar fitur yang masuk tile
+     * tetangga ikut ter-invalidasi:
+     * - MVT: buffer ST_AsMVTGeom (64/4096).
+     * - Raster (format lain): rasterPad dari pemanggil (margin render + stroke/radius style).
+     * @param boxes     [minX, minY, maxX, maxY] per area terdampak
+     * @param rasterPad padding tile raster sebagai fraksi sisi tile
+     * @return jumlah tile yang dibuang
+     */
+    public int invalidateArea(String slug, List<double[]> boxes, double rasterPad) {
+        if (slug == null || boxes == null || boxes.isEmpty())
+            return 0;
+
+        int removed = 0;
+        synchronized (memory) {
+            Iterator<Map.Entry<TileKey, byte[]>> it = memory.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<TileKey, byte[]> e = it.next();
+                TileKey k = e.getKey();
+                double pad = MVT.equals(k.format()) ? BUFFER_FRACTION : rasterPad;
+                if (slug.equals(k.slug()) && touches(boxes, k.z(), k.x(), k.x(), k.y(), k.y(), pad)) {
+                    memoryBytes -= weight(e.getValue());
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+
+        // disk: slug/<versi>/[<format>/]<z>/<x>/<y>.<ext> → cukup daftar direktori yang ada
+        Path layerDir = diskDir.resolve(safeSegment(slug));
+        for (Path versionDir : list(layerDir)) {
+            for (Path child : list(versionDir)) {
+                if (parseIntOr(child.getFileName().toString(), -1) >= 0) {
+                    removed += invalidateZoomDir(child, boxes, BUFFER_FRACTION);
+                } else {
+                    for (Path zDir : list(child))
+                        removed += invalidateZoomDir(zDir, boxes, rasterPad);
+                }
+            }
+        }
+        return removed;
+    }
+
+    private int invalidateZoomDir(Path zDir, List<double[]> boxes, double pad) {
+        int z = parseIntOr(zDir.getFileName().toString(), -1);
+        if (z < 0)
+            return 0;
+        int removed = 0;
+        for (Path xDir : list(zDir)) {
+            int x = parseIntOr(xDir.getFileName().toString(), -1);
+            if (x < 0 || !touches(boxes, z, x, x, 0, (1 << Math.min(z, 30)) - 1, pad))
+                continue;
+            for (Path f : list(xDir)) {
+                String name = f.getFileName().toString();
+                int y = parseIntOr(name.substring(0, Math.max(0, name.indexOf('.'))), -1);
+                if (y < 0 || !touches(boxes, z, x, x, y, y, pad))
+                    continue;
+                try {
+                    long size = Files.size(f);
+                    if (Files.deleteIfExists(f)) {
+                        diskBytes.addAndGet(-size);
+                        removed++;
+                    }
+                } catch (IOException ignore) {
+                }
+            }
+        }
+        return removed;
+    }
+
+    /** Tile z/[x0..x1]/[y0..y1] (+ buffer padFraction sisi tile) bersinggungan dengan salah satu area. */
+    private static boolean touches(List<double[]> boxes, int z, int x0, int x1, int y0, int y1,
+            double padFraction) {
+        double size = 2 * HALF_WORLD / Math.pow(2, z);
+        double pad = size * padFraction;
+        double minX = -HALF_WORLD + x0 * size - pad;
+        double maxX = -HALF_WORLD + (x1 + 1) * size + pad;
+        double maxY = HALF_WORLD - y0 * size + pad;
+        double minY = HALF_WORLD - (y1 + 1) * size - pad;
+        for (double[] b : boxes) {
+            if (b[0] <= maxX && b[2] >= minX && b[1] <= maxY && b[3] >= minY)
+                return true;
+        }
+        return false;
+    }
+
+    private static List<Path> list(Path dir) {
+        if (!Files.isDirectory(dir))
+            return List.of();
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.toList();
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    private static int parseIntOr(String s, int fallback) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Memory tier
+    // ------------------------------------------------------------
+
+    private void putMemory(TileKey key, byte[] body) {
+        long w = weight(body);
+        if (w > memoryMaxBytes)
+            return;
+
+        synchronized (memory) {
+            byte[] prev = memory.put(key, body);
+            if (prev != null)
+                memoryBytes -= weight(prev);
+            memoryBytes += w;
+
+            // evict LRU sampai kembali di bawah budget
+            Iterator<Map.Entry<TileKey, byte[]>> it = memory.entrySet().iterator();
+            while (memoryBytes > memoryMaxBytes && it.hasNext()) {
+                Map.Entry<TileKey, byte[]> eldest = it.next();
+                memoryBytes -= weight(eldest.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private static long weight(byte[] body) {
+        return (long) body.length + ENTRY_OVERHEAD;
+    }
+
+    // ------------------------------------------------------------
+    // Disk tier
+    // ------------------------------------------------------------
+
+    /** MVT: slug/versi/z/x/y.pbf.gz; format lain: slug/versi/format/z/x/y.<ext> (ext = prefix format). */
+    private Path diskPath(TileKey key) {
+        Path dir = diskDir.resolve(safeSegment(key.slug()))
+                .resolve(String.valueOf(key.version()));
+        String ext = ".pbf.gz";
+        if (!MVT.equals(key.format())) {
+            dir = dir.resolve(safeSegment(key.format()));
+            int dash = key.format().indexOf('-');
+            ext = "." + safeSegment(dash > 0 ? key.format().substring(0, dash) : key.format());
+        }
+        return dir.resolve(String.valueOf(key.z()))
+                .resolve(String.valueOf(key.x()))
+                .resolve(key.y() + ext);
+    }
+
+    private void writeDisk(TileKey key, byte[] body) {
+        Path target = diskPath(key);
+        try {
+            Files.createDirectories(target.getParent());
+            long before = Files.exists(target) ? Files.size(target) : 0L;
+
+            // tulis ke file sementara lalu rename → pembaca tidak pernah lihat file setengah jadi
+            Path tmp = Files.createTempFile(target.getParent(), ".tile", ".tmp");
+            Files.write(tmp, body);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (diskBytes.addAndGet(body.length - before) > diskMaxBytes) {
+                trimDisk();
+            }
+        } catch (IOException e) {
+            // cache disk bersifat best-effort
+            System.err.println("⚠️ Tile cache write failed for " + target + ": " + e.getMessage());
+        }
+    }
+
+    /** Hapus file tertua sampai pemakaian disk turun ke ~90% kuota. */
+    private void trimDisk() {
+        if (!trimming.compareAndSet(false, true))
+            return;
+        try {
+            long target = (long) (diskMaxBytes * 0.9);
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> s = Files.walk(diskDir)) {
+                s.filter(Files::isRegularFile).forEach(files::add);
+            }
+            files.sort(Comparator.comparingLong(TileCacheService::lastModified));
+
+            for (Path f : files) {
+                if (diskBytes.get() <= target)
+                    break;
+                try {
+                    long size = Files.size(f);
+                    if (Files.deleteIfExists(f))
+                        diskBytes.addAndGet(-size);
+                } catch (IOException ignore) {
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Tile cache trim failed: " + e.getMessage());
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    private long scanDiskUsage() {
+        if (Files.notExists(diskDir))
+            return 0L;
+        try (Stream<Path> s = Files.walk(diskDir)) {
+            return s.filter(Files::isRegularFile).mapToLong(p -> {
+                try {
+                    return Files.size(p);
+                } catch (IOException e) {
+                    return 0L;
+                }
+            }).sum();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /** Hapus direktori secara rekursif, kembalikan total byte file yang terhapus. */
+    private static long deleteRecursive(Path p) {
+        if (p == null || Files.notExists(p))
+            return 0L;
+        long[] freed = { 0L };
+        try (Stream<Path> s = Files.walk(p)) {
+            s.sorted(Comparator.reverseOrder()).forEach(q -> {
+                try {
+                    long size = Files.isRegularFile(q) ? Files.size(q) : 0L;
+                    if (Files.deleteIfExists(q))
+                        freed[0] += size;
+                } catch (IOException ignore) {
+                }
+            });
+        } catch (IOException ignore) {
+        }
+        return freed[0];
+    }
+
+    private static String safeSegment(String s) {
+        return s.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
@@ -0,0 +1,49 @@
+package com.spatiallens.Server.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Kompresi gzip untuk body tile.
+ * - Tile dikompres SEKALI saat dirender lalu disimpan ter-gzip di cache;
+ *   level maksimum karena biayanya dibayar sekali, bukan per hit.
+ * - Body kosong (tile kosong) tetap kosong, tidak dibungkus header gzip.
+ * - Beberapa body gzip yang disambung (multi-member) tetap gzip valid; {@link #gunzip}
+ *   membaca semua member (dipakai tile komposit).
+ */
+public final class TileCompression {
+
+    private TileCompression() {
+    }
+
+    public static byte[] gzip(byte[] raw) {
+        if (raw == null || raw.length == 0)
+            return new byte[0];
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 3));
+        try (GZIPOutputStream gz = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] gunzip(byte[] gz) {
+        if (gz == null || gz.length == 0)
+            return new byte[0];
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gz))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.spatiallens.Server.service;
+
+import java.util.Arrays;
+
+/**
+ * Coverage index per layer: tile mana yang berisi data, beserta jumlah fitur.
+ * - Dibangun dari tabel layer_tile_coverage (zoom dasar, dihitung saat import
+ *   dari bbox tiap fitur → konservatif: tidak pernah melewatkan tile berisi).
+ * - Piramida zoom 0..maxZoom disimpan sebagai array terurut (key z + kode
+ *   Morton x/y, plus count) → immutable, hemat memory, lookup binary search.
+ * - Zoom > maxZoom memakai ancestor di maxZoom.
+ * - featureCount = jumlah (fitur × tile) yang bersinggungan → batas atas,
+ *   cukup untuk keputusan densitas (cluster/overzoom).
+ */
+public final class TileCoverage {
+
+    private static final double HALF_WORLD = 20037508.342789244;
+
+    private final int maxZoom;
+    private final long[] keys;
+    private final int[] counts;
+
+    private TileCoverage(int maxZoom, long[] keys, int[] counts) {
+        this.maxZoom = maxZoom;
+        this.keys = keys;
+        this.counts = counts;
+    }
+
+    /** Bangun piramida dari tile zoom dasar (xs/ys/counts sejajar). */
+    public static TileCoverage fromBaseTiles(int baseZoom, int[] xs, int[] ys, int[] baseCounts) {
+        // urutkan per kode Morton: parent = kode >> 2 → level atas tetap terurut,
+        // cukup merge berurutan (tanpa map)
+        Integer[] order = new Integer[xs.length];
+        long[] codes = new long[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            order[i] = i;
+            codes[i] = morton(xs[i], ys[i]);
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(codes[a], codes[b]));
+
+        long[] level = new long[xs.length];
+        int[] levelCounts = new int[xs.length];
+        for (int i = 0; i < order.length; i++) {
+            level[i] = codes[order[i]];
+            levelCounts[i] = baseCounts[order[i]];
+        }
+        int len = merge(level, levelCounts, xs.length);
+
+        long[][] levels = new long[baseZoom + 1][];
+        int[][] levelCountsByZ = new int[baseZoom + 1][];
+        int total = 0;
+        for (int z = baseZoom; z >= 0; z--) {
+            levels[z] = Arrays.copyOf(level, len);
+            levelCountsByZ[z] = Arrays.copyOf(levelCounts, len);
+            total += len;
+            for (int i = 0; i < len; i++) {
+                level[i] >>= 2;
+            }
+            len = merge(level, levelCounts, len);
+        }
+
+        // gabung z naik → key (z di bit atas) terurut global
+        long[] keys = new long[total];
+        int[] counts = new int[total];
+        int pos = 0;
+        for (int z = 0; z <= baseZoom; z++) {
+            for (int i = 0; i < levels[z].length; i++) {
+                keys[pos] = ((long) z << 50) | levels[z][i];
+                counts[pos++] = levelCountsByZ[z][i];
+            }
+        }
+        return new TileCoverage(baseZoom, keys, counts);
+    }
+
+    /**
+     * Coverage baru dengan tambahan tile di zoom dasar (count +1 per tile).
+     * Dipakai edit fitur: pengurangan tidak dilacak di memory (tetap konservatif).
+     */
+    public TileCoverage withBaseTiles(int[] xs, int[] ys) {
+        long from = (long) maxZoom << 50;
+        int start = Arrays.binarySearch(keys, from);
+        if (start < 0)
+            start = -start - 1;
+        int base = keys.length - start;
+
+        int[] allX = new int[base + xs.length];
+        int[] allY = new int[base + xs.length];
+        int[] allC = new int[base + xs.length];
+        for (int i = 0; i < base; i++) {
+            long code = keys[start + i] & ((1L << 50) - 1);
+            allX[i] = compact(code >>> 1);
+            allY[i] = compact(code);
+            allC[i] = counts[start + i];
+        }
+        for (int i = 0; i < xs.length; i++) {
+            allX[base + i] = xs[i];
+            allY[base + i] = ys[i];
+            allC[base + i] = 1;
+        }
+        return fromBaseTiles(maxZoom, allX, allY, allC);
+    }
+
+    public int maxZoom() {
+        return maxZoom;
+    }
+
+    /** Jumlah entry piramida (untuk monitoring ukuran). */
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean occupied(int z, int x, int y) {
+        return featureCount(z, x, y) > 0;
+    }
+
+    /** Jumlah fitur (batas atas) pada tile; 0 = pasti kosong. */
+    public int featureCount(int z, int x, int y) {
+        if (z < 0 || x < 0 || y < 0)
+            return 0;
+        if (z > maxZoom) {
+            int d = z - maxZoom;
+            x >>= d;
+            y >>= d;
+            z = maxZoom;
+        }
+        int idx = Arrays.binarySearch(keys, key(z, x, y));
+        return idx >= 0 ? counts[idx] : 0;
+    }
+
+    /**
+     * Apakah bbox EPSG:3857 menyentuh tile berisi data (untuk WMS).
+     * Zoom dipilih agar bbox hanya mencakup beberapa tile per sisi.
+     */
+    public boolean anyOccupied3857(double minX, double minY, double maxX, double maxY) {
+        double span = Math.max(maxX - minX, maxY - minY);
+        if (!(span > 0))
+            return false;
+        int z = (int) Math.floor(Math.log(2 * HALF_WORLD / span) / Math.log(2));
+        return anyOccupied3857(z, minX, minY, maxX, maxY);
+    }
+
+    /** Sama seperti di atas, tetapi dicek pada zoom z (dibatasi ke 0..maxZoom). */
+    public boolean anyOccupied3857(int z, double minX, double minY, double maxX, double maxY) {
+        z = Math.max(0, Math.min(maxZoom, z));
+        int n = 1 << z;
+        double size = 2 * HALF_WORLD / n;
+
+        int x0 = clamp((int) Math.floor((minX + HALF_WORLD) / size), n);
+        int x1 = clamp((int) Math.floor((maxX + HALF_WORLD) / size), n);
+        int y0 = clamp((int) Math.floor((HALF_WORLD - maxY) / size), n);
+        int y1 = clamp((int) Math.floor((HALF_WORLD - minY) / size), n);
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                if (occupied(z, x, y))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tile z/x/y berisi data, termasuk buffer MVT (fraksi sisi tile, mis. 64/4096):
+     * fitur di tile tetangga yang masuk buffer tetap ikut dirender.
+     */
+    public boolean occupiedWithBuffer(int z, int x, int y, double bufferFraction) {
+        if (occupied(z, x, y))
+            return true;
+        double size = 2 * HALF_WORLD / (1L << z);
+        double pad = size * bufferFraction;
+        double minX = -HALF_WORLD + x * size;
+        double maxY = HALF_WORLD - y * size;
+        // 2 level lebih dalam → tetangga dicek per seperempat tile, bukan tile utuh
+        return anyOccupied3857(z + 2, minX - pad, maxY - size - pad, minX + size + pad, maxY + pad);
+    }
+
+    private static int clamp(int v, int n) {
+        return Math.max(0, Math.min(n - 1, v));
+    }
+
+    /** Gabung kode berurutan yang sama (jumlahkan count); return panjang baru. */
+    private static int merge(long[] codes, int[] counts, int len) {
+        int out = 0;
+        for (int i = 0; i < len; i++) {
+            if (out > 0 && codes[out - 1] == codes[i]) {
+                counts[out - 1] += counts[i];
+            } else {
+                codes[out] = codes[i];
+                counts[out++] = counts[i];
+            }
+        }
+        return out;
+    }
+
+    private static long key(int z, int x, int y) {
+        return ((long) z << 50) | morton(x, y);
+    }
+
+    /** Interleave bit x/y (25 bit masing-masing). */
+    private static long morton(int x, int y) {
+        return spread(x) << 1 | spread(y);
+    }
+
+    /** Kebalikan spread: ambil bit genap. */
+    private static int compact(long b) {
+        b &= 0x5555555555555555L;
+        b = (b | (b >>> 1)) & 0x3333333333333333L;
+        b = (b | (b >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        b = (b | (b >>> 4)) & 0x00FF00FF00FF00FFL;
+        b = (b | (b >>> 8)) & 0x0000FFFF0000FFFFL;
+        b = (b | (b >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int) b;
+    }
+
+    private static long spread(int v) {
+        long b = v & 0x1FFFFFFL;
+        b = (b | (b << 16)) & 0x0000FFFF0000FFFFL;
+        b = (b | (b << 8)) & 0x00FF00FF00FF00FFL;
+        b = (b | (b << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        b = (b | (b << 2)) & 0x3333333333333333L;
+        b = (b | (b << 1)) & 0x5555555555555555L;
+        return b;
+    }
+}
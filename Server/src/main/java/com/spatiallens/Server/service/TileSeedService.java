@@ -0,0 +1,512 @@
+package com.spatiallens.Server.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.spatiallens.Server.service.LayerRegistry.LayerSnapshot;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Seeding piramida tile untuk layer Published.
+ * - Dijalankan manual (admin) atau otomatis saat layer dipublish.
+ * - Menelusuri extent layer per zoom; tile anak hanya dirender bila tile
+ *   induknya berisi (tile kosong → seluruh sub-piramidanya dilewati).
+ * - Coverage index (bila ada) memangkas tile yang pasti kosong sebelum direncanakan.
+ * - Jumlah tile per level dibatasi tiles.seed.max-level-tiles: level awal yang
+ *   melebihi batas ditolak (400), level anak yang melebihi batas menghentikan job
+ *   dengan state PARTIAL (piramida tidak lengkap).
+ * - Render lewat {@link MvtTileService} (SQL yang sama) → hasil masuk tile cache.
+ * - Worker pool dibatasi (tiles.seed.threads) agar tidak menghabiskan pool DB.
+ * - Resumable: job aktif dicatat di tiles.seed.state-dir (satu file per job, berisi
+ *   level terakhir yang selesai) dan dilanjutkan saat startup dari level berikutnya.
+ * - Job yang dibatalkan/digantikan tidak pernah mengubah state akhir atau
+ *   checkpoint job penggantinya.
+ */
+@Service
+public class TileSeedService {
+
+    /** PARTIAL = selesai lebih awal karena batas tile per level (piramida tidak lengkap). */
+    public enum State {
+        QUEUED, RUNNING, DONE, PARTIAL, CANCELLED, FAILED
+    }
+
+    /** Snapshot progres job (untuk endpoint status). */
+    public record SeedStatus(String slug, long version, State state, int minZoom, int maxZoom,
+            int currentZoom, long tilesDone, long tilesEmpty, long tilesPlanned,
+            String startedAt, String finishedAt, String message) {
+    }
+
+    private static final double MAX_LAT = 85.0511287798066;
+
+    /** Buffer MVT (64/4096) → tile yang hanya berisi fitur tetangga tetap di-seed. */
+    private static final double TILE_BUFFER_FRACTION = 64.0 / 4096.0;
+
+    private final MvtTileService tiles;
+    private final LayerRegistry registry;
+    private final JdbcTemplate jdbc;
+
+    private final int defaultMinZoom;
+    private final int defaultMaxZoom;
+    private final int maxLevelTiles;
+    private final Path stateDir;
+
+    /** Satu job berjalan pada satu waktu; tile di dalam job dirender paralel oleh workers. */
+    private final ExecutorService jobs = Executors.newSingleThreadExecutor(r -> daemon(r, "tile-seed-job"));
+    private final ExecutorService workers;
+
+    private final Map<String, Job> jobsBySlug = new ConcurrentHashMap<>();
+
+    public TileSeedService(
+            MvtTileService tiles,
+            LayerRegistry registry,
+            JdbcTemplate jdbc,
+            @Value("${tiles.seed.threads:2}") int threads,
+            @Value("${tiles.seed.min-zoom:0}") int defaultMinZoom,
+            @Value("${tiles.seed.max-zoom:12}") int defaultMaxZoom,
+            @Value("${tiles.seed.max-level-tiles:65536}") int maxLevelTiles,
+            @Value("${tiles.seed.state-dir:${upload.dir:uploads}/tile-seed}") String stateDir) {
+        this.tiles = tiles;
+        this.registry = registry;
+        this.jdbc = jdbc;
+        this.defaultMinZoom = defaultMinZoom;
+        this.defaultMaxZoom = defaultMaxZoom;
+        this.maxLevelTiles = Math.max(1, maxLevelTiles);
+        this.stateDir = Paths.get(stateDir).toAbsolutePath();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> daemon(r, "tile-seed-worker"));
+    }
+
+    // ------------------------------------------------------------
+    // Public API
+    // ------------------------------------------------------------
+
+    /** Mulai seeding dengan rentang zoom default. */
+    public SeedStatus start(String slug) {
+        return start(slug, null, null);
+    }
+
+    /**
+     * Antrikan job seeding. Job yang masih QUEUED/RUNNING untuk slug yang sama
+     * dibatalkan dulu (mis. publish ulang setelah re-import).
+     * - minZoom yang extent-nya melebihi tiles.seed.max-level-tiles → IllegalArgumentException.
+     */
+    public SeedStatus start(String slug, Integer minZoom, Integer maxZoom) {
+        return start(slug, minZoom, maxZoom, -1, -1L);
+    }
+
+    /** resumeAfter = level terakhir yang selesai (versi checkpoint harus sama), -1 = dari minZoom. */
+    private SeedStatus start(String slug, Integer minZoom, Integer maxZoom, int resumeAfter, long resumeVersion) {
+        int minz = clampZoom(minZoom != null ? minZoom : defaultMinZoom);
+        int maxz = clampZoom(maxZoom != null ? maxZoom : defaultMaxZoom);
+        if (maxz < minz) {
+            throw new IllegalArgumentException("maxZoom harus >= minZoom");
+        }
+
+        LayerSnapshot lm = registry.get(slug).orElseThrow(() -> new IllegalArgumentException("Layer not found"));
+        if (!lm.published()) {
+            throw new IllegalStateException("Seeding hanya untuk layer Published");
+        }
+        if (lm.bbox() != null && levelSize(lm.bbox(), minz) > maxLevelTiles) {
+            throw new IllegalArgumentException("minZoom " + minz + " mencakup " + levelSize(lm.bbox(), minz)
+                    + " tile (batas " + maxLevelTiles + " per level)");
+        }
+
+        Job job = new Job(slug, lm.version(), minz, maxz);
+        if (resumeVersion == lm.version() && resumeAfter >= minz && resumeAfter < maxz) {
+            job.completedZoom = resumeAfter;
+        }
+        Job prev = jobsBySlug.put(slug, job);
+        if (prev != null) {
+            prev.cancel();
+            deleteCheckpoint(prev);
+        }
+
+        writeCheckpoint(job);
+        jobs.submit(() -> run(job));
+        return job.status();
+    }
+
+    public Optional<SeedStatus> status(String slug) {
+        Job job = jobsBySlug.get(slug);
+        return job == null ? Optional.empty() : Optional.of(job.status());
+    }
+
+    public boolean cancel(String slug) {
+        Job job = jobsBySlug.get(slug);
+        if (job == null)
+            return false;
+        job.cancel();
+        deleteCheckpoint(job);
+        return true;
+    }
+
+    /** Lanjutkan job yang terputus (restart/crash) berdasarkan checkpoint di disk. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        if (Files.notExists(stateDir))
+            return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(stateDir, "*.job")) {
+            for (Path p : ds) {
+                // <slug>@<job-id>.job (format lama: <slug>.job)
+                String name = p.getFileName().toString().replaceFirst("\\.job$", "");
+                String slug = name.contains("@") ? name.substring(0, name.lastIndexOf('@')) : name;
+                try {
+                    // minZoom,maxZoom[,level selesai,versi]
+                    String[] parts = Files.readString(p, StandardCharsets.UTF_8).trim().split(",");
+                    int done = parts.length >= 4 ? Integer.parseInt(parts[2]) : -1;
+                    long version = parts.length >= 4 ? Long.parseLong(parts[3]) : -1L;
+                    start(slug, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), done, version);
+                    System.out.println("[TileSeed] Resume seeding " + slug);
+                } catch (Exception e) {
+                    System.err.println("[TileSeed] Checkpoint " + p + " diabaikan: " + e.getMessage());
+                }
+                // job baru menulis checkpoint sendiri
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignore) {
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[TileSeed] Gagal membaca checkpoint: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // checkpoint sengaja tidak dihapus → job dilanjutkan saat startup berikutnya
+        jobsBySlug.values().forEach(Job::cancel);
+        jobs.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    // ------------------------------------------------------------
+    // Job runner
+    // ------------------------------------------------------------
+
+    private void run(Job job) {
+        if (job.cancelled)
+            return;
+        job.state = State.RUNNING;
+        job.startedAt = OffsetDateTime.now();
+
+        try {
+            double[] extent = extentOf(job.slug);
+            if (extent == null) {
+                complete(job, State.DONE, "Layer kosong, tidak ada tile");
+                return;
+            }
+
+            // resume: mulai tepat setelah level terakhir yang selesai, dari extent + coverage
+            // (parent level itu tidak disimpan); terlalu besar → ulang dari minZoom (cache hit)
+            int startZoom = job.minZoom;
+            if (job.completedZoom >= job.minZoom && levelSize(extent, job.completedZoom + 1) <= maxLevelTiles) {
+                startZoom = job.completedZoom + 1;
+            }
+
+            // level awal: semua tile yang menyentuh extent (bbox dari DB belum dicek di start)
+            if (levelSize(extent, startZoom) > maxLevelTiles) {
+                complete(job, State.FAILED, "minZoom " + startZoom + " melebihi batas " + maxLevelTiles
+                        + " tile per level");
+                return;
+            }
+            List<int[]> level = tilesInExtent(extent, startZoom, coverageOf(job.slug));
+            for (int z = startZoom; z <= job.maxZoom && !level.isEmpty(); z++) {
+                if (job.cancelled)
+                    return;
+                if (!stillCurrent(job)) {
+                    complete(job, State.CANCELLED, "Layer berubah/unpublished saat seeding");
+                    return;
+                }
+
+                job.currentZoom = z;
+                job.planned.addAndGet(level.size());
+                List<int[]> nonEmpty = renderLevel(job, z, level);
+                if (job.cancelled)
+                    return; // task yang dibatalkan mengembalikan null → level bukan hasil sebenarnya
+                job.completedZoom = z;
+                writeCheckpoint(job);
+
+                // turunkan hanya anak dari tile berisi, dibatasi extent & coverage
+                if (z < job.maxZoom) {
+                    level = childrenWithinExtent(nonEmpty, z + 1, extent, coverageOf(job.slug));
+                    if (level.size() > maxLevelTiles) {
+                        String msg = "Berhenti sebelum z=" + (z + 1) + ": " + level.size()
+                                + " tile > batas " + maxLevelTiles + " per level";
+                        if (complete(job, State.PARTIAL, msg))
+                            System.err.println("[TileSeed] Seeding " + job.slug + " tidak lengkap: " + msg);
+                        return;
+                    }
+                }
+            }
+
+            complete(job, State.DONE, null);
+        } catch (Exception e) {
+            if (complete(job, State.FAILED, e.getMessage()))
+                System.err.println("[TileSeed] Seeding " + job.slug + " gagal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * State akhir + hapus checkpoint job ini, kecuali job sudah dibatalkan/digantikan
+     * (state & checkpoint-nya milik cancel/job baru). false = job sudah dibatalkan.
+     */
+    private boolean complete(Job job, State state, String msg) {
+        if (!job.finishUnlessCancelled(state, msg))
+            return false;
+        deleteCheckpoint(job);
+        return true;
+    }
+
+    private List<int[]> renderLevel(Job job, int z, List<int[]> level) throws Exception {
+        List<Callable<int[]>> tasks = new ArrayList<>(level.size());
+        for (int[] xy : level) {
+            tasks.add(() -> {
+                if (job.cancelled)
+                    return null;
+                // budget BULK tanpa deadline → seeding melambat, bukan gagal, saat DB sibuk
+                MvtTileService.TileResult res = tiles.getTile(job.slug, z, xy[0], xy[1], false,
+                        DbAdmission.Workload.BACKGROUND);
+                job.done.incrementAndGet();
+                // render gagal ≠ kosong: anak tetap dicoba, subtree tidak dipangkas
+                if (res.empty() && !res.error()) {
+                    job.empty.incrementAndGet();
+                    return null;
+                }
+                return xy;
+            });
+        }
+
+        List<int[]> nonEmpty = new ArrayList<>();
+        for (Future<int[]> f : workers.invokeAll(tasks)) {
+            int[] xy = f.get();
+            if (xy != null)
+                nonEmpty.add(xy);
+        }
+        return nonEmpty;
+    }
+
+    private boolean stillCurrent(Job job) {
+        return registry.get(job.slug)
+                .filter(LayerSnapshot::published)
+                .map(lm -> lm.version() == job.version)
+                .orElse(false);
+    }
+
+    // ------------------------------------------------------------
+    // Extent & tile math
+    // ------------------------------------------------------------
+
+    /** Extent layer [minLon,minLat,maxLon,maxLat]; pakai bbox snapshot bila ada. */
+    private double[] extentOf(String slug) {
+        LayerSnapshot lm = registry.get(slug).orElse(null);
+        if (lm == null || (lm.bbox() == null && !lm.hasTable()))
+            return null;
+        if (lm.bbox() != null) {
+            return lm.bbox();
+        }
+
+        String qualified = lm.qualifiedTable();
+        String geomCol = lm.geomColumn();
+        String sql = """
+                SELECT ST_XMin(b) AS minx, ST_YMin(b) AS miny, ST_XMax(b) AS maxx, ST_YMax(b) AS maxy
+                FROM (SELECT ST_Extent(ST_Transform(t.%s, 4326)) AS b FROM %s t) s
+                WHERE b IS NOT NULL
+                """.formatted(geomCol, qualified);
+        List<double[]> rows = jdbc.query(sql, (rs, i) -> new double[] {
+                rs.getDouble("minx"), rs.getDouble("miny"), rs.getDouble("maxx"), rs.getDouble("maxy") });
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /** Coverage index terkini layer (edit bisa menambah tile selama job); null = tidak ada. */
+    private TileCoverage coverageOf(String slug) {
+        return registry.get(slug).map(LayerSnapshot::coverage).orElse(null);
+    }
+
+    /** Jumlah tile extent di zoom z (tanpa alokasi; untuk cek batas sebelum enumerasi). */
+    private static long levelSize(double[] ext, int z) {
+        int n = 1 << z;
+        long cols = lonToTileX(ext[2], n) - lonToTileX(ext[0], n) + 1L;
+        long rows = latToTileY(ext[1], n) - latToTileY(ext[3], n) + 1L;
+        return cols * rows;
+    }
+
+    private static List<int[]> tilesInExtent(double[] ext, int z, TileCoverage coverage) {
+        int n = 1 << z;
+        int minX = lonToTileX(ext[0], n);
+        int maxX = lonToTileX(ext[2], n);
+        int minY = latToTileY(ext[3], n); // lat max → y kecil
+        int maxY = latToTileY(ext[1], n);
+
+        List<int[]> out = new ArrayList<>();
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                if (coverage == null || coverage.occupiedWithBuffer(z, x, y, TILE_BUFFER_FRACTION))
+                    out.add(new int[] { x, y });
+            }
+        }
+        return out;
+    }
+
+    private static List<int[]> childrenWithinExtent(List<int[]> parents, int childZ, double[] ext,
+            TileCoverage coverage) {
+        int n = 1 << childZ;
+        int minX = lonToTileX(ext[0], n);
+        int maxX = lonToTileX(ext[2], n);
+        int minY = latToTileY(ext[3], n);
+        int maxY = latToTileY(ext[1], n);
+
+        Set<Long> seen = new LinkedHashSet<>();
+        List<int[]> out = new ArrayList<>();
+        for (int[] p : parents) {
+            for (int dx = 0; dx < 2; dx++) {
+                for (int dy = 0; dy < 2; dy++) {
+                    int cx = p[0] * 2 + dx;
+                    int cy = p[1] * 2 + dy;
+                    if (cx < minX || cx > maxX || cy < minY || cy > maxY)
+                        continue;
+                    if (coverage != null && !coverage.occupiedWithBuffer(childZ, cx, cy, TILE_BUFFER_FRACTION))
+                        continue;
+                    if (seen.add(((long) cx << 32) | cy))
+                        out.add(new int[] { cx, cy });
+                }
+            }
+        }
+        return out;
+    }
+
+    private static int lonToTileX(double lon, int n) {
+        int x = (int) Math.floor((lon + 180.0) / 360.0 * n);
+        return Math.max(0, Math.min(n - 1, x));
+    }
+
+    private static int latToTileY(double lat, int n) {
+        double clamped = Math.max(-MAX_LAT, Math.min(MAX_LAT, lat));
+        double rad = Math.toRadians(clamped);
+        int y = (int) Math.floor((1.0 - Math.log(Math.tan(rad) + 1.0 / Math.cos(rad)) / Math.PI) / 2.0 * n);
+        return Math.max(0, Math.min(n - 1, y));
+    }
+
+    // ------------------------------------------------------------
+    // Checkpoint (job aktif) di disk
+    // ------------------------------------------------------------
+
+    /** <slug>@<job-id>.job = "minZoom,maxZoom,level selesai,versi" (ditulis ulang tiap level). */
+    private void writeCheckpoint(Job job) {
+        if (job.cancelled)
+            return;
+        try {
+            Files.createDirectories(stateDir);
+            Files.writeString(checkpointOf(job),
+                    job.minZoom + "," + job.maxZoom + "," + job.completedZoom + "," + job.version,
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("[TileSeed] Gagal menulis checkpoint " + job.slug + ": " + e.getMessage());
+        }
+    }
+
+    private void deleteCheckpoint(Job job) {
+        try {
+            Files.deleteIfExists(checkpointOf(job));
+        } catch (IOException ignore) {
+        }
+    }
+
+    private Path checkpointOf(Job job) {
+        return stateDir.resolve(job.slug + "@" + job.id + ".job");
+    }
+
+    // ------------------------------------------------------------
+    // Misc
+    // ------------------------------------------------------------
+
+    private static int clampZoom(int z) {
+        return Math.max(0, Math.min(22, z));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString().substring(0, 8);
+        final String slug;
+        final long version;
+        final int minZoom;
+        final int maxZoom;
+
+        final AtomicLong done = new AtomicLong();
+        final AtomicLong empty = new AtomicLong();
+        final AtomicLong planned = new AtomicLong();
+
+        volatile State state = State.QUEUED;
+        volatile boolean cancelled = false;
+        volatile int currentZoom;
+        volatile int completedZoom = -1;
+        volatile OffsetDateTime startedAt;
+        volatile OffsetDateTime finishedAt;
+        volatile String message;
+
+        Job(String slug, long version, int minZoom, int maxZoom) {
+            this.slug = slug;
+            this.version = version;
+            this.minZoom = minZoom;
+            this.maxZoom = maxZoom;
+            this.currentZoom = minZoom;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (state == State.QUEUED || state == State.RUNNING) {
+                finish(State.CANCELLED, "Dibatalkan");
+            }
+        }
+
+        /** State akhir dari runner; false bila job sudah dibatalkan (state CANCELLED dipertahankan). */
+        synchronized boolean finishUnlessCancelled(State s, String msg) {
+            if (cancelled)
+                return false;
+            finish(s, msg);
+            return true;
+        }
+
+        private void finish(State s, String msg) {
+            state = s;
+            message = msg;
+            finishedAt = OffsetDateTime.now();
+        }
+
+        SeedStatus status() {
+            return new SeedStatus(slug, version, state, minZoom, maxZoom, currentZoom,
+                    done.get(), empty.get(), planned.get(),
+                    startedAt == null ? null : startedAt.toString(),
+                    finishedAt == null ? null : finishedAt.toString(),
+                    message);
+        }
+    }
+}
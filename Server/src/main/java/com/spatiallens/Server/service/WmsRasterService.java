@@ -1,179 +1,909 @@
 package com.spatiallens.Server.service;
 
-import java.awt.Color;
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.util.Optional;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.imageio.ImageIO;
 
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.spatiallens.Server.model.LayerMeta;
-import com.spatiallens.Server.repository.LayerMetaRepository;
+import com.spatiallens.Server.service.DbAdmission.Workload;
+import com.spatiallens.Server.service.LayerRegistry.LayerSnapshot;
+import com.spatiallens.Server.service.TileCacheService.Scope;
+import com.spatiallens.Server.service.TileCacheService.TileKey;
+
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service untuk render WMS raster tiles.
  * Menggunakan PostGIS untuk query geometries, render manual dengan Java2D.
+ * - Raster XYZ (/raster/{slug}/{z}/{x}/{y}.png) di-cache seperti tile MVT.
+ * - WMS bbox bebas yang sejajar grid XYZ dirakit dari tile raster ter-cache.
+ * - Tile raster digambar dari MVT layer (cache MVT) bila style cukup dengan properti
+ *   whitelist → PostGIS hanya di-query sekali per area untuk vektor & raster.
+ * - Image besar dipecah jadi sub-tile yang di-query & digambar paralel lalu dirakit;
+ *   jumlah fitur dibatasi budget waktu/byte per render, bukan LIMIT.
+ * - Tile raster dari PostGIS dirender per metatile (N×N tile, satu query + satu gambar)
+ *   lalu dipotong & di-cache semua → tetangga kena cache, tanpa seam di dalam blok.
  */
 @Service
 public class WmsRasterService {
 
     private final JdbcTemplate jdbc;
-    private final LayerMetaRepository metaRepo;
+    private final LayerRegistry registry;
+    private final LayerMetrics metrics;
+    private final DbAdmission admission;
+    private final TransactionTemplate readOnlyTx;
+    private final TileCacheService cache;
+    private final MvtTileService vectors;
+
+    private static final double HALF_WORLD = 20037508.342789244;
+
+    /** Ukuran tile raster XYZ (pixel). */
+    static final int TILE_PX = 256;
+
+    /**
+     * Padding tile raster untuk invalidasi area (fraksi sisi tile): margin query
+     * {@link #RENDER_PAD_PX} + simbol terbesar style (stroke/radius) yang bisa
+     * menjangkau tile dari fitur di luarnya.
+     */
+    static double rasterPadFraction(WmsStyle style) {
+        double symbol = (style != null) ? style.maxSymbolPx() : 0;
+        return (RENDER_PAD_PX + Math.ceil(symbol)) / TILE_PX;
+    }
+
+    /** Zoom raster maksimum (offset pixel global muat di long, tile index di int). */
+    private static final int MAX_RASTER_ZOOM = 22;
+
+    /** Margin query (pixel) di sekitar bbox render untuk stroke/titik yang melewati tepi. */
+    private static final int RENDER_PAD_PX = 8;
+
+    /** Penanda mosaic dibatalkan (terlalu banyak tile / miss) → render langsung. */
+    private static final byte[] MOSAIC_DECLINED = new byte[0];
+
+    /** Rakit WMS dari tile raster ter-cache bila bbox sejajar grid XYZ. */
+    @Value("${wms.mosaic.enabled:true}")
+    private boolean mosaicEnabled;
+
+    /** Batas tile per mosaic (2048px = 9×9 tile bila tidak sejajar tile). */
+    @Value("${wms.mosaic.max-tiles:81}")
+    private int mosaicMaxTiles;
+
+    /** Render (tile atau blok metatile) yang boleh dijalankan saat mosaic; lebih → render langsung. */
+    @Value("${wms.mosaic.max-misses:4}")
+    private int mosaicMaxMisses;
 
-    public WmsRasterService(JdbcTemplate jdbc, LayerMetaRepository metaRepo) {
+    /** Tile raster dari MVT (cache atau render sekali) alih-alih query WMS sendiri. */
+    @Value("${wms.vector-source.enabled:true}")
+    private boolean vectorSource;
+
+    /** Sisi sub-tile (pixel); image lebih besar dirender paralel per sub-tile. */
+    @Value("${wms.tiled.sub-tile-px:512}")
+    private int subTilePx;
+
+    /** Budget satu render: lewat batas → berhenti membaca baris (gambar parsial, tidak di-cache). */
+    @Value("${wms.render.max-ms:10000}")
+    private long renderMaxMs;
+
+    @Value("${wms.render.max-mb:64}")
+    private long renderMaxMb;
+
+    /** Sisi metatile (tile) untuk raster dari PostGIS; 1 = render per tile. */
+    @Value("${wms.metatile.size:4}")
+    private int metatileSize;
+
+    /** Jumlah baris per round-trip cursor WMS. */
+    @Value("${wms.fetch-size:500}")
+    private int fetchSize;
+
+    /** Encoder PNG palette/deflate, JPEG/WebP + image kosong ter-cache. */
+    private final RasterEncoder encoder;
+
+    /** Image ARGB dipakai ulang antar render (render 2048² = 16 MB per image). */
+    private final RasterBufferPool imagePool;
+
+    /** Dedup render WMS identik yang sedang berjalan; null = hasil kosong. */
+    private final SingleFlight<WmsKey, Rendered> inFlight;
+
+    /** Dedup render metatile: semua tile di blok menunggu render blok yang sama. */
+    private final SingleFlight<WmsKey, Metatile> metaInFlight;
+
+    /** Pool query + gambar sub-tile (dibagi semua request WMS besar). */
+    private final ExecutorService renderPool;
+
+    public WmsRasterService(
+            JdbcTemplate jdbc,
+            LayerRegistry registry,
+            LayerMetrics metrics,
+            DbAdmission admission,
+            PlatformTransactionManager txManager,
+            TileCacheService cache,
+            MvtTileService vectors,
+            @Value("${tiles.single-flight.timeout-ms:30000}") long singleFlightTimeoutMs,
+            @Value("${wms.image-pool.max-mb:64}") long imagePoolMb,
+            @Value("${wms.tiled.threads:4}") int renderThreads,
+            @Value("${wms.png.deflate-level:6}") int deflateLevel,
+            @Value("${wms.jpeg.quality:0.85}") float jpegQuality,
+            @Value("${wms.png.quantize:false}") boolean quantize) {
         this.jdbc = jdbc;
-        this.metaRepo = metaRepo;
+        this.registry = registry;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.cache = cache;
+        this.vectors = vectors;
+        this.inFlight = new SingleFlight<>(singleFlightTimeoutMs);
+        this.metaInFlight = new SingleFlight<>(singleFlightTimeoutMs);
+        this.imagePool = new RasterBufferPool(imagePoolMb * 1024 * 1024);
+        this.encoder = new RasterEncoder(deflateLevel, jpegQuality, quantize);
+        this.renderPool = Executors.newFixedThreadPool(Math.max(1, renderThreads), r -> {
+            Thread t = new Thread(r, "wms-render");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
-    public record WmsResult(byte[] image, boolean empty, boolean publicPublished) {
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+    }
+
+    /** error = render gagal (image kosong pengganti) → jangan di-cache / diberi validator. */
+    public record WmsResult(byte[] image, boolean empty, boolean publicPublished, boolean error) {
+
+        public WmsResult(byte[] image, boolean empty, boolean publicPublished) {
+            this(image, empty, publicPublished, false);
+        }
+    }
+
+    /** Hasil render; partial = budget habis sebelum semua baris terbaca. */
+    private record Rendered(byte[] png, boolean partial) {
+    }
+
+    /** Tile hasil potong satu metatile (baris demi baris); byte[0] = kosong. */
+    private record Metatile(int x0, int y0, int cols, byte[][] tiles) {
+
+        byte[] tile(int x, int y) {
+            return tiles[(y - y0) * cols + (x - x0)];
+        }
+    }
+
+    private record WmsKey(String slug, long version, String style, double minX, double minY, double maxX,
+            double maxY, int width, int height, RasterFormat format) {
+    }
+
+    /** Render WMS tile sebagai PNG. */
+    public WmsResult getWmsTile(String slug, String bbox, int width, int height, boolean canAccessRestricted) {
+        return getWmsTile(slug, bbox, width, height, canAccessRestricted, RasterFormat.PNG);
     }
 
     /**
-     * Render WMS tile sebagai PNG.
+     * Render WMS tile.
      * 
      * @param slug       layer identifier
      * @param bbox       bounding box: minX,minY,maxX,maxY dalam EPSG:3857
      * @param width      image width (default 256)
      * @param height     image height (default 256)
      * @param canAccessRestricted user permission
+     * @param format     format output ({@link RasterFormat#negotiate})
      */
-    public WmsResult getWmsTile(String slug, String bbox, int width, int height, boolean canAccessRestricted) {
+    public WmsResult getWmsTile(String slug, String bbox, int width, int height, boolean canAccessRestricted,
+            RasterFormat format) {
         // Validate dimensions
         if (width <= 0 || width > 2048 || height <= 0 || height > 2048) {
-            return new WmsResult(emptyPng(256, 256), true, false);
+            return new WmsResult(encoder.empty(256, 256, format), true, false);
+        }
+
+        long t0 = System.nanoTime();
+        LayerSnapshot lm = registry.get(slug).orElse(null);
+        String layer = (lm != null) ? slug : LayerMetrics.UNKNOWN_LAYER;
+
+        try {
+            WmsResult res = resolveWms(lm, bbox, width, height, canAccessRestricted, format);
+            metrics.request(LayerMetrics.WMS, layer, res.empty() ? "empty" : "data", t0);
+            return res;
+        } catch (DbBusyException busy) {
+            metrics.request(LayerMetrics.WMS, layer, "shed", t0);
+            throw busy;
+        } catch (Exception ex) {
+            // Fail-closed → image transparan bertanda error
+            metrics.error(LayerMetrics.WMS, layer, ex);
+            metrics.request(LayerMetrics.WMS, layer, "error", t0);
+            System.err.println("[WMS] Render gagal " + slug + " bbox=" + bbox + ": " + ex.getMessage());
+            return new WmsResult(encoder.empty(width, height, format), true, lm != null && lm.published(), true);
         }
+    }
 
-        Optional<LayerMeta> opt = metaRepo.findBySlug(slug);
-        if (opt.isEmpty()) {
-            return new WmsResult(emptyPng(width, height), true, false);
+    private WmsResult resolveWms(LayerSnapshot lm, String bbox, int width, int height, boolean canAccessRestricted,
+            RasterFormat format) {
+        if (lm == null) {
+            return new WmsResult(encoder.empty(width, height, format), true, false);
         }
 
-        LayerMeta lm = opt.get();
-        boolean isPublished = "Published".equalsIgnoreCase(lm.getStatus());
+        boolean isPublished = lm.published();
         boolean publicPublished = isPublished;
 
         // Access control
         if (!isPublished && !canAccessRestricted) {
-            return new WmsResult(emptyPng(width, height), true, publicPublished);
+            return new WmsResult(encoder.empty(width, height, format), true, publicPublished);
         }
 
         // Validate metadata
-        if (isBlank(lm.getSchemaName()) || isBlank(lm.getTableName()) || isBlank(lm.getGeomColumn())) {
-            return new WmsResult(emptyPng(width, height), true, publicPublished);
+        if (!lm.hasTable()) {
+            return new WmsResult(encoder.empty(width, height, format), true, publicPublished);
         }
 
         // Parse bbox
         double[] bounds = parseBbox(bbox);
         if (bounds == null) {
-            return new WmsResult(emptyPng(width, height), true, publicPublished);
+            return new WmsResult(encoder.empty(width, height, format), true, publicPublished);
         }
 
-        final String qualified = safeIdent(lm.getSchemaName()) + "." + safeIdent(lm.getTableName());
-        final String geomCol = safeIdent(lm.getGeomColumn());
+        // bbox tanpa data (coverage index, + margin render yang sama dengan query) → kosong tanpa DB
+        TileCoverage coverage = lm.coverage();
+        if (coverage != null) {
+            double padX = (bounds[2] - bounds[0]) / width * RENDER_PAD_PX;
+            double padY = (bounds[3] - bounds[1]) / height * RENDER_PAD_PX;
+            if (!coverage.anyOccupied3857(bounds[0] - padX, bounds[1] - padY, bounds[2] + padX, bounds[3] + padY)) {
+                return new WmsResult(encoder.empty(width, height, format), true, publicPublished);
+            }
+        }
 
-        // Query geometries from PostGIS (transformed to EPSG:3857)
-        String sql = String.format("""
-                SELECT ST_AsText(ST_Transform(t.%s, 3857)) AS wkt
-                FROM %s t
-                WHERE ST_Intersects(
-                    ST_Transform(t.%s, 3857),
-                    ST_MakeEnvelope(%f, %f, %f, %f, 3857)
-                )
-                LIMIT 5000
-                """, geomCol, qualified, geomCol, bounds[0], bounds[1], bounds[2], bounds[3]);
+        // skala & offset tepat di grid XYZ → rakit dari tile raster ter-cache
+        if (mosaicEnabled) {
+            Mosaic m = mosaicPlan(bounds, width, height);
+            if (m != null) {
+                byte[] png = mosaic(lm, m, width, height, format);
+                if (png != MOSAIC_DECLINED) {
+                    return (png == null)
+                            ? new WmsResult(encoder.empty(width, height, format), true, publicPublished)
+                            : new WmsResult(png, false, publicPublished);
+                }
+            }
+        }
+
+        Rendered r = render(lm, LayerMetrics.WMS, bounds, width, height, format);
+        if (r == null) {
+            return new WmsResult(encoder.empty(width, height, format), true, publicPublished);
+        }
+        return new WmsResult(r.png(), false, publicPublished);
+    }
+
+    // ------------------------------------------------------------
+    // Raster XYZ (grid Web Mercator, 256px) + cache
+    // ------------------------------------------------------------
+
+    /** Tile raster PNG z/x/y; lihat {@link #getRasterTile(String, int, int, int, boolean, RasterFormat)}. */
+    public WmsResult getRasterTile(String slug, int z, int x, int y, boolean canAccessRestricted) {
+        return getRasterTile(slug, z, x, y, canAccessRestricted, RasterFormat.PNG);
+    }
+
+    /**
+     * Tile raster z/x/y (256px) dengan cache {@link TileCacheService}.
+     * - Kunci cache: versi layer + format "<ext>-<style>" → import/fix/restyle otomatis miss;
+     *   edit fitur membuang tile di area edit (invalidateArea).
+     * - Tile kosong (coverage / hasil render) → empty=true.
+     */
+    public WmsResult getRasterTile(String slug, int z, int x, int y, boolean canAccessRestricted,
+            RasterFormat format) {
+        long t0 = System.nanoTime();
+        LayerSnapshot lm = registry.get(slug).orElse(null);
+        String layer = (lm != null) ? slug : LayerMetrics.UNKNOWN_LAYER;
 
         try {
-            var geometries = jdbc.query(sql, (rs, rowNum) -> rs.getString("wkt"));
+            WmsResult res = resolveRaster(lm, z, x, y, canAccessRestricted, format);
+            metrics.request(LayerMetrics.RASTER, layer, res.empty() ? "empty" : "data", t0);
+            return res;
+        } catch (DbBusyException busy) {
+            metrics.request(LayerMetrics.RASTER, layer, "shed", t0);
+            throw busy;
+        } catch (Exception ex) {
+            metrics.error(LayerMetrics.RASTER, layer, ex);
+            metrics.request(LayerMetrics.RASTER, layer, "error", t0);
+            System.err.println("[Raster] Render gagal " + slug + " " + z + "/" + x + "/" + y + ": " + ex.getMessage());
+            return new WmsResult(encoder.empty(TILE_PX, TILE_PX, format), true, lm != null && lm.published(), true);
+        }
+    }
+
+    private WmsResult resolveRaster(LayerSnapshot lm, int z, int x, int y, boolean canAccessRestricted,
+            RasterFormat format) {
+        if (lm == null || (!lm.published() && !canAccessRestricted) || !lm.hasTable()) {
+            return new WmsResult(encoder.empty(TILE_PX, TILE_PX, format), true, lm != null && lm.published());
+        }
+        Integer minz = lm.minzoom();
+        Integer maxz = lm.maxzoom();
+        if (z < 0 || z > MAX_RASTER_ZOOM || (minz != null && z < minz) || (maxz != null && z > maxz)
+                || x < 0 || y < 0 || x >= (1 << z) || y >= (1 << z)) {
+            return new WmsResult(encoder.empty(TILE_PX, TILE_PX, format), true, lm.published());
+        }
+        byte[] png = rasterTile(lm, z, x, y, format);
+        boolean empty = (png == null || png.length == 0);
+        return new WmsResult(empty ? encoder.empty(TILE_PX, TILE_PX, format) : png, empty, lm.published());
+    }
+
+    /** Tile z/x/y dari cache atau render (lalu di-cache); byte[0] = kosong. */
+    private byte[] rasterTile(LayerSnapshot lm, int z, int x, int y, RasterFormat format) {
+        TileCoverage coverage = lm.coverage();
+        if (coverage != null && !coverage.occupiedWithBuffer(z, x, y, RENDER_PAD_PX / (double) TILE_PX)) {
+            return new byte[0];
+        }
+        TileKey key = rasterKey(lm, z, x, y, format);
+        byte[] cached = cache.get(key);
+        metrics.cache(LayerMetrics.RASTER, lm.slug(), cached != null);
+        if (cached != null) {
+            return cached;
+        }
+        boolean vector = fromVectorTile(lm, z);
+        if (!vector && metatileSize > 1) {
+            // metatile meng-cache sendiri semua tile-nya (kecuali hasil parsial)
+            return metatile(lm, z, x, y, format).tile(x, y);
+        }
+        Rendered r = vector
+                ? renderVectorTile(lm, z, x, y, format)
+                : render(lm, LayerMetrics.RASTER, tileBounds(z, x, y), TILE_PX, TILE_PX, format);
+        byte[] png = (r != null) ? r.png() : new byte[0];
+        // tile parsial (budget habis) dilayani tapi tidak di-cache
+        if (r == null || !r.partial()) {
+            putIfCurrent(lm, key, png);
+        }
+        return png;
+    }
 
-            if (geometries.isEmpty()) {
-                return new WmsResult(emptyPng(width, height), true, publicPublished);
+    /**
+     * Tile raster boleh digambar dari MVT bila MVT memuat semua properti style
+     * (whitelist, key uppercase) dan zoom z bukan zona cluster.
+     */
+    private boolean fromVectorTile(LayerSnapshot lm, int z) {
+        if (!vectorSource || lm.clusteredAt(z))
+            return false;
+        for (String field : lm.wmsStyle().fields()) {
+            boolean found = false;
+            for (String key : lm.whitelist()) {
+                if (key.toUpperCase().trim().equals(field)) {
+                    found = true;
+                    break;
+                }
             }
+            if (!found)
+                return false;
+        }
+        return true;
+    }
 
-            // Render to PNG
-            byte[] png = renderToPng(geometries, bounds, width, height);
-            return new WmsResult(png, false, publicPublished);
+    private static TileKey rasterKey(LayerSnapshot lm, int z, int x, int y, RasterFormat format) {
+        return new TileKey(lm.published() ? Scope.PUBLIC : Scope.RESTRICTED, lm.slug(), lm.version(),
+                format.extension() + "-" + lm.wmsStyle().signature(), z, x, y);
+    }
 
-        } catch (Exception ex) {
-            return new WmsResult(emptyPng(width, height), true, publicPublished);
+    /** Simpan hanya bila versi/revisi/style layer belum berubah sejak snapshot diambil. */
+    private void putIfCurrent(LayerSnapshot lm, TileKey key, byte[] png) {
+        LayerSnapshot now = registry.get(lm.slug()).orElse(null);
+        if (now != null && now.version() == lm.version() && now.revision() == lm.revision()
+                && now.wmsStyle() == lm.wmsStyle()) {
+            cache.put(key, png);
         }
     }
 
-    // --- Rendering ---
+    // ------------------------------------------------------------
+    // Metatile: blok N×N tile raster dalam satu query + satu gambar
+    // ------------------------------------------------------------
+
+    /**
+     * Blok metatile {x0, y0, cols, rows} yang memuat tile x/y: sejajar kelipatan size,
+     * dipotong di tepi grid zoom z.
+     */
+    static int[] metatileBlock(int z, int x, int y, int size) {
+        int n = 1 << z;
+        int span = Math.max(1, Math.min(size, n));
+        int x0 = x - Math.floorMod(x, span);
+        int y0 = y - Math.floorMod(y, span);
+        return new int[] { x0, y0, Math.min(span, n - x0), Math.min(span, n - y0) };
+    }
+
+    /**
+     * Render metatile yang memuat z/x/y lalu potong per tile.
+     * - Satu query (bbox blok + margin {@link #RENDER_PAD_PX}) dan satu kanvas → tidak ada
+     *   seam antar tile di dalam blok; tepi blok ditangani margin query.
+     * - Semua tile blok di-cache (bila versi layer belum berubah & budget tidak habis);
+     *   request tile lain di blok yang sama menunggu render yang sama.
+     */
+    private Metatile metatile(LayerSnapshot lm, int z, int x, int y, RasterFormat format) {
+        int[] block = metatileBlock(z, x, y, metatileSize);
+        int x0 = block[0], y0 = block[1], cols = block[2], rows = block[3];
+        double[] first = tileBounds(z, x0, y0);
+        double[] last = tileBounds(z, x0 + cols - 1, y0 + rows - 1);
+        double[] bounds = { first[0], last[1], last[2], first[3] };
+        int width = cols * TILE_PX;
+        int height = rows * TILE_PX;
+        String slug = lm.slug();
+        WmsStyle style = lm.wmsStyle();
+        WmsKey key = new WmsKey(slug, lm.version(), style.signature(), bounds[0], bounds[1], bounds[2], bounds[3],
+                width, height, format);
+
+        return metaInFlight.execute(key, () -> {
+            RenderBudget budget = new RenderBudget(renderMaxMs, renderMaxMb * 1024 * 1024);
+            byte[][] tiles = new byte[cols * rows][];
+            try (RasterCanvas canvas = new RasterCanvas(imagePool, bounds, width, height, style)) {
+                long drawn = renderInto(lm, LayerMetrics.RASTER, bounds, width, height, canvas, budget);
+                long tEnc = System.nanoTime();
+                BufferedImage img = canvas.image();
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < cols; col++) {
+                        int px = col * TILE_PX, py = row * TILE_PX;
+                        byte[] tile = (drawn == 0 || blank(img, px, py, TILE_PX, TILE_PX))
+                                ? new byte[0]
+                                : encoder.encode(img.getSubimage(px, py, TILE_PX, TILE_PX), format);
+                        tiles[row * cols + col] = tile;
+                        if (tile.length > 0)
+                            metrics.bytes(LayerMetrics.RASTER, slug, tile.length);
+                    }
+                }
+                metrics.encode(LayerMetrics.RASTER, slug, tEnc);
+            }
+            if (budget.exhausted()) {
+                // tile parsial dilayani tapi tidak di-cache
+                System.err.println("[Raster] Budget render habis " + slug + " metatile " + z + "/" + x0 + "/" + y0
+                        + " → gambar parsial");
+            } else {
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < cols; col++)
+                        putIfCurrent(lm, rasterKey(lm, z, x0 + col, y0 + row, format), tiles[row * cols + col]);
+                }
+            }
+            return new Metatile(x0, y0, cols, tiles);
+        });
+    }
 
-    private byte[] renderToPng(java.util.List<String> wktList, double[] bounds, int width, int height) {
+    /** true bila semua pixel di region transparan. */
+    private static boolean blank(BufferedImage img, int x, int y, int w, int h) {
+        int[] row = new int[w];
+        for (int j = 0; j < h; j++) {
+            img.getRGB(x, y + j, w, 1, row, 0, w);
+            for (int v : row) {
+                if ((v >>> 24) != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static double[] tileBounds(int z, int x, int y) {
+        double size = 2 * HALF_WORLD / (1 << z);
+        return new double[] {
+                -HALF_WORLD + x * size,
+                HALF_WORLD - (y + 1) * size,
+                -HALF_WORLD + (x + 1) * size,
+                HALF_WORLD - y * size };
+    }
+
+    // ------------------------------------------------------------
+    // Mosaic: bbox WMS yang sejajar grid dirakit dari tile raster
+    // ------------------------------------------------------------
+
+    /** Zoom + offset pixel global (pojok kiri-atas bbox) di grid XYZ. */
+    record Mosaic(int z, long originX, long originY) {
+    }
+
+    /**
+     * Rencana mosaic bila resolusi bbox = resolusi zoom XYZ (toleransi 0.1%) dan
+     * pojoknya jatuh tepat di pixel grid (toleransi 0.01 px); selain itu null.
+     */
+    static Mosaic mosaicPlan(double[] bounds, int width, int height) {
+        double resX = (bounds[2] - bounds[0]) / width;
+        double resY = (bounds[3] - bounds[1]) / height;
+        if (!(resX > 0) || Math.abs(resX - resY) > resX * 1e-3)
+            return null;
+        int z = (int) Math.round(Math.log(2 * HALF_WORLD / (TILE_PX * resX)) / Math.log(2));
+        if (z < 0 || z > MAX_RASTER_ZOOM)
+            return null;
+        double res = 2 * HALF_WORLD / TILE_PX / (1L << z);
+        if (Math.abs(resX - res) > res * 1e-3)
+            return null;
+        double ox = (bounds[0] + HALF_WORLD) / res;
+        double oy = (HALF_WORLD - bounds[3]) / res;
+        if (Math.abs(ox - Math.rint(ox)) > 0.01 || Math.abs(oy - Math.rint(oy)) > 0.01)
+            return null;
+        return new Mosaic(z, Math.round(ox), Math.round(oy));
+    }
+
+    /**
+     * Rakit PNG dari tile raster yang menutupi bbox.
+     * - Tile belum ter-cache (dan berisi data) dirender + di-cache; butuh lebih dari
+     *   wms.mosaic.max-misses render → {@link #MOSAIC_DECLINED} (render langsung satu query lebih murah).
+     * @return PNG, null bila semua tile kosong, atau MOSAIC_DECLINED
+     */
+    private byte[] mosaic(LayerSnapshot lm, Mosaic m, int width, int height, RasterFormat format) {
+        long tx0 = Math.floorDiv(m.originX(), TILE_PX);
+        long ty0 = Math.floorDiv(m.originY(), TILE_PX);
+        long tx1 = Math.floorDiv(m.originX() + width - 1, TILE_PX);
+        long ty1 = Math.floorDiv(m.originY() + height - 1, TILE_PX);
+        if ((tx1 - tx0 + 1) * (ty1 - ty0 + 1) > mosaicMaxTiles)
+            return MOSAIC_DECLINED;
+
+        long n = 1L << m.z();
+        TileCoverage coverage = lm.coverage();
+        // miss dihitung per render: per tile, atau per blok metatile (satu render mengisi seluruh blok)
+        int block = (metatileSize > 1 && !fromVectorTile(lm, m.z())) ? metatileSize : 1;
+        Set<Long> misses = new HashSet<>();
+        for (long ty = ty0; ty <= ty1; ty++) {
+            for (long tx = tx0; tx <= tx1; tx++) {
+                if (tx < 0 || ty < 0 || tx >= n || ty >= n)
+                    continue;
+                if (coverage != null && !coverage.occupiedWithBuffer(m.z(), (int) tx, (int) ty,
+                        RENDER_PAD_PX / (double) TILE_PX))
+                    continue;
+                if (cache.get(rasterKey(lm, m.z(), (int) tx, (int) ty, RasterFormat.PNG)) == null
+                        && misses.add(((tx / block) << 32) | (ty / block)) && misses.size() > mosaicMaxMisses)
+                    return MOSAIC_DECLINED;
+            }
+        }
+
+        long tEnc = System.nanoTime();
+        BufferedImage out = imagePool.acquire(width, height);
+        Graphics2D g = out.createGraphics();
         try {
-            BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = img.createGraphics();
-
-            // Enable antialiasing
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-            // Transparent background
-            g2d.setComposite(java.awt.AlphaComposite.Clear);
-            g2d.fillRect(0, 0, width, height);
-            g2d.setComposite(java.awt.AlphaComposite.SrcOver);
-
-            // Set style
-            g2d.setColor(new Color(163, 217, 165, 102)); // #A3D9A5 with alpha
-            g2d.setStroke(new java.awt.BasicStroke(1.5f));
-
-            double minX = bounds[0];
-            double minY = bounds[1];
-            double maxX = bounds[2];
-            double maxY = bounds[3];
-            double scaleX = width / (maxX - minX);
-            double scaleY = height / (maxY - minY);
-
-            // Parse and draw geometries
-            org.locationtech.jts.io.WKTReader wktReader = new org.locationtech.jts.io.WKTReader();
-            for (String wkt : wktList) {
-                try {
-                    Geometry geom = wktReader.read(wkt);
-                    drawGeometry(g2d, geom, minX, minY, maxY, scaleX, scaleY, height);
-                } catch (Exception e) {
-                    // Skip invalid geometries
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+            g.setComposite(AlphaComposite.SrcOver);
+            boolean any = false;
+            for (long ty = ty0; ty <= ty1; ty++) {
+                for (long tx = tx0; tx <= tx1; tx++) {
+                    if (tx < 0 || ty < 0 || tx >= n || ty >= n)
+                        continue;
+                    byte[] png = rasterTile(lm, m.z(), (int) tx, (int) ty, RasterFormat.PNG);
+                    if (png.length == 0)
+                        continue;
+                    BufferedImage tile = ImageIO.read(new ByteArrayInputStream(png));
+                    if (tile == null)
+                        continue;
+                    g.drawImage(tile, (int) (tx * TILE_PX - m.originX()), (int) (ty * TILE_PX - m.originY()), null);
+                    any = true;
+                }
+            }
+            if (!any)
+                return null;
+            byte[] png = encoder.encode(out, format);
+            metrics.encode(LayerMetrics.WMS, lm.slug(), tEnc);
+            metrics.bytes(LayerMetrics.WMS, lm.slug(), png.length);
+            return png;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            g.dispose();
+            imagePool.release(out);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Render dari PostGIS
+    // ------------------------------------------------------------
+
+    /**
+     * Render bbox ke PNG; null = tidak ada geometry.
+     * - Query memakai bbox + margin {@link #RENDER_PAD_PX} agar stroke/titik di tepi
+     *   tetap tergambar → tile raster bersebelahan menyambung tanpa celah.
+     * - Request identik yang bersamaan → satu query + satu render.
+     * - Lebih besar dari wms.tiled.sub-tile-px → {@link #renderTiled}.
+     */
+    private Rendered render(LayerSnapshot lm, String endpoint, double[] bounds, int width, int height,
+            RasterFormat format) {
+        String slug = lm.slug();
+        WmsStyle style = lm.wmsStyle();
+        WmsKey key = new WmsKey(slug, lm.version(), style.signature(), bounds[0], bounds[1], bounds[2], bounds[3],
+                width, height, format);
+
+        return inFlight.execute(key, () -> {
+            RenderBudget budget = new RenderBudget(renderMaxMs, renderMaxMb * 1024 * 1024);
+            byte[] out;
+            if (width <= subTilePx && height <= subTilePx) {
+                try (RasterCanvas canvas = new RasterCanvas(imagePool, bounds, width, height, style)) {
+                    if (renderInto(lm, endpoint, bounds, width, height, canvas, budget) == 0) {
+                        return null;
+                    }
+                    long tEnc = System.nanoTime();
+                    out = canvas.encode(encoder, format);
+                    metrics.encode(endpoint, slug, tEnc);
+                }
+            } else {
+                out = renderTiled(lm, endpoint, bounds, width, height, budget, format);
+                if (out == null) {
+                    return null;
                 }
             }
+            metrics.bytes(endpoint, slug, out.length);
+            if (budget.exhausted()) {
+                System.err.println("[WMS] Budget render habis " + slug + " " + width + "x" + height
+                        + " → gambar parsial");
+            }
+            return new Rendered(out, budget.exhausted());
+        });
+    }
 
-            g2d.dispose();
+    /** Query bbox (+ margin) lalu gambar ke kanvas; baris di-stream → memori konstan. */
+    private long renderInto(LayerSnapshot lm, String endpoint, double[] bounds, int width, int height,
+            RasterCanvas canvas, RenderBudget budget) {
+        double padX = (bounds[2] - bounds[0]) / width * RENDER_PAD_PX;
+        double padY = (bounds[3] - bounds[1]) / height * RENDER_PAD_PX;
+        double[] query = { bounds[0] - padX, bounds[1] - padY, bounds[2] + padX, bounds[3] + padY };
+        return admission.run(DbAdmission.Workload.INTERACTIVE, () -> {
+            long tDb = System.nanoTime();
+            try {
+                return streamInto(lm.wmsSql(), query, lm.wmsStyle(), canvas, budget);
+            } finally {
+                metrics.db(endpoint, lm.slug(), tDb);
+            }
+        });
+    }
 
-            // Convert to PNG bytes
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(img, "PNG", baos);
-            return baos.toByteArray();
+    /**
+     * Render image besar per sub-tile di {@link #renderPool}, lalu rakit jadi satu PNG.
+     * - Tiap sub-tile: query bbox-nya sendiri (index GIST) + kanvas sendiri.
+     * - Budget dibagi semua sub-tile; sub-tile yang mulai setelah budget habis kosong.
+     * - Error satu sub-tile (mis. DbBusyException) menggagalkan seluruh render.
+     * @return PNG, null bila tidak ada geometry
+     */
+    private byte[] renderTiled(LayerSnapshot lm, String endpoint, double[] bounds, int width, int height,
+            RenderBudget budget, RasterFormat format) {
+        double resX = (bounds[2] - bounds[0]) / width;
+        double resY = (bounds[3] - bounds[1]) / height;
+        List<int[]> parts = subTiles(width, height, subTilePx);
+        List<Future<RasterCanvas>> futures = new ArrayList<>(parts.size());
+        for (int[] p : parts) {
+            double[] sub = { bounds[0] + p[0] * resX, bounds[3] - (p[1] + p[3]) * resY,
+                    bounds[0] + (p[0] + p[2]) * resX, bounds[3] - p[1] * resY };
+            futures.add(renderPool.submit(() -> {
+                RasterCanvas canvas = new RasterCanvas(imagePool, sub, p[2], p[3], lm.wmsStyle());
+                try {
+                    if (renderInto(lm, endpoint, sub, p[2], p[3], canvas, budget) > 0)
+                        return canvas;
+                } catch (RuntimeException e) {
+                    canvas.close();
+                    throw e;
+                }
+                canvas.close();
+                return null;
+            }));
+        }
 
-        } catch (Exception e) {
-            return emptyPng(width, height);
+        // tunggu semua sub-tile (juga saat ada yang gagal) → kanvas selalu kembali ke pool
+        List<RasterCanvas> canvases = new ArrayList<>(parts.size());
+        RuntimeException failure = null;
+        try {
+            for (Future<RasterCanvas> f : futures) {
+                try {
+                    canvases.add(f.get());
+                } catch (ExecutionException e) {
+                    canvases.add(null);
+                    if (failure == null) {
+                        failure = (e.getCause() instanceof RuntimeException re) ? re
+                                : new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            failure = new IllegalStateException("Render WMS terinterupsi", e);
+        }
+
+        BufferedImage out = null;
+        Graphics2D g = null;
+        try {
+            if (failure != null)
+                throw failure;
+            if (canvases.stream().allMatch(c -> c == null))
+                return null;
+            long tEnc = System.nanoTime();
+            out = imagePool.acquire(width, height);
+            g = out.createGraphics();
+            // image pool bisa berisi render lama (sub-tile kosong tidak digambar) → clear dulu;
+            // Src: pixel sub-tile disalin apa adanya, termasuk alpha
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+            g.setComposite(AlphaComposite.Src);
+            for (int i = 0; i < canvases.size(); i++) {
+                RasterCanvas c = canvases.get(i);
+                if (c != null)
+                    g.drawImage(c.image(), parts.get(i)[0], parts.get(i)[1], null);
+            }
+            byte[] png = encoder.encode(out, format);
+            metrics.encode(endpoint, lm.slug(), tEnc);
+            return png;
+        } finally {
+            if (g != null)
+                g.dispose();
+            imagePool.release(out);
+            for (RasterCanvas c : canvases) {
+                if (c != null)
+                    c.close();
+            }
+        }
+    }
+
+    /** Potongan sub-tile {x, y, w, h} (pixel) yang menutupi image width×height, baris demi baris. */
+    static List<int[]> subTiles(int width, int height, int size) {
+        List<int[]> out = new ArrayList<>();
+        for (int y = 0; y < height; y += size) {
+            for (int x = 0; x < width; x += size) {
+                out.add(new int[] { x, y, Math.min(size, width - x), Math.min(size, height - y) });
+            }
         }
+        return out;
     }
 
-    private void drawGeometry(Graphics2D g2d, Geometry geom, double minX, double minY, double maxY, 
-                              double scaleX, double scaleY, int height) {
-        Coordinate[] coords = geom.getCoordinates();
-        if (coords.length == 0) return;
+    /**
+     * Budget satu render (dibagi semua sub-tile): tenggat waktu + byte WKB yang dibaca.
+     * Menggantikan LIMIT baris: image besar tidak terpotong selama budget cukup.
+     */
+    static final class RenderBudget {
+        private final long deadline;
+        private final AtomicLong bytesLeft;
+        private volatile boolean exhausted;
+
+        RenderBudget(long maxMs, long maxBytes) {
+            this.deadline = System.nanoTime() + maxMs * 1_000_000L;
+            this.bytesLeft = new AtomicLong(maxBytes);
+        }
 
-        int[] xPoints = new int[coords.length];
-        int[] yPoints = new int[coords.length];
+        /** Ambil jatah satu baris; false = budget habis → berhenti membaca. */
+        boolean take(int bytes) {
+            if (exhausted)
+                return false;
+            if (bytesLeft.addAndGet(-bytes) < 0 || System.nanoTime() - deadline > 0) {
+                exhausted = true;
+                return false;
+            }
+            return true;
+        }
 
-        for (int i = 0; i < coords.length; i++) {
-            xPoints[i] = (int) ((coords[i].x - minX) * scaleX);
-            yPoints[i] = (int) (height - ((coords[i].y - minY) * scaleY));
+        boolean exhausted() {
+            return exhausted;
         }
+    }
+
+    /**
+     * Render tile raster z/x/y dari MVT layer (cache MVT, atau dirender sekali lewat
+     * {@link MvtTileService}); null = tidak ada fitur.
+     * - Geometry MVT sudah ter-clip (buffer 64/4096) & tergeneralisasi sesuai zoom.
+     * - Tag fitur dipetakan ke {@link WmsStyle#fields()} lewat tabel key layer;
+     *   teks value di-decode sekali per tile.
+     */
+    private Rendered renderVectorTile(LayerSnapshot lm, int z, int x, int y, RasterFormat format) {
+        String slug = lm.slug();
+        WmsStyle style = lm.wmsStyle();
+        double[] bounds = tileBounds(z, x, y);
+        WmsKey key = new WmsKey(slug, lm.version(), style.signature(), bounds[0], bounds[1], bounds[2], bounds[3],
+                TILE_PX, TILE_PX, format);
+
+        return inFlight.execute(key, () -> {
+            byte[] gz = vectors.vectorTile(lm, z, x, y, Workload.INTERACTIVE);
+            if (gz == null || gz.length == 0) {
+                return null;
+            }
+            long tEnc = System.nanoTime();
+            List<String> fields = style.fields();
+            String[] vals = new String[fields.size()];
+            long drawn = 0;
+            try (RasterCanvas canvas = new RasterCanvas(imagePool, bounds, TILE_PX, TILE_PX, style)) {
+                for (MvtOverzoom.Layer layer : MvtOverzoom.decode(TileCompression.gunzip(gz))) {
+                    // index key layer → posisi di vals (-1 = tidak dipakai style)
+                    int[] slot = new int[layer.keys().size()];
+                    for (int k = 0; k < slot.length; k++)
+                        slot[k] = fields.indexOf(new String(layer.keys().get(k), StandardCharsets.UTF_8));
+                    String[] texts = new String[layer.values().size()];
+
+                    for (MvtOverzoom.Feature f : layer.features()) {
+                        Arrays.fill(vals, null);
+                        int[] tags = f.tags();
+                        for (int t = 0; t + 1 < tags.length; t += 2) {
+                            int k = tags[t];
+                            int v = tags[t + 1];
+                            if (k < 0 || k >= slot.length || slot[k] < 0 || v < 0 || v >= texts.length)
+                                continue;
+                            if (texts[v] == null)
+                                texts[v] = MvtOverzoom.valueText(layer.values().get(v));
+                            vals[slot[k]] = texts[v];
+                        }
+                        canvas.drawTile(f.type(), MvtOverzoom.decodeGeometry(f.geometry(), f.type()),
+                                layer.extent(), vals);
+                        drawn++;
+                    }
+                }
+                if (drawn == 0) {
+                    return null;
+                }
+                byte[] out = canvas.encode(encoder, format);
+                metrics.encode(LayerMetrics.RASTER, slug, tEnc);
+                metrics.bytes(LayerMetrics.RASTER, slug, out.length);
+                return new Rendered(out, false);
+            }
+        });
+    }
 
-        // Fill polygon
-        g2d.fillPolygon(xPoints, yPoints, coords.length);
+    /**
+     * Jalankan SQL WMS dengan cursor (fetch size) dan gambar tiap geometry saat tiba.
+     * - PgJDBC hanya memakai cursor di luar autocommit → transaksi read-only.
+     * - WKB biner: tanpa format/parse teks di Postgres maupun Java.
+     * - Kolom 2.. = properti yang dipakai style (urutan {@link WmsStyle#fields()}).
+     * - Budget habis → berhenti membaca; sisa cursor ditutup bersama transaksi.
+     * @return jumlah geometry yang digambar
+     */
+    private long streamInto(String sql, double[] bounds, WmsStyle style, RasterCanvas canvas, RenderBudget budget) {
+        WKBReader reader = new WKBReader();
+        String[] vals = new String[style.fields().size()];
+        long[] drawn = { 0 };
+        readOnlyTx.executeWithoutResult(status -> jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < 4; i++)
+                ps.setDouble(i + 1, bounds[i]);
+            return ps;
+        }, (ResultSetExtractor<Void>) rs -> {
+            while (rs.next()) {
+                byte[] wkb = rs.getBytes(1);
+                if (wkb == null)
+                    continue;
+                if (!budget.take(wkb.length))
+                    break;
+                for (int i = 0; i < vals.length; i++)
+                    vals[i] = rs.getString(i + 2);
+                try {
+                    canvas.draw(reader.read(wkb), vals);
+                    drawn[0]++;
+                } catch (ParseException e) {
+                    // geometry rusak → lewati
+                }
+            }
+            return null;
+        }));
+        return drawn[0];
+    }
 
-        // Draw outline
-        g2d.setColor(new Color(21, 71, 52)); // #154734
-        g2d.drawPolygon(xPoints, yPoints, coords.length);
-        g2d.setColor(new Color(163, 217, 165, 102)); // Reset fill color
+    /**
+     * SQL WMS untuk satu layer (dipakai {@link LayerRegistry} saat membangun snapshot).
+     * Kolom 3857 pra-proyeksi → filter bbox memakai index GIST.
+     * Hanya properti yang direferensikan style yang diambil dari props.
+     * Parameter: minX, minY, maxX, maxY (EPSG:3857).
+     */
+    static String buildWmsSql(String qualified, String geom3857Col, List<String> styleFields) {
+        StringBuilder props = new StringBuilder();
+        for (String f : styleFields) {
+            props.append(", t.props->>'").append(f.replace("'", "''")).append('\'');
+        }
+        return """
+                SELECT ST_AsBinary(t.%s) AS wkb%s
+                FROM %s t
+                WHERE ST_Intersects(
+                    t.%s,
+                    ST_MakeEnvelope(?, ?, ?, ?, 3857)
+                )
+                """.formatted(geom3857Col, props, qualified, geom3857Col);
     }
 
     // --- Helpers ---
@@ -197,29 +927,4 @@ public class WmsRasterService {
             return null;
         }
     }
-
-    private byte[] emptyPng(int width, int height) {
-        try {
-            BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = img.createGraphics();
-            g2d.setComposite(java.awt.AlphaComposite.Clear);
-            g2d.fillRect(0, 0, width, height);
-            g2d.dispose();
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(img, "PNG", baos);
-            return baos.toByteArray();
-        } catch (Exception e) {
-            return new byte[0];
-        }
-    }
-
-    private String safeIdent(String ident) {
-        return ident.replaceAll("[^A-Za-z0-9_]", "_");
-    }
-
-    private boolean isBlank(String s) {
-        return s == null || s.trim().isEmpty();
-    }
 }
-
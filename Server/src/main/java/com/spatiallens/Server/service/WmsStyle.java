@@ -0,0 +1,298 @@
+package com.spatiallens.Server.service;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Style layer (JSON dari LayerStyleService) yang sudah dikompilasi untuk render WMS.
+ * - Format datar milik kita: fillColor, lineColor, fillOpacity, lineOpacity, lineWidth,
+ *   circleRadius, fillExpression/lineExpression (menimpa warna bila ada).
+ * - Style Mapbox GL (punya "layers"): paint fill-*, line-*, circle-* diambil dari layer
+ *   pertama tiap tipe.
+ * - Ekspresi yang didukung: literal dan ["match", ["get", field], label, nilai, ..., fallback];
+ *   lainnya → nilai default properti itu.
+ * - Dikompilasi sekali per style (snapshot registry); per fitur hanya lookup map.
+ * - Hanya properti yang direferensikan style yang di-SELECT ({@link #fields()}).
+ */
+public final class WmsStyle {
+
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    /** Default style tersimpan (sama dengan LayerStyleService). */
+    private static final int STYLE_COLOR = 0xFF690000;
+    private static final double STYLE_FILL_OPACITY = 0.6;
+    private static final double STYLE_LINE_WIDTH = 1.0;
+    private static final double CIRCLE_RADIUS = 3.0;
+
+    /** Tampilan WMS tanpa style tersimpan (hijau transparan + garis hijau tua). */
+    public static final WmsStyle DEFAULT = new WmsStyle("0", List.of(),
+            Rule.of(0x66A3D9A5), Rule.of(1.0), Rule.of(0xFF154734), Rule.of(1.0), Rule.of(1.5),
+            Rule.of(0x66A3D9A5), Rule.of(CIRCLE_RADIUS));
+
+    private final String signature;
+    private final List<String> fields;
+    private final Rule fillColor;
+    private final Rule fillOpacity;
+    private final Rule lineColor;
+    private final Rule lineOpacity;
+    private final Rule lineWidth;
+    private final Rule circleColor;
+    private final Rule circleRadius;
+
+    // kombinasi warna/lebar terbatas (kategori match) → objek AWT dipakai ulang antar fitur
+    private final Map<Integer, Color> colors = new ConcurrentHashMap<>();
+    private final Map<Float, BasicStroke> strokes = new ConcurrentHashMap<>();
+
+    private WmsStyle(String signature, List<String> fields, Rule fillColor, Rule fillOpacity, Rule lineColor,
+            Rule lineOpacity, Rule lineWidth, Rule circleColor, Rule circleRadius) {
+        this.signature = signature;
+        this.fields = fields;
+        this.fillColor = fillColor;
+        this.fillOpacity = fillOpacity;
+        this.lineColor = lineColor;
+        this.lineOpacity = lineOpacity;
+        this.lineWidth = lineWidth;
+        this.circleColor = circleColor;
+        this.circleRadius = circleRadius;
+    }
+
+    /** Kompilasi style JSON; null/kosong → {@link #DEFAULT}, JSON rusak → default style tersimpan. */
+    public static WmsStyle compile(String styleJson) {
+        if (styleJson == null || styleJson.isBlank())
+            return DEFAULT;
+        JsonNode root;
+        try {
+            root = OM.readTree(styleJson);
+        } catch (Exception e) {
+            root = null;
+        }
+        String sig = Integer.toHexString(styleJson.hashCode());
+        Compiler c = new Compiler();
+        if (root == null || !root.isObject())
+            return c.build(sig, null, null, null, null, null, null, null);
+
+        if (root.path("layers").isArray()) {
+            JsonNode fill = firstPaint(root, "fill");
+            JsonNode line = firstPaint(root, "line");
+            JsonNode circle = firstPaint(root, "circle");
+            JsonNode outline = (line != null) ? line.get("line-color")
+                    : (fill != null) ? fill.get("fill-outline-color") : null;
+            return c.build(sig,
+                    get(fill, "fill-color"), get(fill, "fill-opacity"),
+                    outline, get(line, "line-opacity"), get(line, "line-width"),
+                    get(circle, "circle-color"), get(circle, "circle-radius"));
+        }
+
+        JsonNode fillColor = root.hasNonNull("fillExpression") ? root.get("fillExpression") : root.get("fillColor");
+        JsonNode lineColor = root.hasNonNull("lineExpression") ? root.get("lineExpression") : root.get("lineColor");
+        return c.build(sig, fillColor, root.get("fillOpacity"), lineColor, root.get("lineOpacity"),
+                root.get("lineWidth"), null, root.get("circleRadius"));
+    }
+
+    /** Identitas style untuk ETag/kunci render WMS ("0" = default). */
+    public String signature() {
+        return signature;
+    }
+
+    /** Nama properti (props->>field) yang dibutuhkan, sesuai urutan kolom SELECT. */
+    public List<String> fields() {
+        return fields;
+    }
+
+    /** Warna isi poligon; vals sejajar {@link #fields()}. */
+    public Color fill(String[] vals) {
+        return color(fillColor.eval(vals), fillOpacity.eval(vals));
+    }
+
+    public Color line(String[] vals) {
+        return color(lineColor.eval(vals), lineOpacity.eval(vals));
+    }
+
+    public Color circle(String[] vals) {
+        return color(circleColor.eval(vals), fillOpacity.eval(vals));
+    }
+
+    public float circleRadius(String[] vals) {
+        return (float) ((Double) circleRadius.eval(vals)).doubleValue();
+    }
+
+    /** Jangkauan simbol terbesar di luar geometry (pixel): max(setengah lebar garis, radius titik). */
+    public double maxSymbolPx() {
+        return Math.max(lineWidth.max() / 2, circleRadius.max());
+    }
+
+    public BasicStroke stroke(String[] vals) {
+        float w = (float) ((Double) lineWidth.eval(vals)).doubleValue();
+        return strokes.computeIfAbsent(w, k -> new BasicStroke(k, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+    }
+
+    private Color color(Object argb, Object opacity) {
+        int c = (Integer) argb;
+        double o = Math.max(0, Math.min(1, (Double) opacity));
+        int a = (int) Math.round(((c >>> 24) & 0xFF) * o);
+        return colors.computeIfAbsent((a << 24) | (c & 0xFFFFFF), k -> new Color(k, true));
+    }
+
+    private static JsonNode firstPaint(JsonNode root, String type) {
+        for (JsonNode l : root.get("layers")) {
+            if (type.equals(l.path("type").asText()) && l.path("paint").isObject())
+                return l.get("paint");
+        }
+        return null;
+    }
+
+    private static JsonNode get(JsonNode n, String key) {
+        return (n != null) ? n.get(key) : null;
+    }
+
+    // ------------------------------------------------------------
+    // Kompilasi ekspresi
+    // ------------------------------------------------------------
+
+    /** Literal (field < 0) atau lookup match: props[field] → nilai, selain itu fallback. */
+    private record Rule(Object constant, int field, Map<String, Object> cases, Object fallback) {
+
+        static Rule of(Object constant) {
+            return new Rule(constant, -1, Map.of(), constant);
+        }
+
+        Object eval(String[] vals) {
+            if (field < 0)
+                return constant;
+            String v = vals[field];
+            Object out = (v != null) ? cases.get(v) : null;
+            return (out != null) ? out : fallback;
+        }
+
+        /** Nilai numerik terbesar yang bisa dihasilkan rule (0 bila bukan angka). */
+        double max() {
+            double m = (fallback instanceof Double d) ? d : 0;
+            for (Object o : cases.values()) {
+                if (o instanceof Double d)
+                    m = Math.max(m, d);
+            }
+            return m;
+        }
+    }
+
+    private static final class Compiler {
+        private final List<String> fields = new ArrayList<>();
+
+        WmsStyle build(String sig, JsonNode fillColor, JsonNode fillOpacity, JsonNode lineColor,
+                JsonNode lineOpacity, JsonNode lineWidth, JsonNode circleColor, JsonNode circleRadius) {
+            Rule fill = rule(fillColor, true, STYLE_COLOR);
+            Rule line = (lineColor != null) ? rule(lineColor, true, STYLE_COLOR) : fill;
+            return new WmsStyle(sig, List.copyOf(fields),
+                    fill,
+                    rule(fillOpacity, false, STYLE_FILL_OPACITY),
+                    line,
+                    rule(lineOpacity, false, 1.0),
+                    rule(lineWidth, false, STYLE_LINE_WIDTH),
+                    (circleColor != null) ? rule(circleColor, true, STYLE_COLOR) : fill,
+                    rule(circleRadius, false, CIRCLE_RADIUS));
+        }
+
+        private Rule rule(JsonNode n, boolean color, Object def) {
+            if (n == null || n.isNull())
+                return Rule.of(def);
+            if (n.isArray() && n.size() >= 4 && "match".equals(n.get(0).asText())) {
+                JsonNode input = n.get(1);
+                if (input.isArray() && input.size() == 2 && "get".equals(input.get(0).asText())) {
+                    Object fallback = orDefault(literal(n.get(n.size() - 1), color), def);
+                    Map<String, Object> cases = new HashMap<>();
+                    for (int i = 2; i + 1 < n.size() - 1; i += 2) {
+                        Object out = literal(n.get(i + 1), color);
+                        if (out == null)
+                            continue;
+                        JsonNode label = n.get(i);
+                        if (label.isArray()) {
+                            for (JsonNode l : label)
+                                cases.putIfAbsent(labelText(l), out);
+                        } else {
+                            cases.putIfAbsent(labelText(label), out);
+                        }
+                    }
+                    return new Rule(fallback, field(input.get(1).asText()), Map.copyOf(cases), fallback);
+                }
+            }
+            return Rule.of(orDefault(literal(n, color), def));
+        }
+
+        private int field(String name) {
+            int i = fields.indexOf(name);
+            if (i >= 0)
+                return i;
+            fields.add(name);
+            return fields.size() - 1;
+        }
+    }
+
+    private static Object orDefault(Object v, Object def) {
+        return (v != null) ? v : def;
+    }
+
+    /** Label match dibandingkan dengan teks props->>field (angka bulat tanpa ".0"). */
+    private static String labelText(JsonNode l) {
+        if (l.isNumber() && l.asDouble() == Math.rint(l.asDouble()))
+            return Long.toString(l.asLong());
+        return l.asText();
+    }
+
+    private static Object literal(JsonNode n, boolean color) {
+        if (n == null || n.isNull() || n.isContainerNode())
+            return null;
+        if (color)
+            return n.isTextual() ? parseColor(n.asText()) : null;
+        if (n.isNumber())
+            return n.asDouble();
+        try {
+            return Double.parseDouble(n.asText().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** #RGB, #RRGGBB, #RRGGBBAA, rgb(...), rgba(...) → ARGB; tidak dikenal → null. */
+    static Integer parseColor(String s) {
+        if (s == null)
+            return null;
+        String c = s.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (c.startsWith("#")) {
+                String h = c.substring(1);
+                if (h.length() == 3) {
+                    h = "" + h.charAt(0) + h.charAt(0) + h.charAt(1) + h.charAt(1) + h.charAt(2) + h.charAt(2);
+                }
+                if (h.length() == 6)
+                    return 0xFF000000 | Integer.parseInt(h, 16);
+                if (h.length() == 8)
+                    return (int) ((Long.parseLong(h.substring(6), 16) << 24) | Long.parseLong(h.substring(0, 6), 16));
+                return null;
+            }
+            if (c.startsWith("rgb")) {
+                String[] p = c.substring(c.indexOf('(') + 1, c.lastIndexOf(')')).split(",");
+                if (p.length < 3)
+                    return null;
+                int a = (p.length > 3) ? (int) Math.round(Math.max(0, Math.min(1, Double.parseDouble(p[3].trim()))) * 255)
+                        : 255;
+                return (a << 24) | (channel(p[0]) << 16) | (channel(p[1]) << 8) | channel(p[2]);
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static int channel(String v) {
+        return Math.max(0, Math.min(255, (int) Math.round(Double.parseDouble(v.trim()))));
+    }
+}
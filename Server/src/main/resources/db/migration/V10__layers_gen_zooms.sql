@@ -0,0 +1,4 @@
+-- Daftar zoom band tabel generalisasi per layer (mis. "5,8,11").
+-- Tabel varian: <schema>.<table>_g<z>, dipakai tile untuk zoom <= z.
+ALTER TABLE layers
+    ADD COLUMN IF NOT EXISTS gen_zooms TEXT;
@@ -0,0 +1,6 @@
+-- Mode clustering titik (opt-in) per layer.
+-- cluster_max_zoom: tile z <= nilai ini berisi centroid cluster + jumlah titik (NULL = nonaktif).
+-- cluster_props   : daftar key props numerik yang dijumlahkan per cluster (JSON array / koma).
+ALTER TABLE layers
+    ADD COLUMN IF NOT EXISTS cluster_max_zoom INTEGER,
+    ADD COLUMN IF NOT EXISTS cluster_props TEXT;
@@ -0,0 +1,11 @@
+-- Coverage index per layer: tile berisi data pada zoom dasar (tiles.coverage.zoom)
+-- beserta jumlah fitur yang bbox-nya menyentuh tile. Dihitung saat import,
+-- dimuat ke memory oleh LayerRegistry untuk menjawab tile kosong tanpa query.
+CREATE TABLE IF NOT EXISTS layer_tile_coverage (
+    layer_slug    TEXT     NOT NULL,
+    z             SMALLINT NOT NULL,
+    x             INTEGER  NOT NULL,
+    y             INTEGER  NOT NULL,
+    feature_count INTEGER  NOT NULL,
+    PRIMARY KEY (layer_slug, z, x, y)
+);
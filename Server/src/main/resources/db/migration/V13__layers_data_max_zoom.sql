@@ -0,0 +1,4 @@
+-- Zoom tertinggi yang dirender dari PostGIS (dihitung saat import dari densitas/detail data).
+-- Tile di atasnya dibuat dari tile parent di cache (overzoom), tanpa query. NULL = nonaktif.
+ALTER TABLE layers
+    ADD COLUMN IF NOT EXISTS data_max_zoom INTEGER;
@@ -0,0 +1,5 @@
+-- Revisi data per layer: naik setiap edit fitur (API feature CRUD).
+-- Cache tile tetap berkunci cache_version (tetap hangat); revisi hanya ikut ETag/Last-Modified
+-- agar klien merevalidasi, sedangkan tile yang terdampak di-invalidasi per area.
+ALTER TABLE layers
+    ADD COLUMN IF NOT EXISTS data_revision BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,30 @@
+-- Kolom geom_3857 (V9) memakai ST_Transform(geom, 3857) langsung: geometri di luar
+-- batas Web Mercator (lintang > 85.0511, mis. Antartika) membuat INSERT/UPDATE error.
+-- Definisikan ulang dengan clip ke envelope Web Mercator sebelum transform.
+-- Kolom GENERATED tidak bisa diubah ekspresinya → drop (index ikut terhapus) lalu tambah lagi.
+DO $$
+DECLARE
+  r RECORD;
+BEGIN
+  FOR r IN
+    SELECT l.schema_name, l.table_name, l.geom_column
+    FROM layers l
+    WHERE l.table_name IS NOT NULL
+      AND EXISTS (
+        SELECT 1 FROM information_schema.columns c
+        WHERE c.table_schema = l.schema_name AND c.table_name = l.table_name
+          AND c.column_name = l.geom_column || '_3857'
+      )
+  LOOP
+    EXECUTE format('ALTER TABLE %I.%I DROP COLUMN %I',
+      r.schema_name, r.table_name, r.geom_column || '_3857');
+    EXECUTE format(
+      'ALTER TABLE %I.%I ADD COLUMN %I geometry(Geometry,3857) GENERATED ALWAYS AS '
+      '(ST_Transform(ST_ClipByBox2D(%I, ST_MakeEnvelope(-180, -85.0511, 180, 85.0511, 4326)), 3857)) STORED',
+      r.schema_name, r.table_name, r.geom_column || '_3857', r.geom_column);
+    EXECUTE format(
+      'CREATE INDEX IF NOT EXISTS %I ON %I.%I USING GIST (%I)',
+      r.table_name || '_' || r.geom_column || '_3857_gix', r.schema_name, r.table_name, r.geom_column || '_3857');
+    EXECUTE format('ANALYZE %I.%I', r.schema_name, r.table_name);
+  END LOOP;
+END$$;
@@ -0,0 +1,4 @@
+-- Versi cache per layer: naik setiap data/status layer berubah,
+-- dipakai sebagai bagian kunci tile cache (memory + disk).
+ALTER TABLE layers
+    ADD COLUMN IF NOT EXISTS cache_version BIGINT NOT NULL DEFAULT 1;
@@ -0,0 +1,26 @@
+-- Kolom geometri pra-proyeksi EPSG:3857 untuk semua tabel fitur yang sudah terdaftar.
+-- Tile (ST_TileEnvelope) & WMS bekerja di 3857; dengan kolom ini filter bbox
+-- bisa memakai index GIST tanpa ST_Transform per baris.
+-- Kolom GENERATED → otomatis terisi saat INSERT/UPDATE geom berikutnya.
+DO $$
+DECLARE
+  r RECORD;
+BEGIN
+  FOR r IN
+    SELECT l.schema_name, l.table_name, l.geom_column
+    FROM layers l
+    WHERE l.table_name IS NOT NULL
+      AND EXISTS (
+        SELECT 1 FROM information_schema.tables t
+        WHERE t.table_schema = l.schema_name AND t.table_name = l.table_name
+      )
+  LOOP
+    EXECUTE format(
+      'ALTER TABLE %I.%I ADD COLUMN IF NOT EXISTS %I geometry(Geometry,3857) GENERATED ALWAYS AS (ST_Transform(%I, 3857)) STORED',
+      r.schema_name, r.table_name, r.geom_column || '_3857', r.geom_column);
+    EXECUTE format(
+      'CREATE INDEX IF NOT EXISTS %I ON %I.%I USING GIST (%I)',
+      r.table_name || '_' || r.geom_column || '_3857_gix', r.schema_name, r.table_name, r.geom_column || '_3857');
+    EXECUTE format('ANALYZE %I.%I', r.schema_name, r.table_name);
+  END LOOP;
+END$$;
@@ -0,0 +1,51 @@
+package com.spatiallens.Server.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import com.spatiallens.Server.service.LayerRegistry.Validator;
+
+class ConditionalRequestsTests {
+
+	private static final Validator V = new Validator("\"mvt-a\"", 1_700_000_000_000L, true);
+
+	@Test
+	void matchingEtagIsNotModified() {
+		HttpHeaders req = new HttpHeaders();
+		req.setIfNoneMatch("\"other\", W/\"mvt-a\"");
+		assertTrue(ConditionalRequests.notModified(req, V));
+
+		req.setIfNoneMatch("\"mvt-b\"");
+		assertFalse(ConditionalRequests.notModified(req, V));
+	}
+
+	@Test
+	void ifNoneMatchTakesPrecedenceOverIfModifiedSince() {
+		HttpHeaders req = new HttpHeaders();
+		req.setIfNoneMatch("\"mvt-b\"");
+		req.setIfModifiedSince(V.lastModified() + 60_000L);
+		assertFalse(ConditionalRequests.notModified(req, V));
+
+		HttpHeaders dateOnly = new HttpHeaders();
+		dateOnly.setIfModifiedSince(V.lastModified());
+		assertTrue(ConditionalRequests.notModified(dateOnly, V));
+		dateOnly.setIfModifiedSince(V.lastModified() - 1_000L);
+		assertFalse(ConditionalRequests.notModified(dateOnly, V));
+	}
+
+	@Test
+	void missingValidatorAlwaysServesFullResponse() {
+		HttpHeaders req = new HttpHeaders();
+		req.setIfNoneMatch("*");
+		assertFalse(ConditionalRequests.notModified(req, null));
+
+		HttpHeaders res = new HttpHeaders();
+		ConditionalRequests.apply(res, V);
+		assertEquals("\"mvt-a\"", res.getETag());
+		assertEquals(V.lastModified(), res.getLastModified());
+	}
+}
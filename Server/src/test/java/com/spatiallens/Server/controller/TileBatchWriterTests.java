@@ -0,0 +1,46 @@
+package com.spatiallens.Server.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class TileBatchWriterTests {
+
+	@Test
+	void writesHeaderThenSelfDescribingFrames() throws Exception {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		TileBatchWriter writer = new TileBatchWriter(buf);
+		writer.frame(14, 13062, 8120, TileBatchWriter.STATUS_DATA,
+				TileBatchWriter.FLAG_GZIP | TileBatchWriter.FLAG_PUBLIC, new byte[] { 1, 2, 3 });
+		writer.frame(3, 1, 2, TileBatchWriter.STATUS_EMPTY, 0, null);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.toByteArray()));
+		byte[] magic = new byte[4];
+		in.readFully(magic);
+		assertArrayEquals(TileBatchWriter.MAGIC, magic);
+		assertEquals(TileBatchWriter.VERSION, in.readUnsignedByte());
+
+		assertEquals(14, in.readUnsignedByte());
+		assertEquals(13062, in.readInt());
+		assertEquals(8120, in.readInt());
+		assertEquals(TileBatchWriter.STATUS_DATA, in.readUnsignedByte());
+		assertEquals(3, in.readUnsignedByte());
+		assertEquals(3, in.readInt());
+		byte[] body = new byte[3];
+		in.readFully(body);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, body);
+
+		assertEquals(3, in.readUnsignedByte());
+		assertEquals(1, in.readInt());
+		assertEquals(2, in.readInt());
+		assertEquals(TileBatchWriter.STATUS_EMPTY, in.readUnsignedByte());
+		assertEquals(0, in.readUnsignedByte());
+		assertEquals(0, in.readInt());
+		assertEquals(-1, in.read());
+	}
+}
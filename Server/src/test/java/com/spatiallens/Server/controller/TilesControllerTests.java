@@ -0,0 +1,114 @@
+package com.spatiallens.Server.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.spatiallens.Server.model.LayerMeta;
+import com.spatiallens.Server.repository.LayerMetaRepository;
+import com.spatiallens.Server.repository.LayerStyleRepository;
+import com.spatiallens.Server.service.LayerRegistry;
+import com.spatiallens.Server.service.MvtTileService;
+import com.spatiallens.Server.service.MvtTileService.TileResult;
+import com.spatiallens.Server.service.RasterFormat;
+import com.spatiallens.Server.service.TileCompression;
+import com.spatiallens.Server.service.WmsRasterService;
+import com.spatiallens.Server.service.WmsRasterService.WmsResult;
+
+class TilesControllerTests {
+
+	@Test
+	void editedTileGetsNewEtagAndIsRevalidatedNotImmutable() {
+		LayerMeta meta = publishedLayer();
+		LayerRegistry registry = registryOf(meta);
+
+		MvtTileService tiles = mock(MvtTileService.class);
+		when(tiles.getTile(eq("roads"), anyInt(), anyInt(), anyInt(), anyBoolean()))
+				.thenReturn(new TileResult(TileCompression.gzip(new byte[] { 1, 2, 3 }), false, true));
+		TilesController controller = new TilesController(tiles, mock(WmsRasterService.class), registry, 128);
+
+		ResponseEntity<byte[]> before = controller.getTile("roads", 5, 10, 12, "pbf", new HttpHeaders());
+		assertEquals(HttpStatus.OK, before.getStatusCode());
+		String etag = before.getHeaders().getETag();
+		assertRevalidated(before.getHeaders());
+
+		HttpHeaders revalidate = new HttpHeaders();
+		revalidate.setIfNoneMatch(etag);
+		assertEquals(HttpStatus.NOT_MODIFIED,
+				controller.getTile("roads", 5, 10, 12, "pbf", revalidate).getStatusCode());
+
+		// edit fitur: data_revision naik, cache_version tetap (FeatureEditService → refreshAfterEdit)
+		meta.setDataRevision(1L);
+		registry.refreshAfterEdit("roads", null, null);
+
+		ResponseEntity<byte[]> after = controller.getTile("roads", 5, 10, 12, "pbf", revalidate);
+		assertEquals(HttpStatus.OK, after.getStatusCode());
+		assertNotEquals(etag, after.getHeaders().getETag());
+		assertRevalidated(after.getHeaders());
+	}
+
+	@Test
+	void failedRenderIsNotStoredAndCarriesNoValidator() {
+		MvtTileService tiles = mock(MvtTileService.class);
+		when(tiles.getTile(eq("roads"), anyInt(), anyInt(), anyInt(), anyBoolean()))
+				.thenReturn(new TileResult(TileCompression.gzip(new byte[0]), true, true, true));
+		TilesController controller = new TilesController(tiles, mock(WmsRasterService.class),
+				registryOf(publishedLayer()), 128);
+
+		ResponseEntity<byte[]> res = controller.getTile("roads", 5, 10, 12, "pbf", new HttpHeaders());
+		assertEquals(HttpStatus.NO_CONTENT, res.getStatusCode());
+		assertEquals("no-store", res.getHeaders().getCacheControl());
+		assertNull(res.getHeaders().getETag());
+		assertEquals(-1, res.getHeaders().getLastModified());
+	}
+
+	@Test
+	void pngRasterUrlIgnoresAcceptAndDoesNotVary() {
+		WmsRasterService raster = mock(WmsRasterService.class);
+		when(raster.getRasterTile(eq("roads"), anyInt(), anyInt(), anyInt(), anyBoolean(), eq(RasterFormat.PNG)))
+				.thenReturn(new WmsResult(new byte[] { 1 }, false, true));
+		TilesController controller = new TilesController(mock(MvtTileService.class), raster,
+				registryOf(publishedLayer()), 128);
+
+		HttpHeaders accept = new HttpHeaders();
+		accept.set(HttpHeaders.ACCEPT, "image/webp,image/jpeg;q=0.8");
+		ResponseEntity<byte[]> res = controller.getRasterTile("roads", 5, 10, 12, "png", accept);
+		assertEquals(HttpStatus.OK, res.getStatusCode());
+		assertEquals("image/png", res.getHeaders().getContentType().toString());
+		assertTrue(res.getHeaders().getVary().isEmpty());
+	}
+
+	private static LayerMeta publishedLayer() {
+		return LayerMeta.builder().slug("roads").name("Roads").status("Published")
+				.visibility("public").schemaName("public").geomColumn("geom").cacheVersion(3L).build();
+	}
+
+	private static LayerRegistry registryOf(LayerMeta meta) {
+		LayerMetaRepository metaRepo = mock(LayerMetaRepository.class);
+		when(metaRepo.findAll()).thenReturn(List.of(meta));
+		when(metaRepo.findBySlug(meta.getSlug())).thenReturn(Optional.of(meta));
+		return new LayerRegistry(metaRepo, mock(LayerStyleRepository.class), new JdbcTemplate(), 0, 64);
+	}
+
+	private static void assertRevalidated(HttpHeaders h) {
+		String cc = h.getCacheControl();
+		assertFalse(cc.contains("immutable"), cc);
+		assertTrue(cc.contains("must-revalidate"), cc);
+	}
+}
@@ -0,0 +1,78 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.spatiallens.Server.service.DbAdmission.Workload;
+
+class DbAdmissionTests {
+
+	@Test
+	void permitsAreReleasedEvenWhenWorkFails() throws Exception {
+		DbAdmission admission = new DbAdmission(2, 100, 1, 1, 100, 30);
+
+		assertEquals("ok", admission.run(Workload.INTERACTIVE, () -> "ok"));
+		assertThrows(IllegalStateException.class, () -> admission.run(Workload.INTERACTIVE, () -> {
+			throw new IllegalStateException("query gagal");
+		}));
+		assertThrows(IOException.class, () -> admission.call(Workload.BULK, () -> {
+			throw new IOException("file rusak");
+		}));
+
+		assertEquals(2, admission.available(Workload.INTERACTIVE));
+		assertEquals(1, admission.available(Workload.BULK));
+	}
+
+	@Test
+	void saturatedBudgetTimesOutWithRetryAfterAndLeavesOtherBudgetFree() throws Exception {
+		DbAdmission admission = new DbAdmission(2, 100, 1, 1, 50, 30);
+		CountDownLatch holding = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			// export panjang memegang satu-satunya permit BULK
+			Future<String> export = pool.submit(() -> admission.run(Workload.BULK, () -> {
+				holding.countDown();
+				await(release);
+				return "export";
+			}));
+			assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+			long start = System.nanoTime();
+			DbBusyException busy = assertThrows(DbBusyException.class,
+					() -> admission.run(Workload.BULK, () -> "import"));
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 40);
+			assertEquals(Workload.BULK, busy.getWorkload());
+			assertEquals(30, busy.getRetryAfterSeconds());
+
+			// tile tetap jalan: budget INTERACTIVE terpisah
+			assertEquals("tile", admission.run(Workload.INTERACTIVE, () -> "tile"));
+
+			release.countDown();
+			assertEquals("export", export.get(5, TimeUnit.SECONDS));
+			assertEquals(1, admission.available(Workload.BULK));
+		} finally {
+			release.countDown();
+			pool.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class FeatureEditServiceTests {
+
+	@Test
+	void propertyKeysAreUppercasedLikeImportAndNewKeysCollected() {
+		Map<String, Object> props = new LinkedHashMap<>();
+		props.put("name", "Jl. Merdeka");
+		props.put(" Lebar ", 7);
+		props.put("kelas_jalan", "arteri");
+		Set<String> added = new LinkedHashSet<>();
+
+		Map<String, Object> out = FeatureEditService.normalizeProps(props, Set.of("NAME", "LEBAR"), added);
+
+		assertEquals(List.of("NAME", "LEBAR", "KELAS_JALAN"), List.copyOf(out.keySet()));
+		assertEquals("Jl. Merdeka", out.get("NAME"));
+		assertEquals(Set.of("KELAS_JALAN"), added);
+	}
+
+	@Test
+	void unsafeOrCollidingKeysAreRejected() {
+		Map<String, Object> quoted = Map.of("a\" AS x", 1);
+		assertThrows(IllegalArgumentException.class,
+				() -> FeatureEditService.normalizeProps(quoted, Set.of(), new LinkedHashSet<>()));
+
+		Map<String, Object> twice = new LinkedHashMap<>();
+		twice.put("name", "a");
+		twice.put("NAME", "b");
+		assertThrows(IllegalArgumentException.class,
+				() -> FeatureEditService.normalizeProps(twice, Set.of("NAME"), new LinkedHashSet<>()));
+	}
+}
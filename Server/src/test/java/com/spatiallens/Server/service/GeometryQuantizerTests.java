@@ -0,0 +1,31 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+
+class GeometryQuantizerTests {
+
+	private final WKTReader wkt = new WKTReader();
+
+	@Test
+	void snapsToGridAndDropsRepeatedPoints() throws Exception {
+		Geometry line = wkt.read("LINESTRING (106.123456789 -6.2000000001, 106.12345681 -6.20000000002, 106.2 -6.3)");
+
+		Geometry out = new GeometryQuantizer(6).apply(line);
+
+		assertEquals(2, out.getNumPoints());
+		assertEquals(106.123457, out.getCoordinates()[0].x, 1e-12);
+		assertEquals(-6.2, out.getCoordinates()[0].y, 1e-12);
+	}
+
+	@Test
+	void collapsedGeometryBecomesNull() throws Exception {
+		Geometry sliver = wkt.read("POLYGON ((106 -6, 106.0000001 -6, 106.0000001 -6.0000001, 106 -6))");
+
+		assertNull(new GeometryQuantizer(5).apply(sliver));
+	}
+}
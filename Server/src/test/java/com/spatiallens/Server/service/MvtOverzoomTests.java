@@ -0,0 +1,66 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MvtOverzoomTests {
+
+	private static final byte[] KEY = "name".getBytes(StandardCharsets.UTF_8);
+	// Value { string_value = "a" }
+	private static final byte[] VALUE = { 0x0A, 0x01, 'a' };
+
+	@Test
+	void pointsAreScaledIntoChildAndFilteredByBuffer() {
+		// titik (1000,1000) di kuadran kiri-atas, (3000,3000) di kanan-bawah
+		int[] geom = { 1 | (2 << 3), zz(1000), zz(1000), zz(2000), zz(2000) };
+		byte[] parent = tile(new MvtOverzoom.Feature(7L, new int[] { 0, 0 }, MvtOverzoom.POINT, geom));
+
+		List<MvtOverzoom.Layer> child = MvtOverzoom.decode(MvtOverzoom.overzoom(parent, 1, 0, 0));
+
+		assertEquals(1, child.size());
+		MvtOverzoom.Layer layer = child.get(0);
+		assertEquals("demo", layer.name());
+		assertArrayEquals(KEY, layer.keys().get(0));
+		assertArrayEquals(VALUE, layer.values().get(0));
+		MvtOverzoom.Feature f = layer.features().get(0);
+		assertEquals(7L, f.id());
+		assertArrayEquals(new int[] { 1 | (1 << 3), zz(2000), zz(2000) }, f.geometry());
+	}
+
+	@Test
+	void linesAreClippedToChildExtentPlusBuffer() {
+		// garis horizontal y=1000 dari x=0 ke x=4000 → anak kiri-atas: 0..8000 dipotong di 4160
+		int[] geom = { 1 | (1 << 3), zz(0), zz(1000), 2 | (1 << 3), zz(4000), zz(0) };
+		byte[] parent = tile(new MvtOverzoom.Feature(null, new int[0], MvtOverzoom.LINESTRING, geom));
+
+		MvtOverzoom.Feature f = MvtOverzoom.decode(MvtOverzoom.overzoom(parent, 1, 0, 0)).get(0).features().get(0);
+
+		assertArrayEquals(new int[] { 1 | (1 << 3), zz(0), zz(2000), 2 | (1 << 3), zz(4160), zz(0) }, f.geometry());
+	}
+
+	@Test
+	void polygonOutsideChildIsDroppedAndEmptyTileStaysEmpty() {
+		// persegi di kuadran kanan-bawah parent → anak kiri-atas kosong
+		int[] geom = { 1 | (1 << 3), zz(3000), zz(3000), 2 | (3 << 3), zz(500), zz(0), zz(0), zz(500), zz(-500), zz(0),
+				15 };
+		byte[] parent = tile(new MvtOverzoom.Feature(null, new int[0], MvtOverzoom.POLYGON, geom));
+
+		assertEquals(0, MvtOverzoom.overzoom(parent, 1, 0, 0).length);
+		assertEquals(1, MvtOverzoom.decode(MvtOverzoom.overzoom(parent, 1, 1, 1)).get(0).features().size());
+		assertEquals(0, MvtOverzoom.overzoom(new byte[0], 2, 1, 1).length);
+	}
+
+	private static byte[] tile(MvtOverzoom.Feature feature) {
+		return MvtOverzoom.encode(List.of(new MvtOverzoom.Layer("demo", 2, 4096, List.of(feature),
+				List.of(KEY), List.of(VALUE))));
+	}
+
+	private static int zz(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+}
@@ -0,0 +1,80 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.io.WKTReader;
+
+class RasterCanvasTests {
+
+	private static final double[] BOUNDS = { 0, 0, 100, 100 };
+	private static final String[] NO_VALS = new String[0];
+
+	private final WKTReader wkt = new WKTReader();
+
+	@Test
+	void polygonHolesStayTransparent() throws Exception {
+		RasterBufferPool pool = new RasterBufferPool(1 << 20);
+		try (RasterCanvas canvas = new RasterCanvas(pool, BOUNDS, 100, 100, WmsStyle.DEFAULT)) {
+			canvas.draw(wkt.read("POLYGON ((10 10, 90 10, 90 90, 10 90, 10 10), (40 40, 60 40, 60 60, 40 60, 40 40))"),
+					NO_VALS);
+			BufferedImage img = canvas.image();
+			assertNotEquals(0, img.getRGB(20, 50) >>> 24);
+			assertEquals(0, img.getRGB(50, 50) >>> 24);
+		}
+	}
+
+	@Test
+	void vectorTileRingsDrawInTileSpaceWithHoles() {
+		RasterBufferPool pool = new RasterBufferPool(1 << 20);
+		try (RasterCanvas canvas = new RasterCanvas(pool, BOUNDS, 100, 100, WmsStyle.DEFAULT)) {
+			// koordinat MVT: y ke bawah; exterior di setengah atas tile, hole di tengahnya
+			List<double[]> rings = new ArrayList<>();
+			rings.add(new double[] { 400, 200, 3600, 200, 3600, 1800, 400, 1800 });
+			rings.add(new double[] { 1600, 800, 1600, 1200, 2400, 1200, 2400, 800 });
+			canvas.drawTile(MvtOverzoom.POLYGON, rings, 4096, NO_VALS);
+			BufferedImage img = canvas.image();
+			assertNotEquals(0, img.getRGB(20, 30) >>> 24);
+			assertEquals(0, img.getRGB(50, 25) >>> 24);
+			assertEquals(0, img.getRGB(20, 80) >>> 24);
+		}
+	}
+
+	@Test
+	void subPixelVerticesAreDecimatedAndOffscreenRunsTrimmed() throws Exception {
+		RasterBufferPool pool = new RasterBufferPool(1 << 20);
+		try (RasterCanvas canvas = new RasterCanvas(pool, BOUNDS, 100, 100, WmsStyle.DEFAULT)) {
+			// 1000 vertex dengan jarak 0.01 px, lalu 5 vertex jauh di kiri viewport
+			StringBuilder sb = new StringBuilder("LINESTRING (");
+			for (int i = 0; i < 1000; i++)
+				sb.append(10 + i * 0.01).append(" 50, ");
+			sb.append("-500 50, -600 60, -700 70, -800 80, -900 90, 50 20)");
+			canvas.draw(wkt.read(sb.toString()), NO_VALS);
+
+			int segments = 0;
+			for (PathIterator it = canvas.path().getPathIterator(null); !it.isDone(); it.next())
+				segments++;
+			assertTrue(segments < 40, "segments=" + segments);
+		}
+	}
+
+	@Test
+	void poolReusesReleasedImagesOfTheSameSize() {
+		RasterBufferPool pool = new RasterBufferPool(256 * 256 * 4);
+		BufferedImage a = pool.acquire(256, 256);
+		pool.release(a);
+		assertSame(a, pool.acquire(256, 256));
+
+		// melebihi budget → tidak disimpan
+		pool.release(new BufferedImage(512, 512, BufferedImage.TYPE_INT_ARGB));
+		assertEquals(0, pool.pooledBytes());
+	}
+}
@@ -0,0 +1,70 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+class RasterEncoderTests {
+
+	private final RasterEncoder encoder = new RasterEncoder(6, 0.85f, true);
+
+	@Test
+	void fewColoursBecomeLosslessPalettePng() throws Exception {
+		BufferedImage img = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = img.createGraphics();
+		g.setColor(new Color(0x66A3D9A5, true));
+		g.fillRect(8, 8, 32, 32);
+		g.dispose();
+
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoder.encode(img, RasterFormat.PNG)));
+
+		assertTrue(decoded.getColorModel() instanceof IndexColorModel);
+		assertEquals(img.getRGB(10, 10), decoded.getRGB(10, 10));
+		assertEquals(0, decoded.getRGB(50, 50) >>> 24);
+	}
+
+	@Test
+	void antialiasedImageIsQuantizedOnlyWhenEnabled() {
+		BufferedImage img = new BufferedImage(128, 128, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = img.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		for (int i = 0; i < 40; i++) {
+			g.setColor(new Color(i * 6, 255 - i * 6, (i * 37) & 0xFF, 120 + i));
+			g.fillOval(i * 3, (i * 7) % 100, 30, 20);
+		}
+		g.dispose();
+
+		assertNull(RasterEncoder.toIndexed(img, false));
+		BufferedImage q = RasterEncoder.toIndexed(img, true);
+		assertTrue(((IndexColorModel) q.getColorModel()).getMapSize() <= 256);
+		// isi (bukan tepi) tetap mendekati warna asli
+		int a = img.getRGB(64, 64), b = q.getRGB(64, 64);
+		for (int s = 0; s < 32; s += 8)
+			assertTrue(Math.abs(((a >>> s) & 0xFF) - ((b >>> s) & 0xFF)) <= 16);
+	}
+
+	@Test
+	void emptyImagesAreCachedAndFormatFollowsRequest() {
+		assertSame(encoder.empty(256, 256, RasterFormat.PNG), encoder.empty(256, 256, RasterFormat.PNG));
+
+		// WebP hanya bila ada writer ImageIO (JDK tanpa plugin: PNG)
+		RasterFormat browser = RasterFormat.WEBP.available() ? RasterFormat.WEBP : RasterFormat.PNG;
+		assertEquals(browser, RasterFormat.negotiate(null, "image/avif,image/webp,*/*"));
+		assertEquals(RasterFormat.JPEG, RasterFormat.negotiate(null, "image/jpeg"));
+		assertEquals(RasterFormat.PNG, RasterFormat.negotiate(null, "image/jpeg, image/png;q=0.5"));
+		assertEquals(RasterFormat.JPEG, RasterFormat.negotiate("image/jpeg", "image/png"));
+		assertEquals(RasterFormat.PNG, RasterFormat.negotiate("image/gif", null));
+	}
+}
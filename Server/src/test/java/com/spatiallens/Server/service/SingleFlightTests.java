@@ -0,0 +1,89 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTests {
+
+	@Test
+	void concurrentCallersShareOneComputation() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>(5000);
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			Future<Integer> leader = pool.submit(() -> flight.execute("k", () -> {
+				calls.incrementAndGet();
+				started.countDown();
+				await(release);
+				return 42;
+			}));
+			started.await(5, TimeUnit.SECONDS);
+
+			Future<Integer> w1 = pool.submit(() -> flight.execute("k", calls::incrementAndGet));
+			Future<Integer> w2 = pool.submit(() -> flight.execute("k", calls::incrementAndGet));
+			Thread.sleep(100);
+			release.countDown();
+
+			assertEquals(42, leader.get(5, TimeUnit.SECONDS));
+			assertEquals(42, w1.get(5, TimeUnit.SECONDS));
+			assertEquals(42, w2.get(5, TimeUnit.SECONDS));
+			assertEquals(1, calls.get());
+			assertEquals(0, flight.size());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void failureIsReleasedSoNextCallRecomputes() {
+		SingleFlight<String, Integer> flight = new SingleFlight<>(5000);
+		assertThrows(IllegalStateException.class, () -> flight.execute("k", () -> {
+			throw new IllegalStateException("db down");
+		}));
+		assertEquals(0, flight.size());
+		assertEquals(7, flight.execute("k", () -> 7));
+	}
+
+	@Test
+	void waiterTimesOutWithoutBlockingLeader() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>(50);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			Future<Integer> leader = pool.submit(() -> flight.execute("k", () -> {
+				started.countDown();
+				await(release);
+				return 1;
+			}));
+			started.await(5, TimeUnit.SECONDS);
+
+			assertThrows(IllegalStateException.class, () -> flight.execute("k", () -> 2));
+			release.countDown();
+			assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
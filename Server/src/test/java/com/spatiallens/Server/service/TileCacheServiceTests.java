@@ -0,0 +1,117 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.spatiallens.Server.service.TileCacheService.Scope;
+import com.spatiallens.Server.service.TileCacheService.TileKey;
+
+class TileCacheServiceTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void publicTilesSurviveRestartThroughDiskTier() {
+		TileKey key = new TileKey(Scope.PUBLIC, "jalan-prov", 7L, 10, 812, 530);
+		new TileCacheService(true, 1 << 20, 1 << 20, dir.toString()).put(key, new byte[] { 1, 2, 3 });
+
+		TileCacheService restarted = new TileCacheService(true, 1 << 20, 1 << 20, dir.toString());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, restarted.get(key));
+		assertNull(restarted.get(new TileKey(Scope.PUBLIC, "jalan-prov", 8L, 10, 812, 530)));
+	}
+
+	@Test
+	void restrictedTilesNeverReachDisk() {
+		TileKey key = new TileKey(Scope.RESTRICTED, "draft", 1L, 3, 1, 1);
+		new TileCacheService(true, 1 << 20, 1 << 20, dir.toString()).put(key, new byte[] { 9 });
+
+		TileCacheService restarted = new TileCacheService(true, 1 << 20, 1 << 20, dir.toString());
+		assertNull(restarted.get(key));
+		assertNull(restarted.get(new TileKey(Scope.PUBLIC, "draft", 1L, 3, 1, 1)));
+	}
+
+	@Test
+	void memoryTierEvictsLeastRecentlyUsed() {
+		TileCacheService cache = new TileCacheService(true, 1000, 0, dir.toString());
+		TileKey a = new TileKey(Scope.PUBLIC, "a", 1L, 0, 0, 0);
+		TileKey b = new TileKey(Scope.PUBLIC, "b", 1L, 0, 0, 0);
+		TileKey c = new TileKey(Scope.PUBLIC, "c", 1L, 0, 0, 0);
+		cache.put(a, new byte[300]);
+		cache.put(b, new byte[300]);
+		cache.get(a);
+		cache.put(c, new byte[300]);
+
+		assertNotNull(cache.get(a));
+		assertNull(cache.get(b));
+		assertNotNull(cache.get(c));
+	}
+
+	@Test
+	void invalidateLayerDropsMemoryAndDisk() {
+		TileCacheService cache = new TileCacheService(true, 1 << 20, 1 << 20, dir.toString());
+		TileKey key = new TileKey(Scope.PUBLIC, "batas-desa", 2L, 5, 3, 4);
+		cache.put(key, new byte[] { 4 });
+		cache.invalidateLayer("batas-desa");
+
+		assertNull(cache.get(key));
+		assertNull(new TileCacheService(true, 1 << 20, 1 << 20, dir.toString()).get(key));
+	}
+
+	@Test
+	void invalidateAreaDropsOnlyTouchedTilesAtEveryZoom() {
+		TileCacheService cache = new TileCacheService(true, 1 << 20, 1 << 20, dir.toString());
+		TileKey world = new TileKey(Scope.PUBLIC, "titik", 1L, 0, 0, 0);
+		TileKey nw = new TileKey(Scope.PUBLIC, "titik", 1L, 1, 0, 0);
+		TileKey se = new TileKey(Scope.PUBLIC, "titik", 1L, 1, 1, 1);
+		TileKey other = new TileKey(Scope.PUBLIC, "lain", 1L, 1, 0, 0);
+		for (TileKey k : List.of(world, nw, se, other))
+			cache.put(k, new byte[] { 1 });
+
+		// titik di kuadran barat laut, jauh dari tepi tile
+		double[] box = { -10_000_000, 10_000_000, -10_000_000, 10_000_000 };
+		assertEquals(4, cache.invalidateArea("titik", List.of(box), 0)); // 2 memory + 2 disk
+
+		TileCacheService restarted = new TileCacheService(true, 1 << 20, 1 << 20, dir.toString());
+		assertNull(restarted.get(world));
+		assertNull(restarted.get(nw));
+		assertNotNull(restarted.get(se));
+		assertNotNull(restarted.get(other));
+	}
+
+	@Test
+	void rasterFormatIsSeparateButSharesVersionAndAreaInvalidation() {
+		TileCacheService cache = new TileCacheService(true, 1 << 20, 1 << 20, dir.toString());
+		TileKey mvt = new TileKey(Scope.PUBLIC, "titik", 1L, 1, 0, 0);
+		TileKey png = new TileKey(Scope.PUBLIC, "titik", 1L, "png-abc", 1, 0, 0);
+		cache.put(mvt, new byte[] { 1 });
+		cache.put(png, new byte[] { 2 });
+
+		TileCacheService restarted = new TileCacheService(true, 1 << 20, 1 << 20, dir.toString());
+		assertArrayEquals(new byte[] { 2 }, restarted.get(png));
+		assertNull(restarted.get(new TileKey(Scope.PUBLIC, "titik", 1L, "png-def", 1, 0, 0)));
+
+		// edit di luar tile 1/0/0, 3% sisi tile dari tepi timurnya: lewat buffer MVT (64/4096)
+		// tapi masih dalam margin render raster + radius titik → hanya tile raster dibuang
+		double side = 20037508.342789244;
+		double nearEdge = side * 0.03;
+		double[] edge = { nearEdge, side / 2, nearEdge, side / 2 };
+		restarted.invalidateArea("titik", List.of(edge), WmsRasterService.rasterPadFraction(WmsStyle.DEFAULT));
+		TileCacheService afterEdge = new TileCacheService(true, 1 << 20, 1 << 20, dir.toString());
+		assertNotNull(afterEdge.get(mvt));
+		assertNull(afterEdge.get(png));
+
+		cache.put(png, new byte[] { 2 });
+		double[] box = { -10_000_000, 10_000_000, -10_000_000, 10_000_000 };
+		restarted.invalidateArea("titik", List.of(box), 0);
+		assertNull(new TileCacheService(true, 1 << 20, 1 << 20, dir.toString()).get(png));
+	}
+}
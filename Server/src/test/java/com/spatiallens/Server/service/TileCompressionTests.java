@@ -0,0 +1,22 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class TileCompressionTests {
+
+	@Test
+	void concatenatedMembersGunzipToConcatenatedTiles() {
+		byte[] roads = { 0x1a, 3, 1, 2, 3 };
+		byte[] rivers = { 0x1a, 2, 9, 8 };
+		ByteArrayOutputStream composite = new ByteArrayOutputStream();
+		composite.writeBytes(TileCompression.gzip(roads));
+		composite.writeBytes(TileCompression.gzip(rivers));
+
+		assertArrayEquals(new byte[] { 0x1a, 3, 1, 2, 3, 0x1a, 2, 9, 8 },
+				TileCompression.gunzip(composite.toByteArray()));
+	}
+}
@@ -0,0 +1,60 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TileCoverageTests {
+
+	private static final double HALF_WORLD = 20037508.342789244;
+
+	@Test
+	void pyramidAggregatesCountsToAncestors() {
+		// zoom dasar 4: dua tile di kuadran kiri-atas, satu di kanan-bawah
+		TileCoverage cov = TileCoverage.fromBaseTiles(4,
+				new int[] { 1, 2, 15 },
+				new int[] { 1, 3, 15 },
+				new int[] { 5, 2, 7 });
+
+		assertEquals(14, cov.featureCount(0, 0, 0));
+		assertEquals(7, cov.featureCount(1, 0, 0));
+		assertEquals(7, cov.featureCount(1, 1, 1));
+		assertEquals(0, cov.featureCount(1, 1, 0));
+		assertEquals(5, cov.featureCount(4, 1, 1));
+		assertFalse(cov.occupied(4, 2, 2));
+	}
+
+	@Test
+	void deeperZoomUsesAncestorAtBaseZoom() {
+		TileCoverage cov = TileCoverage.fromBaseTiles(4, new int[] { 3 }, new int[] { 9 }, new int[] { 1 });
+
+		assertTrue(cov.occupied(6, 3 * 4 + 2, 9 * 4 + 1));
+		assertFalse(cov.occupied(6, 4 * 4, 9 * 4));
+	}
+
+	@Test
+	void bufferAndBboxChecksSeeNeighbouringData() {
+		TileCoverage cov = TileCoverage.fromBaseTiles(4, new int[] { 8 }, new int[] { 8 }, new int[] { 1 });
+
+		// tile 3/3/4 kosong, tapi bersebelahan langsung dengan 4/8/8 → buffer menyentuh data
+		assertTrue(cov.occupiedWithBuffer(3, 3, 4, 64.0 / 4096.0));
+		assertFalse(cov.occupiedWithBuffer(3, 1, 1, 64.0 / 4096.0));
+
+		// bbox di sekitar titik tengah dunia (pojok kiri-atas tile 4/8/8)
+		assertTrue(cov.anyOccupied3857(1000, -1000, 2000, -10));
+		assertFalse(cov.anyOccupied3857(-HALF_WORLD, HALF_WORLD / 2, -HALF_WORLD / 2, HALF_WORLD));
+	}
+
+	@Test
+	void addedBaseTilesExtendTheWholePyramid() {
+		TileCoverage cov = TileCoverage.fromBaseTiles(4, new int[] { 1 }, new int[] { 1 }, new int[] { 3 })
+				.withBaseTiles(new int[] { 14, 1 }, new int[] { 2, 1 });
+
+		assertEquals(4, cov.featureCount(4, 1, 1));
+		assertEquals(1, cov.featureCount(4, 14, 2));
+		assertEquals(1, cov.featureCount(1, 1, 0));
+		assertEquals(5, cov.featureCount(0, 0, 0));
+	}
+}
@@ -0,0 +1,122 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.spatiallens.Server.service.LayerRegistry.LayerSnapshot;
+import com.spatiallens.Server.service.MvtTileService.TileResult;
+import com.spatiallens.Server.service.TileSeedService.State;
+
+class TileSeedServiceTests {
+
+	@TempDir
+	Path dir;
+
+	private final MvtTileService tiles = mock(MvtTileService.class);
+	private final LayerRegistry registry = mock(LayerRegistry.class);
+	private TileSeedService seeder;
+
+	@AfterEach
+	void shutdown() {
+		if (seeder != null)
+			seeder.shutdown();
+	}
+
+	@Test
+	void replacedJobNeitherFinishesNorDropsTheNewCheckpoint() throws Exception {
+		publishedLayer(5L);
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+		CountDownLatch releaseSecond = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		when(tiles.getTile(eq("roads"), anyInt(), anyInt(), anyInt(), anyBoolean(), any())).thenAnswer(inv -> {
+			if (calls.incrementAndGet() == 1) {
+				firstStarted.countDown();
+				releaseFirst.await();
+			} else {
+				releaseSecond.await();
+			}
+			return new TileResult(new byte[] { 1 }, false, true);
+		});
+		seeder = new TileSeedService(tiles, registry, new JdbcTemplate(), 1, 0, 0, 65536, dir.toString());
+
+		seeder.start("roads");
+		assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+		seeder.start("roads"); // membatalkan job pertama
+		List<Path> checkpoints = checkpoints();
+		assertEquals(1, checkpoints.size());
+
+		// job pertama selesai setelah dibatalkan: checkpoint job kedua tetap ada
+		releaseFirst.countDown();
+		waitFor(() -> calls.get() == 2);
+		assertEquals(checkpoints, checkpoints());
+		assertEquals(State.RUNNING, seeder.status("roads").orElseThrow().state());
+
+		releaseSecond.countDown();
+		waitFor(() -> seeder.status("roads").orElseThrow().state() == State.DONE);
+		assertTrue(checkpoints().isEmpty());
+	}
+
+	@Test
+	void resumeSkipsLevelsCompletedBeforeRestart() throws Exception {
+		publishedLayer(5L);
+		Set<Integer> zooms = ConcurrentHashMap.newKeySet();
+		when(tiles.getTile(eq("roads"), anyInt(), anyInt(), anyInt(), anyBoolean(), any())).thenAnswer(inv -> {
+			zooms.add(inv.getArgument(1));
+			return new TileResult(new byte[] { 1 }, false, true);
+		});
+		Files.writeString(dir.resolve("roads@old.job"), "0,3,1,5", StandardCharsets.UTF_8);
+		seeder = new TileSeedService(tiles, registry, new JdbcTemplate(), 1, 0, 3, 65536, dir.toString());
+
+		seeder.resumePending();
+		waitFor(() -> seeder.status("roads").orElseThrow().state() == State.DONE);
+		assertEquals(Set.of(2, 3), zooms);
+		assertTrue(checkpoints().isEmpty());
+	}
+
+	private void publishedLayer(long version) {
+		LayerSnapshot lm = mock(LayerSnapshot.class);
+		when(lm.published()).thenReturn(true);
+		when(lm.version()).thenReturn(version);
+		when(lm.bbox()).thenReturn(new double[] { 106.7, -6.3, 106.9, -6.1 });
+		when(registry.get("roads")).thenReturn(Optional.of(lm));
+	}
+
+	private List<Path> checkpoints() throws Exception {
+		try (Stream<Path> s = Files.list(dir)) {
+			return s.filter(p -> p.toString().endsWith(".job")).sorted().toList();
+		}
+	}
+
+	private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline)
+				throw new AssertionError("timeout");
+			Thread.sleep(10);
+		}
+	}
+}
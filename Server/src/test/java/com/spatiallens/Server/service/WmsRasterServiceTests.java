@@ -0,0 +1,73 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WmsRasterServiceTests {
+
+	private static final double HALF_WORLD = 20037508.342789244;
+
+	@Test
+	void gridAlignedBboxMapsToXyzPixelOrigin() {
+		// tile 2/1/1 dengan noise float seperti yang dikirim klien WMS
+		double size = HALF_WORLD / 2;
+		double[] bounds = { -HALF_WORLD + size + 1e-7, HALF_WORLD - 2 * size, -HALF_WORLD + 2 * size,
+				HALF_WORLD - size - 1e-7 };
+
+		WmsRasterService.Mosaic m = WmsRasterService.mosaicPlan(bounds, 256, 256);
+
+		assertEquals(2, m.z());
+		assertEquals(256, m.originX());
+		assertEquals(256, m.originY());
+	}
+
+	@Test
+	void offGridOrScaledBboxIsRenderedDirectly() {
+		double size = HALF_WORLD / 2;
+		// skala cocok tapi bergeser 0.5 pixel
+		double half = size / 512;
+		assertNull(WmsRasterService.mosaicPlan(new double[] { -HALF_WORLD + half, 0, -HALF_WORLD + size + half, size },
+				256, 256));
+		// 300px untuk satu tile → skala tidak cocok zoom mana pun
+		assertNull(WmsRasterService.mosaicPlan(new double[] { -HALF_WORLD, 0, -HALF_WORLD + size, size }, 300, 300));
+	}
+
+	@Test
+	void largeImageIsCoveredBySubTilesWithoutOverlap() {
+		List<int[]> parts = WmsRasterService.subTiles(1200, 600, 512);
+
+		assertEquals(6, parts.size());
+		assertArrayEquals(new int[] { 1024, 0, 176, 512 }, parts.get(2));
+		assertArrayEquals(new int[] { 0, 512, 512, 88 }, parts.get(3));
+		long area = parts.stream().mapToLong(p -> (long) p[2] * p[3]).sum();
+		assertEquals(1200L * 600, area);
+	}
+
+	@Test
+	void renderBudgetStopsOnceBytesRunOut() {
+		WmsRasterService.RenderBudget budget = new WmsRasterService.RenderBudget(60_000, 100);
+
+		assertTrue(budget.take(60));
+		assertFalse(budget.exhausted());
+		assertFalse(budget.take(60));
+		assertTrue(budget.exhausted());
+		assertFalse(budget.take(1));
+	}
+
+	@Test
+	void metatileBlocksAlignToGridAndClipAtItsEdge() {
+		assertArrayEquals(new int[] { 4, 8, 4, 4 }, WmsRasterService.metatileBlock(5, 6, 9, 4));
+		// zoom 1: grid 2×2 → satu blok 2×2
+		assertArrayEquals(new int[] { 0, 0, 2, 2 }, WmsRasterService.metatileBlock(1, 1, 0, 4));
+		// ukuran bukan pangkat dua → blok terakhir terpotong di tepi grid (z=3, n=8)
+		assertArrayEquals(new int[] { 6, 0, 2, 3 }, WmsRasterService.metatileBlock(3, 7, 1, 3));
+		assertArrayEquals(new int[] { 0, 0, 1, 1 }, WmsRasterService.metatileBlock(0, 0, 0, 4));
+	}
+}
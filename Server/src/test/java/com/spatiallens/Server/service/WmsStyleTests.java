@@ -0,0 +1,52 @@
+package com.spatiallens.Server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WmsStyleTests {
+
+	@Test
+	void flatStyleMatchPicksColourPerFeature() {
+		WmsStyle style = WmsStyle.compile("""
+				{"fillColor":"#690000","lineColor":"#111111","fillOpacity":0.5,"lineWidth":2,
+				 "fillExpression":["match",["get","KELAS"],"A","#FF0000",["B","C"],"#00FF00",1,"#0000FF","#690000"]}
+				""");
+
+		assertEquals(List.of("KELAS"), style.fields());
+		assertEquals(0x80FF0000, style.fill(new String[] { "A" }).getRGB());
+		assertEquals(0x8000FF00, style.fill(new String[] { "C" }).getRGB());
+		assertEquals(0x800000FF, style.fill(new String[] { "1" }).getRGB());
+		assertEquals(0x80690000, style.fill(new String[] { null }).getRGB());
+		assertEquals(0xFF111111, style.line(new String[] { "A" }).getRGB());
+		assertEquals(2f, style.stroke(new String[] { "A" }).getLineWidth());
+		assertSame(style.fill(new String[] { "A" }), style.fill(new String[] { "A" }));
+	}
+
+	@Test
+	void glStyleReadsPaintOfFirstLayerPerType() {
+		WmsStyle style = WmsStyle.compile("""
+				{"version":8,"layers":[
+				 {"id":"f","type":"fill","paint":{"fill-color":"rgba(10,20,30,0.5)","fill-opacity":1}},
+				 {"id":"l","type":"line","paint":{"line-color":"#abc","line-width":["match",["get","W"],"big",4,1]}}]}
+				""");
+
+		assertEquals(0x800A141E, style.fill(new String[] { null }).getRGB());
+		assertEquals(0xFFAABBCC, style.line(new String[] { null }).getRGB());
+		assertEquals(4f, style.stroke(new String[] { "big" }).getLineWidth());
+		assertEquals(1f, style.stroke(new String[] { "small" }).getLineWidth());
+	}
+
+	@Test
+	void missingStyleKeepsLegacyLookAndBrokenJsonFallsBack() {
+		assertSame(WmsStyle.DEFAULT, WmsStyle.compile(null));
+		assertEquals(0x66A3D9A5, WmsStyle.DEFAULT.fill(new String[0]).getRGB());
+
+		WmsStyle broken = WmsStyle.compile("{not json");
+		assertEquals(List.of(), broken.fields());
+		assertEquals(0x99690000, broken.fill(new String[0]).getRGB());
+	}
+}